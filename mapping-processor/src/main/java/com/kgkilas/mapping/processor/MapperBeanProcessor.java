@@ -0,0 +1,208 @@
+package com.kgkilas.mapping.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Annotation processor that generates a plain-Java subclass for every class annotated with {@code @MapperBean}
+ * that extends {@code GenericMapper<E, D>}.
+ * The generated {@code <Mapper>_Generated} class overrides {@code convertToDTO}, the conversion behind
+ * {@code toDTO}, {@code toEntity} and {@code patch} with direct getter/setter calls wherever the mapping is a
+ * one-to-one copy of immutable values, and leaves the inherited ModelMapper/reflection based implementation in
+ * place otherwise, at compile time or, when the mapper's type maps turn out to be configured, at runtime.
+ * Methods the mapper or one of its superclasses already overrides are never generated.
+ */
+@SupportedAnnotationTypes(MapperBeanProcessor.MAPPER_BEAN)
+public class MapperBeanProcessor extends AbstractProcessor {
+
+    /**
+     * Suffix appended to the mapper class name to form the name of the generated class.
+     */
+    public static final String GENERATED_SUFFIX = "_Generated";
+
+    static final String MAPPER_BEAN = "com.kgkilas.mapping.annotation.MapperBean";
+    private static final String IGNORE_FIELD = "com.kgkilas.mapping.annotation.IgnoreField";
+    private static final String GENERIC_MAPPER = "com.kgkilas.mapping.mapper.GenericMapper";
+    private static final String FIELD_MASK = "com.kgkilas.mapping.patch.FieldMask";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement mapperBean = processingEnv.getElementUtils().getTypeElement(MAPPER_BEAN);
+        if (mapperBean == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(mapperBean)) {
+            if (element.getKind() == ElementKind.CLASS) {
+                processMapper((TypeElement) element);
+            }
+        }
+        return false;
+    }
+
+    private void processMapper(TypeElement mapper) {
+        String reason = unsupportedMapperReason(mapper);
+        if (reason != null) {
+            note(mapper, "Not generating mapper: " + reason);
+            return;
+        }
+        List<? extends TypeMirror> typeArguments = genericMapperTypeArguments(mapper);
+        if (typeArguments == null || typeArguments.stream().anyMatch(t -> t.getKind() != TypeKind.DECLARED)) {
+            note(mapper, "Not generating mapper: entity and DTO types must be concrete classes");
+            return;
+        }
+        TypeElement entityType = (TypeElement) ((DeclaredType) typeArguments.get(0)).asElement();
+        TypeElement dtoType = (TypeElement) ((DeclaredType) typeArguments.get(1)).asElement();
+
+        MappingModel model = new MappingModel(processingEnv, mapper);
+        String toDTO = isOverridden(mapper, "toDTO", 1, null) || isOverridden(mapper, "convertToDTO", 1, null) ? null
+                : model.conversion(entityType, dtoType, "convertToDTO", "entity", "dto", false);
+        String toEntity = isOverridden(mapper, "toEntity", 1, null) ? null
+                : model.conversion(dtoType, entityType, "toEntity", "dto", "entity", true);
+        String patch = isOverridden(mapper, "patch", 3, FIELD_MASK) ? null : model.patch(dtoType);
+        if (toDTO == null && toEntity == null && patch == null) {
+            note(mapper, "Not generating mapper: no method can be generated");
+            return;
+        }
+        try {
+            writeMapper(mapper, toDTO, toEntity, patch);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Failed to write generated mapper: " + e.getMessage(), mapper);
+        }
+    }
+
+    /**
+     * Whether the mapper or one of its superclasses below {@code GenericMapper} already overrides the given
+     * {@code GenericMapper} method, in which case generating it would replace the hand-written logic.
+     *
+     * @param lastParameterType the erasure of the method's last parameter, or null for a type parameter
+     */
+    private boolean isOverridden(TypeElement mapper, String methodName, int parameterCount, String lastParameterType) {
+        TypeElement genericMapper = processingEnv.getElementUtils().getTypeElement(GENERIC_MAPPER);
+        ExecutableElement overridden = ElementFilter.methodsIn(genericMapper.getEnclosedElements()).stream()
+                .filter(m -> m.getSimpleName().contentEquals(methodName) && m.getParameters().size() == parameterCount)
+                .filter(m -> {
+                    TypeMirror last = m.getParameters().get(parameterCount - 1).asType();
+                    return lastParameterType == null ? last.getKind() == TypeKind.TYPEVAR
+                            : processingEnv.getTypeUtils().erasure(last).toString().equals(lastParameterType);
+                })
+                .findFirst().orElse(null);
+        if (overridden == null) {
+            return false;
+        }
+        for (TypeElement type = mapper; !type.getQualifiedName().contentEquals(GENERIC_MAPPER);
+             type = (TypeElement) ((DeclaredType) type.getSuperclass()).asElement()) {
+            for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+                if (processingEnv.getElementUtils().overrides(method, overridden, mapper)) {
+                    note(mapper, "Not generating " + methodName + ": already overridden by " + type.getQualifiedName());
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private String unsupportedMapperReason(TypeElement mapper) {
+        if (mapper.getNestingKind() != NestingKind.TOP_LEVEL) {
+            return "mapper is not a top-level class";
+        }
+        if (mapper.getModifiers().contains(Modifier.FINAL) || mapper.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "mapper is final or abstract";
+        }
+        if (!mapper.getTypeParameters().isEmpty()) {
+            return "mapper declares type parameters";
+        }
+        return null;
+    }
+
+    private List<? extends TypeMirror> genericMapperTypeArguments(TypeElement mapper) {
+        TypeMirror superclass = mapper.getSuperclass();
+        while (superclass.getKind() == TypeKind.DECLARED) {
+            DeclaredType declaredType = (DeclaredType) superclass;
+            TypeElement element = (TypeElement) declaredType.asElement();
+            if (element.getQualifiedName().contentEquals(GENERIC_MAPPER)) {
+                return declaredType.getTypeArguments().size() == 2 ? declaredType.getTypeArguments() : null;
+            }
+            superclass = element.getSuperclass();
+        }
+        return null;
+    }
+
+    private void writeMapper(TypeElement mapper, String toDTO, String toEntity, String patch) throws IOException {
+        PackageElement packageElement = processingEnv.getElementUtils().getPackageOf(mapper);
+        String packageName = packageElement.getQualifiedName().toString();
+        String simpleName = mapper.getSimpleName() + GENERATED_SUFFIX;
+        String qualifiedName = packageElement.isUnnamed() ? simpleName : packageName + "." + simpleName;
+
+        StringBuilder source = new StringBuilder();
+        if (!packageElement.isUnnamed()) {
+            source.append("package ").append(packageName).append(";\n\n");
+        }
+        source.append("@javax.annotation.processing.Generated(\"").append(getClass().getName()).append("\")\n")
+                .append("public class ").append(simpleName).append(" extends ").append(mapper.getSimpleName()).append(" {\n");
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(mapper.getEnclosedElements())) {
+            if (!constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                appendConstructor(source, simpleName, constructor);
+            }
+        }
+        for (String method : new String[]{toDTO, toEntity, patch}) {
+            if (method != null) {
+                source.append('\n').append(method);
+            }
+        }
+        source.append("}\n");
+
+        try (Writer writer = processingEnv.getFiler().createSourceFile(qualifiedName, mapper).openWriter()) {
+            writer.write(source.toString());
+        }
+    }
+
+    private void appendConstructor(StringBuilder source, String simpleName, ExecutableElement constructor) {
+        List<? extends VariableElement> parameters = constructor.getParameters();
+        String declaration = parameters.stream()
+                .map(p -> p.getAnnotationMirrors().stream().map(a -> a + " ").collect(Collectors.joining())
+                        + p.asType() + " " + p.getSimpleName())
+                .collect(Collectors.joining(", "));
+        String arguments = parameters.stream().map(p -> p.getSimpleName().toString()).collect(Collectors.joining(", "));
+        source.append("\n    public ").append(simpleName).append('(').append(declaration).append(')');
+        if (!constructor.getThrownTypes().isEmpty()) {
+            source.append(" throws ").append(constructor.getThrownTypes().stream()
+                    .map(TypeMirror::toString).collect(Collectors.joining(", ")));
+        }
+        source.append(" {\n        super(").append(arguments).append(");\n    }\n");
+    }
+
+    private void note(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE, message, element);
+    }
+
+    static boolean isIgnored(VariableElement field) {
+        return field.getAnnotationMirrors().stream()
+                .anyMatch(a -> ((TypeElement) a.getAnnotationType().asElement()).getQualifiedName().contentEquals(IGNORE_FIELD));
+    }
+}
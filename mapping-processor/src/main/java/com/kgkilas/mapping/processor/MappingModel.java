@@ -0,0 +1,277 @@
+package com.kgkilas.mapping.processor;
+
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Resolves the bean properties of entity and DTO types and renders the generated method bodies.
+ * Every render method returns null when the mapping cannot be expressed as plain getter/setter calls
+ * with the same semantics as the runtime implementation.
+ */
+final class MappingModel {
+
+    private static final Set<String> SIMPLE_TYPES = Set.of(
+            "java.lang.String", "java.lang.Integer", "java.lang.Long", "java.lang.Double", "java.lang.Float",
+            "java.lang.Boolean", "java.lang.Character", "java.lang.Byte", "java.lang.Short");
+    private static final Set<String> IMMUTABLE_TYPES = Set.of(
+            "java.math.BigDecimal", "java.math.BigInteger", "java.util.UUID");
+    private static final Set<String> LOMBOK_GETTERS = Set.of("lombok.Data", "lombok.Getter", "lombok.Value");
+    private static final Set<String> LOMBOK_SETTERS = Set.of("lombok.Data", "lombok.Setter");
+
+    private final ProcessingEnvironment processingEnv;
+    private final TypeElement mapper;
+    private final Types types;
+
+    MappingModel(ProcessingEnvironment processingEnv, TypeElement mapper) {
+        this.processingEnv = processingEnv;
+        this.mapper = mapper;
+        this.types = processingEnv.getTypeUtils();
+    }
+
+    /**
+     * A field of a bean type together with its public accessors.
+     */
+    private static final class Property {
+        private final VariableElement field;
+        private final String getter;
+        private final String setter;
+
+        private Property(VariableElement field, String getter, String setter) {
+            this.field = field;
+            this.getter = getter;
+            this.setter = setter;
+        }
+
+        private String name() {
+            return field.getSimpleName().toString();
+        }
+
+        private TypeMirror type() {
+            return field.asType();
+        }
+    }
+
+    /**
+     * Renders a convertToDTO/toEntity override copying every writable target property from the same-named source
+     * property. Only toEntity validates, its source; the DTO is validated by the inherited toDTO, which also
+     * consults the DTO cache before calling convertToDTO. The ModelMapper of the mapper is only known at runtime,
+     * so before the first conversion the override asks {@code GenericMapper.isPlainCopy} whether its type map copies
+     * exactly these properties, and otherwise keeps calling the inherited ModelMapper conversion.
+     */
+    String conversion(TypeElement sourceType, TypeElement targetType, String methodName, String sourceName,
+                      String targetName, boolean validateSource) {
+        if (targetType.getModifiers().contains(Modifier.ABSTRACT) || !hasPublicNoArgConstructor(targetType)) {
+            return skip(methodName, targetType + " has no public no-arg constructor");
+        }
+        Map<String, Property> sourceProperties = properties(sourceType);
+        StringBuilder body = new StringBuilder();
+        StringBuilder names = new StringBuilder();
+        for (Property target : properties(targetType).values()) {
+            if (target.setter == null) {
+                continue;
+            }
+            Property source = sourceProperties.get(target.name());
+            if (source == null || source.getter == null) {
+                return skip(methodName, "property '" + target.name() + "' has no readable counterpart in " + sourceType);
+            }
+            if (!types.isSameType(source.type(), target.type()) || !isImmutable(target.type())) {
+                return skip(methodName, "property '" + target.name() + "' is not a plain copy of an immutable value");
+            }
+            body.append("        ").append(targetName).append('.').append(target.setter).append('(')
+                    .append(sourceName).append('.').append(source.getter).append("());\n");
+            names.append(", \"").append(target.name()).append('"');
+        }
+
+        String sourceClass = sourceType.getQualifiedName().toString();
+        String targetClass = targetType.getQualifiedName().toString();
+        String plainCopy = methodName + "PlainCopy";
+        StringBuilder method = new StringBuilder();
+        method.append("    private volatile Boolean ").append(plainCopy).append(";\n\n")
+                .append("    @Override\n")
+                .append(validateSource ? "    public " : "    protected ").append(targetClass).append(' ')
+                .append(methodName).append('(')
+                .append(sourceClass).append(' ').append(sourceName).append(") {\n")
+                .append("        Boolean plainCopy = ").append(plainCopy).append(";\n")
+                .append("        if (plainCopy == null) {\n")
+                .append("            plainCopy = isPlainCopy(").append(sourceClass).append(".class, ")
+                .append(targetClass).append(".class").append(names).append(");\n")
+                .append("            ").append(plainCopy).append(" = plainCopy;\n")
+                .append("        }\n")
+                .append("        if (!plainCopy) {\n")
+                .append("            return super.").append(methodName).append('(').append(sourceName).append(");\n")
+                .append("        }\n");
+        if (validateSource) {
+            method.append("        validate(").append(sourceName).append(");\n");
+        }
+        method.append("        if (").append(sourceName).append(" == null) {\n")
+                .append("            throw new IllegalArgumentException(\"source cannot be null\");\n")
+                .append("        }\n")
+                .append("        ").append(targetClass).append(' ').append(targetName).append(" = new ")
+                .append(targetClass).append("();\n")
+                .append(body);
+        method.append("        return ").append(targetName).append(";\n")
+                .append("    }\n");
+        return method.toString();
+    }
+
+    /**
+     * Renders a patch override for DTO-to-DTO patching that copies primitive and simple fields directly
+     * and hands every other field to a single {@code GenericMapper.patchFields} call, so the rest of the graph is
+     * patched in one traversal.
+     */
+    String patch(TypeElement dtoType) {
+        String dtoClass = dtoType.getQualifiedName().toString();
+        StringBuilder body = new StringBuilder();
+        StringBuilder runtimeFields = new StringBuilder();
+        for (Property property : properties(dtoType).values()) {
+            if (MapperBeanProcessor.isIgnored(property.field)) {
+                continue;
+            }
+            if (property.getter == null || property.setter == null) {
+                return skip("patch", "field '" + property.name() + "' has no public getter and setter");
+            }
+            String name = property.name();
+            TypeMirror type = property.type();
+            if (type.getKind().isPrimitive()) {
+                body.append("        existing.").append(property.setter).append("(update.")
+                        .append(property.getter).append("());\n");
+            } else if (isSimple(type)) {
+                body.append("        if (update.").append(property.getter).append("() != null) {\n")
+                        .append("            existing.").append(property.setter).append("(update.")
+                        .append(property.getter).append("());\n")
+                        .append("        } else if (nullFieldsMask != null) {\n")
+                        .append("            runtimeFields.add(\"").append(name).append("\");\n")
+                        .append("        }\n");
+            } else {
+                runtimeFields.append("        runtimeFields.add(\"").append(name).append("\");\n");
+            }
+        }
+        return "    @Override\n"
+                + "    public void patch(Object updateDTO, Object existingDTO,\n"
+                + "                      com.kgkilas.mapping.patch.FieldMask nullFieldsMask) {\n"
+                + "        if (updateDTO == null || existingDTO == null\n"
+                + "                || updateDTO.getClass() != " + dtoClass + ".class\n"
+                + "                || existingDTO.getClass() != " + dtoClass + ".class) {\n"
+                + "            super.patch(updateDTO, existingDTO, nullFieldsMask);\n"
+                + "            return;\n"
+                + "        }\n"
+                + "        " + dtoClass + " update = (" + dtoClass + ") updateDTO;\n"
+                + "        " + dtoClass + " existing = (" + dtoClass + ") existingDTO;\n"
+                + "        java.util.List<String> runtimeFields = new java.util.ArrayList<>();\n"
+                + body
+                + runtimeFields
+                + "        if (!runtimeFields.isEmpty()) {\n"
+                + "            patchFields(update, existing, nullFieldsMask, runtimeFields.toArray(new String[0]));\n"
+                + "        }\n"
+                + "    }\n";
+    }
+
+    private Map<String, Property> properties(TypeElement type) {
+        Map<String, Property> properties = new LinkedHashMap<>();
+        List<ExecutableElement> methods = ElementFilter.methodsIn(processingEnv.getElementUtils().getAllMembers(type));
+        TypeElement current = type;
+        while (current != null && !current.getQualifiedName().contentEquals("java.lang.Object")) {
+            for (VariableElement field : ElementFilter.fieldsIn(current.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC) || properties.containsKey(field.getSimpleName().toString())) {
+                    continue;
+                }
+                properties.put(field.getSimpleName().toString(), new Property(field,
+                        getter(field, current, methods), setter(field, current, methods)));
+            }
+            TypeMirror superclass = current.getSuperclass();
+            current = superclass.getKind() == TypeKind.DECLARED
+                    ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+        }
+        return properties;
+    }
+
+    private String getter(VariableElement field, TypeElement declaringType, List<ExecutableElement> methods) {
+        String prefix = field.asType().getKind() == TypeKind.BOOLEAN ? "is" : "get";
+        String name = prefix + capitalize(field.getSimpleName().toString());
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().isEmpty()
+                    && method.getModifiers().contains(Modifier.PUBLIC)) {
+                return name;
+            }
+        }
+        return hasLombok(field, declaringType, LOMBOK_GETTERS) ? name : null;
+    }
+
+    private String setter(VariableElement field, TypeElement declaringType, List<ExecutableElement> methods) {
+        if (field.getModifiers().contains(Modifier.FINAL)) {
+            return null;
+        }
+        String name = "set" + capitalize(field.getSimpleName().toString());
+        for (ExecutableElement method : methods) {
+            if (method.getSimpleName().contentEquals(name) && method.getParameters().size() == 1
+                    && method.getModifiers().contains(Modifier.PUBLIC)
+                    && types.isSameType(method.getParameters().get(0).asType(), field.asType())) {
+                return name;
+            }
+        }
+        return hasLombok(field, declaringType, LOMBOK_SETTERS) ? name : null;
+    }
+
+    private boolean hasLombok(VariableElement field, TypeElement declaringType, Set<String> annotations) {
+        return hasAnnotation(field, annotations) || hasAnnotation(declaringType, annotations);
+    }
+
+    private boolean hasAnnotation(Element element, Set<String> annotations) {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors()) {
+            TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+            if (annotations.contains(annotationType.getQualifiedName().toString())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasPublicNoArgConstructor(TypeElement type) {
+        List<ExecutableElement> constructors = ElementFilter.constructorsIn(type.getEnclosedElements());
+        return constructors.stream().anyMatch(c -> c.getParameters().isEmpty() && c.getModifiers().contains(Modifier.PUBLIC))
+                || (constructors.isEmpty() && type.getModifiers().contains(Modifier.PUBLIC));
+    }
+
+    private boolean isSimple(TypeMirror type) {
+        return type.getKind().isPrimitive() || (type.getKind() == TypeKind.DECLARED
+                && SIMPLE_TYPES.contains(((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString()));
+    }
+
+    private boolean isImmutable(TypeMirror type) {
+        if (isSimple(type)) {
+            return true;
+        }
+        if (type.getKind() != TypeKind.DECLARED) {
+            return false;
+        }
+        TypeElement element = (TypeElement) ((DeclaredType) type).asElement();
+        String name = element.getQualifiedName().toString();
+        return element.getKind() == ElementKind.ENUM || IMMUTABLE_TYPES.contains(name) || name.startsWith("java.time.");
+    }
+
+    private String skip(String methodName, String reason) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Keeping runtime " + methodName + ": " + reason, mapper);
+        return null;
+    }
+
+    private static String capitalize(String name) {
+        return Character.toUpperCase(name.charAt(0)) + name.substring(1);
+    }
+}
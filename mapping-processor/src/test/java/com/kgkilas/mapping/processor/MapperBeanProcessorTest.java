@@ -0,0 +1,333 @@
+package com.kgkilas.mapping.processor;
+
+import com.google.testing.compile.Compilation;
+import com.google.testing.compile.JavaFileObjects;
+import com.kgkilas.mapping.mapper.GenericMapper;
+import com.kgkilas.mapping.patch.FieldMask;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Field;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.testing.compile.Compiler.javac;
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MapperBeanProcessorTest {
+
+    private static final JavaFileObject BOOK = JavaFileObjects.forSourceString("p.Book", """
+            package p;
+
+            public class Book {
+                private Long id;
+                private String title;
+                private int pages;
+
+                public Long getId() { return id; }
+                public void setId(Long id) { this.id = id; }
+                public String getTitle() { return title; }
+                public void setTitle(String title) { this.title = title; }
+                public int getPages() { return pages; }
+                public void setPages(int pages) { this.pages = pages; }
+            }
+            """);
+
+    private static final JavaFileObject BOOK_DTO = JavaFileObjects.forSourceString("p.BookDto", """
+            package p;
+
+            public class BookDto {
+                private Long id;
+                private String title;
+                private int pages;
+
+                public Long getId() { return id; }
+                public void setId(Long id) { this.id = id; }
+                public String getTitle() { return title; }
+                public void setTitle(String title) { this.title = title; }
+                public int getPages() { return pages; }
+                public void setPages(int pages) { this.pages = pages; }
+            }
+            """);
+
+    private static final JavaFileObject BOOK_MAPPER = JavaFileObjects.forSourceString("p.BookMapper", """
+            package p;
+
+            import com.kgkilas.mapping.annotation.MapperBean;
+            import com.kgkilas.mapping.mapper.GenericMapper;
+            import org.modelmapper.ModelMapper;
+
+            @MapperBean
+            public class BookMapper extends GenericMapper<Book, BookDto> {
+                public BookMapper(ModelMapper modelMapper) {
+                    super(modelMapper, Book.class, BookDto.class);
+                }
+            }
+            """);
+
+    private static final JavaFileObject CONFIGURATIONS = JavaFileObjects.forSourceString("p.Configurations", """
+            package p;
+
+            import org.modelmapper.ModelMapper;
+
+            public final class Configurations {
+                public static ModelMapper skippingTitles() {
+                    ModelMapper modelMapper = new ModelMapper();
+                    modelMapper.typeMap(Book.class, BookDto.class).addMappings(m -> m.skip(BookDto::setTitle));
+                    return modelMapper;
+                }
+
+                public static ModelMapper skippingNulls() {
+                    ModelMapper modelMapper = new ModelMapper();
+                    modelMapper.getConfiguration().setSkipNullEnabled(true);
+                    return modelMapper;
+                }
+            }
+            """);
+
+    private static final JavaFileObject NODE = JavaFileObjects.forSourceString("p.Node", """
+            package p;
+
+            public class Node {
+                private String name;
+
+                public String getName() { return name; }
+                public void setName(String name) { this.name = name; }
+            }
+            """);
+
+    private static final JavaFileObject PAIR = JavaFileObjects.forSourceString("p.Pair", """
+            package p;
+
+            public class Pair {
+                private String name;
+                private Node left;
+                private Node right;
+
+                public String getName() { return name; }
+                public void setName(String name) { this.name = name; }
+                public Node getLeft() { return left; }
+                public void setLeft(Node left) { this.left = left; }
+                public Node getRight() { return right; }
+                public void setRight(Node right) { this.right = right; }
+            }
+            """);
+
+    private static final JavaFileObject PAIR_MAPPER = JavaFileObjects.forSourceString("p.PairMapper", """
+            package p;
+
+            import com.kgkilas.mapping.annotation.MapperBean;
+            import com.kgkilas.mapping.mapper.GenericMapper;
+            import org.modelmapper.ModelMapper;
+
+            @MapperBean
+            public class PairMapper extends GenericMapper<Pair, Pair> {
+                public PairMapper(ModelMapper modelMapper) {
+                    super(modelMapper, Pair.class, Pair.class);
+                }
+            }
+            """);
+
+    private static Compilation compile(JavaFileObject... sources) {
+        Compilation compilation = javac().withProcessors(new MapperBeanProcessor()).compile(sources);
+        assertThat(compilation.status()).as("%s", compilation.diagnostics()).isEqualTo(Compilation.Status.SUCCESS);
+        return compilation;
+    }
+
+    /**
+     * Loads the classes written by the compilation, the library classes coming from the test class path.
+     */
+    private static ClassLoader loader(Compilation compilation) {
+        Map<String, byte[]> classes = new HashMap<>();
+        for (JavaFileObject file : compilation.generatedFiles()) {
+            if (file.getKind() != JavaFileObject.Kind.CLASS) {
+                continue;
+            }
+            String path = file.toUri().getPath();
+            String name = path.substring(path.indexOf("/CLASS_OUTPUT/") + "/CLASS_OUTPUT/".length(),
+                    path.length() - ".class".length()).replace('/', '.');
+            try (InputStream in = file.openInputStream()) {
+                classes.put(name, in.readAllBytes());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return new ClassLoader(MapperBeanProcessorTest.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                byte[] bytes = classes.get(name);
+                if (bytes == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static GenericMapper<Object, Object> mapper(ClassLoader loader, String name, ModelMapper modelMapper)
+            throws Exception {
+        return (GenericMapper<Object, Object>) loader.loadClass(name).getConstructor(ModelMapper.class)
+                .newInstance(modelMapper);
+    }
+
+    private static ModelMapper configuration(ClassLoader loader, String name) throws Exception {
+        return (ModelMapper) loader.loadClass("p.Configurations").getMethod(name).invoke(null);
+    }
+
+    private static Object create(ClassLoader loader, String type, Object... properties) throws Exception {
+        Object object = loader.loadClass(type).getConstructor().newInstance();
+        for (int i = 0; i < properties.length; i += 2) {
+            set(object, (String) properties[i], properties[i + 1]);
+        }
+        return object;
+    }
+
+    private static void set(Object object, String name, Object value) throws Exception {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(object, value);
+    }
+
+    private static Object get(Object object, String name) throws Exception {
+        Field field = object.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        return field.get(object);
+    }
+
+    private static String generatedSource(Compilation compilation, String name) {
+        return compilation.generatedSourceFile(name).map(file -> {
+            try {
+                return file.getCharContent(false).toString();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).orElseThrow();
+    }
+
+    @Test
+    void generatesGetterAndSetterConversionsGuardedByTheTypeMap() throws Exception {
+        Compilation compilation = compile(BOOK, BOOK_DTO, BOOK_MAPPER, CONFIGURATIONS);
+        ClassLoader loader = loader(compilation);
+        GenericMapper<Object, Object> mapper = mapper(loader, "p.BookMapper_Generated", new ModelMapper());
+
+        Object dto = mapper.toDTO(create(loader, "p.Book", "id", 1L, "title", "Solaris", "pages", 204));
+        Object entity = mapper.toEntity(dto);
+
+        assertThat(generatedSource(compilation, "p.BookMapper_Generated"))
+                .contains("protected p.BookDto convertToDTO(p.Book entity)")
+                .contains("isPlainCopy(p.Book.class, p.BookDto.class, \"id\", \"title\", \"pages\")")
+                .contains("public p.Book toEntity(p.BookDto dto)");
+        assertThat(get(mapper, "convertToDTOPlainCopy")).isEqualTo(true);
+        assertThat(get(mapper, "toEntityPlainCopy")).isEqualTo(true);
+        assertThat(get(dto, "title")).isEqualTo("Solaris");
+        assertThat(get(entity, "pages")).isEqualTo(204);
+    }
+
+    @Test
+    void keepsTheModelMapperConversionOfConfiguredTypeMaps() throws Exception {
+        ClassLoader loader = loader(compile(BOOK, BOOK_DTO, BOOK_MAPPER, CONFIGURATIONS));
+        GenericMapper<Object, Object> mapper = mapper(loader, "p.BookMapper_Generated",
+                configuration(loader, "skippingTitles"));
+
+        Object dto = mapper.toDTO(create(loader, "p.Book", "id", 1L, "title", "Solaris"));
+
+        assertThat(get(mapper, "convertToDTOPlainCopy")).isEqualTo(false);
+        assertThat(get(dto, "id")).isEqualTo(1L);
+        assertThat(get(dto, "title")).isNull();
+    }
+
+    @Test
+    void keepsTheModelMapperConversionOfConfigurationsSkippingNulls() throws Exception {
+        ClassLoader loader = loader(compile(BOOK, BOOK_DTO, BOOK_MAPPER, CONFIGURATIONS));
+        GenericMapper<Object, Object> mapper = mapper(loader, "p.BookMapper_Generated",
+                configuration(loader, "skippingNulls"));
+
+        Object entity = mapper.toEntity(create(loader, "p.BookDto", "id", 1L, "pages", 10));
+
+        assertThat(get(mapper, "toEntityPlainCopy")).isEqualTo(false);
+        assertThat(get(entity, "pages")).isEqualTo(10);
+    }
+
+    @Test
+    void patchesTheFieldsItDoesNotCopyInOneTraversal() throws Exception {
+        Compilation compilation = compile(NODE, PAIR, PAIR_MAPPER);
+        ClassLoader loader = loader(compilation);
+        GenericMapper<Object, Object> generated = mapper(loader, "p.PairMapper_Generated", new ModelMapper());
+        GenericMapper<Object, Object> runtime = mapper(loader, "p.PairMapper", new ModelMapper());
+        Object[] patched = new Object[2];
+        for (int i = 0; i < 2; i++) {
+            Object shared = create(loader, "p.Node", "name", "old");
+            Object existing = create(loader, "p.Pair", "name", "old", "left", shared, "right", shared);
+            Object update = create(loader, "p.Pair", "name", "new",
+                    "left", create(loader, "p.Node", "name", "left"), "right", create(loader, "p.Node", "name", "right"));
+            (i == 0 ? generated : runtime).patch(update, existing, (FieldMask) null);
+            patched[i] = existing;
+        }
+
+        assertThat(generatedSource(compilation, "p.PairMapper_Generated"))
+                .containsOnlyOnce("patchFields(")
+                .doesNotContain("patchField(");
+        assertThat(get(patched[0], "name")).isEqualTo("new");
+        assertThat(get(get(patched[0], "left"), "name")).isEqualTo(get(get(patched[1], "left"), "name")).isEqualTo("left");
+    }
+
+    @Test
+    void leavesOverriddenMethodsAlone() {
+        JavaFileObject mapper = JavaFileObjects.forSourceString("p.BookMapper", """
+                package p;
+
+                import com.kgkilas.mapping.annotation.MapperBean;
+                import com.kgkilas.mapping.mapper.GenericMapper;
+                import org.modelmapper.ModelMapper;
+
+                @MapperBean
+                public class BookMapper extends GenericMapper<Book, BookDto> {
+                    public BookMapper(ModelMapper modelMapper) {
+                        super(modelMapper, Book.class, BookDto.class);
+                    }
+
+                    @Override
+                    public BookDto toDTO(Book entity) {
+                        return super.toDTO(entity);
+                    }
+                }
+                """);
+
+        Compilation compilation = compile(BOOK, BOOK_DTO, mapper);
+
+        assertThat(generatedSource(compilation, "p.BookMapper_Generated"))
+                .doesNotContain("convertToDTO")
+                .contains("toEntity");
+        assertThat(compilation.notes()).extracting(note -> note.getMessage(null))
+                .contains("Not generating toDTO: already overridden by p.BookMapper");
+    }
+
+    @Test
+    void generatesNothingForMappersOfOpenTypes() {
+        JavaFileObject mapper = JavaFileObjects.forSourceString("p.AnyMapper", """
+                package p;
+
+                import com.kgkilas.mapping.annotation.MapperBean;
+                import com.kgkilas.mapping.mapper.GenericMapper;
+                import org.modelmapper.ModelMapper;
+
+                @MapperBean
+                public class AnyMapper<T> extends GenericMapper<T, T> {
+                    public AnyMapper(ModelMapper modelMapper, Class<T> type) {
+                        super(modelMapper, type, type);
+                    }
+                }
+                """);
+
+        Compilation compilation = compile(mapper);
+
+        assertThat(compilation.generatedSourceFiles()).isEmpty();
+        assertThat(compilation.diagnostics()).extracting(Diagnostic::getKind).containsOnly(Diagnostic.Kind.NOTE);
+    }
+}
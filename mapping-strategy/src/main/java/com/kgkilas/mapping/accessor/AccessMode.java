@@ -0,0 +1,43 @@
+package com.kgkilas.mapping.accessor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Selects how the mapper reads and writes fields while patching.
+ */
+public enum AccessMode {
+    /** Plain {@link Field} reflection. */
+    REFLECTION,
+    /** {@link java.lang.invoke.VarHandle}s, falling back to reflection where a handle cannot be obtained. */
+    HANDLES,
+    /**
+     * A patcher class generated per (update type, existing type) pair with direct field accesses.
+     * Uses {@link #HANDLES} for the fields it delegates and whenever generation is not possible.
+     */
+    GENERATED;
+
+    private static final Logger logger = LoggerFactory.getLogger(AccessMode.class);
+
+    /**
+     * Creates an accessor for the given accessible field.
+     *
+     * @param field the field to access
+     * @return the accessor
+     */
+    public FieldAccessor accessorFor(Field field) {
+        if (this == REFLECTION || Modifier.isFinal(field.getModifiers())) {
+            return new ReflectionFieldAccessor(field);
+        }
+        try {
+            return VarHandleFieldAccessor.of(field);
+        } catch (IllegalAccessException | RuntimeException e) {
+            logger.debug("No VarHandle for field '{}' of {}, using reflection", field.getName(),
+                    field.getDeclaringClass().getName(), e);
+            return new ReflectionFieldAccessor(field);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.kgkilas.mapping.accessor;
+
+/**
+ * Reads and writes a single field of an object.
+ * Implementations are immutable, resolved once per field and shared by all patch plans.
+ */
+public interface FieldAccessor {
+
+    /**
+     * @return the name of the accessed field
+     */
+    String getName();
+
+    /**
+     * @return the declared type of the accessed field
+     */
+    Class<?> getType();
+
+    /**
+     * Reads the field value, boxing primitives.
+     *
+     * @param target the object to read from
+     * @return the field value
+     */
+    Object get(Object target);
+
+    /**
+     * Writes the field value, unboxing primitives.
+     *
+     * @param target the object to write to
+     * @param value  the new value
+     * @throws IllegalArgumentException if the field is primitive and the value is null or of the wrong type
+     */
+    void set(Object target, Object value);
+
+    /**
+     * Copies the value of this field on source into the field of targetAccessor on target.
+     * Implementations avoid boxing when both fields have the same primitive type.
+     *
+     * @param source         the object to read from
+     * @param targetAccessor the accessor of the field to write
+     * @param target         the object to write to
+     */
+    default void copyTo(Object source, FieldAccessor targetAccessor, Object target) {
+        targetAccessor.set(target, get(source));
+    }
+}
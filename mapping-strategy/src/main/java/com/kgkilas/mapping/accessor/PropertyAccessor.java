@@ -0,0 +1,108 @@
+package com.kgkilas.mapping.accessor;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * {@link FieldAccessor} for a bean property, read through its getter and written through its setter.
+ * Going through the accessor methods instead of the field lets lazy-loading proxies initialise
+ * themselves and keeps any logic in the setters. The method handles are resolved once.
+ */
+public final class PropertyAccessor implements FieldAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final String name;
+    private final Class<?> type;
+    private final MethodHandle getter;
+    private final MethodHandle setter;
+
+    private PropertyAccessor(String name, Class<?> type, MethodHandle getter, MethodHandle setter) {
+        this.name = name;
+        this.type = type;
+        this.getter = getter;
+        this.setter = setter;
+    }
+
+    /**
+     * Creates an accessor for the property with the given name if the class has a public getter and setter for it.
+     *
+     * @param ownerType the class declaring or inheriting the property
+     * @param name      the property name
+     * @return the accessor, or null if the class has no usable getter and setter pair
+     */
+    public static PropertyAccessor of(Class<?> ownerType, String name) {
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        Method getter = findMethod(ownerType, "get" + suffix);
+        if (getter == null || getter.getReturnType() == void.class) {
+            getter = findMethod(ownerType, "is" + suffix);
+            if (getter == null || getter.getReturnType() != boolean.class) {
+                return null;
+            }
+        }
+        Method setter = findMethod(ownerType, "set" + suffix, getter.getReturnType());
+        if (setter == null) {
+            return null;
+        }
+        try {
+            getter.setAccessible(true);
+            setter.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            return new PropertyAccessor(name, getter.getReturnType(),
+                    lookup.unreflect(getter).asType(GETTER_TYPE), lookup.unreflect(setter).asType(SETTER_TYPE));
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Method findMethod(Class<?> ownerType, String methodName, Class<?>... parameterTypes) {
+        try {
+            Method method = ownerType.getMethod(methodName, parameterTypes);
+            return Modifier.isStatic(method.getModifiers()) ? null : method;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    public Object get(Object target) {
+        try {
+            return (Object) getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Getter of property '" + name + "' failed", e);
+        }
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        if (value == null && type.isPrimitive()) {
+            throw new IllegalArgumentException("Cannot set primitive property '" + name + "' to null");
+        }
+        try {
+            setter.invokeExact(target, value);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Cannot set property '" + name + "' of type " + type.getName()
+                    + " to value of type " + value.getClass().getName(), e);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Setter of property '" + name + "' failed", e);
+        }
+    }
+}
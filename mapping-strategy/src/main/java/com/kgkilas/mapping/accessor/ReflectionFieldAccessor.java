@@ -0,0 +1,44 @@
+package com.kgkilas.mapping.accessor;
+
+import java.lang.reflect.Field;
+
+/**
+ * {@link FieldAccessor} backed by {@link Field#get(Object)} and {@link Field#set(Object, Object)}.
+ * The field must already be accessible.
+ */
+public final class ReflectionFieldAccessor implements FieldAccessor {
+
+    private final Field field;
+
+    public ReflectionFieldAccessor(Field field) {
+        this.field = field;
+    }
+
+    @Override
+    public String getName() {
+        return field.getName();
+    }
+
+    @Override
+    public Class<?> getType() {
+        return field.getType();
+    }
+
+    @Override
+    public Object get(Object target) {
+        try {
+            return field.get(target);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Field '" + field.getName() + "' is not accessible", e);
+        }
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        try {
+            field.set(target, value);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Field '" + field.getName() + "' is not accessible", e);
+        }
+    }
+}
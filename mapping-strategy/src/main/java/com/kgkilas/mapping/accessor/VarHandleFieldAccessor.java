@@ -0,0 +1,204 @@
+package com.kgkilas.mapping.accessor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Field;
+
+/**
+ * {@link FieldAccessor} backed by a {@link VarHandle} obtained through
+ * {@link MethodHandles#privateLookupIn(Class, MethodHandles.Lookup)}.
+ * <p>
+ * A handle kept in an instance field is not a constant to the JIT, so every access would go through the generic
+ * handle invocation. {@link #of(Field)} therefore binds the handle to a {@code static final} field of a hidden
+ * subclass generated per field, whose {@link #get(Object)} and {@link #set(Object, Object)} the JIT compiles to
+ * the field access itself once the call site is inlined. The call through {@link FieldAccessor} stays an
+ * interface call, monomorphic only where a single field's accessor reaches it. Where the subclass cannot be
+ * defined, the handle is used from the instance field. Primitive fields are copied between accessors of the same
+ * type without boxing, through the instance handles.
+ */
+public class VarHandleFieldAccessor implements FieldAccessor {
+    private static final Logger logger = LoggerFactory.getLogger(VarHandleFieldAccessor.class);
+
+    private static final String SUPER = Type.getInternalName(VarHandleFieldAccessor.class);
+    private static final String CONSTANT_CLASS = SUPER + "$$Constant";
+    private static final String VAR_HANDLE = Type.getInternalName(VarHandle.class);
+    private static final String CONSTRUCTOR_DESCRIPTOR = MethodType.methodType(void.class, String.class, Class.class,
+            VarHandle.class).toMethodDescriptorString();
+    private static final byte[] CONSTANT_BYTES = generateConstantClass();
+
+    private final String name;
+    private final Class<?> type;
+    private final VarHandle handle;
+
+    VarHandleFieldAccessor(String name, Class<?> type, VarHandle handle) {
+        this.name = name;
+        this.type = type;
+        this.handle = handle;
+    }
+
+    /**
+     * Creates an accessor for the given non-final instance field, with its handle bound as a constant
+     * where possible.
+     *
+     * @param field the field to access
+     * @return the accessor
+     * @throws IllegalAccessException if the declaring class cannot be privately looked up
+     */
+    public static VarHandleFieldAccessor of(Field field) throws IllegalAccessException {
+        MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+        VarHandle handle = lookup.unreflectVarHandle(field);
+        if (CONSTANT_BYTES != null) {
+            try {
+                MethodHandles.Lookup constantLookup = MethodHandles.lookup()
+                        .defineHiddenClassWithClassData(CONSTANT_BYTES, handle, true);
+                return (VarHandleFieldAccessor) constantLookup.findConstructor(constantLookup.lookupClass(),
+                                MethodType.fromMethodDescriptorString(CONSTRUCTOR_DESCRIPTOR, null))
+                        .invoke(field.getName(), field.getType(), handle);
+            } catch (Throwable e) {
+                logger.debug("Cannot bind the handle of field '{}' of {} as a constant", field.getName(),
+                        field.getDeclaringClass().getName(), e);
+            }
+        }
+        return new VarHandleFieldAccessor(field.getName(), field.getType(), handle);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Class<?> getType() {
+        return type;
+    }
+
+    @Override
+    public Object get(Object target) {
+        return handle.get(target);
+    }
+
+    @Override
+    public void set(Object target, Object value) {
+        if (value == null && type.isPrimitive()) {
+            throw new IllegalArgumentException("Cannot set primitive field '" + name + "' to null");
+        }
+        try {
+            write(target, value);
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Cannot set field '" + name + "' of type " + type.getName()
+                    + " to value of type " + value.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Writes the field value without checks; overridden by the generated subclass.
+     *
+     * @param target the object to write to
+     * @param value  the new value
+     */
+    void write(Object target, Object value) {
+        handle.set(target, value);
+    }
+
+    @Override
+    public void copyTo(Object source, FieldAccessor targetAccessor, Object target) {
+        if (!type.isPrimitive() || !(targetAccessor instanceof VarHandleFieldAccessor)
+                || targetAccessor.getType() != type) {
+            FieldAccessor.super.copyTo(source, targetAccessor, target);
+            return;
+        }
+        VarHandle targetHandle = ((VarHandleFieldAccessor) targetAccessor).handle;
+        if (type == int.class) {
+            targetHandle.set(target, (int) handle.get(source));
+        } else if (type == long.class) {
+            targetHandle.set(target, (long) handle.get(source));
+        } else if (type == boolean.class) {
+            targetHandle.set(target, (boolean) handle.get(source));
+        } else if (type == double.class) {
+            targetHandle.set(target, (double) handle.get(source));
+        } else if (type == float.class) {
+            targetHandle.set(target, (float) handle.get(source));
+        } else if (type == short.class) {
+            targetHandle.set(target, (short) handle.get(source));
+        } else if (type == byte.class) {
+            targetHandle.set(target, (byte) handle.get(source));
+        } else {
+            targetHandle.set(target, (char) handle.get(source));
+        }
+    }
+
+    /**
+     * Generates the subclass reading its handle from the class data into a static final field and
+     * overriding {@link #get(Object)} and {@link #write(Object, Object)} to use it.
+     */
+    private static byte[] generateConstantClass() {
+        try {
+            ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+            writer.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, CONSTANT_CLASS, null, SUPER, null);
+            writer.visitField(Opcodes.ACC_PRIVATE | Opcodes.ACC_STATIC | Opcodes.ACC_FINAL, "HANDLE",
+                    "L" + VAR_HANDLE + ";", null, null).visitEnd();
+
+            MethodVisitor init = writer.visitMethod(Opcodes.ACC_STATIC, "<clinit>", "()V", null, null);
+            init.visitCode();
+            init.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodHandles", "lookup",
+                    "()Ljava/lang/invoke/MethodHandles$Lookup;", false);
+            init.visitLdcInsn("_");
+            init.visitLdcInsn(Type.getType(VarHandle.class));
+            init.visitMethodInsn(Opcodes.INVOKESTATIC, "java/lang/invoke/MethodHandles", "classData",
+                    "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;", false);
+            init.visitTypeInsn(Opcodes.CHECKCAST, VAR_HANDLE);
+            init.visitFieldInsn(Opcodes.PUTSTATIC, CONSTANT_CLASS, "HANDLE", "L" + VAR_HANDLE + ";");
+            init.visitInsn(Opcodes.RETURN);
+            init.visitMaxs(0, 0);
+            init.visitEnd();
+
+            MethodVisitor constructor = writer.visitMethod(0, "<init>", CONSTRUCTOR_DESCRIPTOR, null, null);
+            constructor.visitCode();
+            constructor.visitVarInsn(Opcodes.ALOAD, 0);
+            constructor.visitVarInsn(Opcodes.ALOAD, 1);
+            constructor.visitVarInsn(Opcodes.ALOAD, 2);
+            constructor.visitVarInsn(Opcodes.ALOAD, 3);
+            constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, SUPER, "<init>", CONSTRUCTOR_DESCRIPTOR, false);
+            constructor.visitInsn(Opcodes.RETURN);
+            constructor.visitMaxs(0, 0);
+            constructor.visitEnd();
+
+            MethodVisitor get = writer.visitMethod(Opcodes.ACC_PUBLIC, "get",
+                    "(Ljava/lang/Object;)Ljava/lang/Object;", null, null);
+            get.visitCode();
+            get.visitFieldInsn(Opcodes.GETSTATIC, CONSTANT_CLASS, "HANDLE", "L" + VAR_HANDLE + ";");
+            get.visitVarInsn(Opcodes.ALOAD, 1);
+            get.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VAR_HANDLE, "get",
+                    "(Ljava/lang/Object;)Ljava/lang/Object;", false);
+            get.visitInsn(Opcodes.ARETURN);
+            get.visitMaxs(0, 0);
+            get.visitEnd();
+
+            MethodVisitor write = writer.visitMethod(0, "write",
+                    "(Ljava/lang/Object;Ljava/lang/Object;)V", null, null);
+            write.visitCode();
+            write.visitFieldInsn(Opcodes.GETSTATIC, CONSTANT_CLASS, "HANDLE", "L" + VAR_HANDLE + ";");
+            write.visitVarInsn(Opcodes.ALOAD, 1);
+            write.visitVarInsn(Opcodes.ALOAD, 2);
+            write.visitMethodInsn(Opcodes.INVOKEVIRTUAL, VAR_HANDLE, "set",
+                    "(Ljava/lang/Object;Ljava/lang/Object;)V", false);
+            write.visitInsn(Opcodes.RETURN);
+            write.visitMaxs(0, 0);
+            write.visitEnd();
+
+            writer.visitEnd();
+            return writer.toByteArray();
+        } catch (RuntimeException e) {
+            logger.warn("Cannot generate constant VarHandle accessors, using instance handles", e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.kgkilas.mapping.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Annotation to select how the GenericMapper patches a collection or map field.
+ * Collection and map fields without this annotation are replaced.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface PatchCollection {
+
+    /**
+     * The ways an existing collection or map can be patched.
+     */
+    enum Mode {
+        /** The existing collection or map is replaced by the update's instance. */
+        REPLACE,
+        /**
+         * Elements of the update are added to the existing collection, except those a set already contains;
+         * map entries are put into the existing map.
+         */
+        APPEND,
+        /**
+         * Elements are matched by {@link #key()} against the existing elements: matches are patched recursively,
+         * the rest are added, even several with the same key. Map values are matched by map key.
+         */
+        MERGE
+    }
+
+    Mode mode() default Mode.REPLACE;
+
+    /**
+     * Name of the element field used to match elements in {@link Mode#MERGE}.
+     * When empty, elements are matched by {@code equals}.
+     */
+    String key() default "";
+}
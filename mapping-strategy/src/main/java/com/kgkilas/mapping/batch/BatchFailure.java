@@ -0,0 +1,29 @@
+package com.kgkilas.mapping.batch;
+
+import lombok.Getter;
+
+/**
+ * An item of a batch that could not be processed.
+ */
+@Getter
+public final class BatchFailure {
+    private final int index;
+    private final Object key;
+    private final RuntimeException error;
+
+    /**
+     * @param index the position of the item in the batch input
+     * @param key   the key identifying the item, may be null
+     * @param error the cause of the failure
+     */
+    public BatchFailure(int index, Object key, RuntimeException error) {
+        this.index = index;
+        this.key = key;
+        this.error = error;
+    }
+
+    @Override
+    public String toString() {
+        return "#" + index + (key != null ? " (" + key + ")" : "") + ": " + error.getMessage();
+    }
+}
@@ -0,0 +1,69 @@
+package com.kgkilas.mapping.batch;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The outcome of a batch operation: one result per input item, in input order, and the failed items.
+ * A failed item does not abort the batch; its result is null.
+ *
+ * @param <T> the type of the per-item results
+ */
+public final class BatchResult<T> {
+    private final List<T> results;
+    private final List<BatchFailure> failures;
+
+    private BatchResult(List<T> results, List<BatchFailure> failures) {
+        this.results = results;
+        this.failures = failures;
+    }
+
+    /**
+     * Creates a result from per-index arrays filled by the batch workers.
+     *
+     * @param results the result of every item, null for failed items
+     * @param keys    the key of every item, may be null
+     * @param errors  the error of every failed item, null for succeeded items
+     * @param <T>     the type of the per-item results
+     * @return the batch result
+     */
+    public static <T> BatchResult<T> of(T[] results, Object[] keys, RuntimeException[] errors) {
+        List<BatchFailure> failures = new ArrayList<>();
+        for (int i = 0; i < errors.length; i++) {
+            if (errors[i] != null) {
+                failures.add(new BatchFailure(i, keys == null ? null : keys[i], errors[i]));
+            }
+        }
+        return new BatchResult<>(Collections.unmodifiableList(Arrays.asList(results)), Collections.unmodifiableList(failures));
+    }
+
+    /**
+     * @return the result of every item in input order, null for failed items
+     */
+    public List<T> getResults() {
+        return results;
+    }
+
+    /**
+     * @return the failed items in input order
+     */
+    public List<BatchFailure> getFailures() {
+        return failures;
+    }
+
+    /**
+     * @return true if no item failed
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty();
+    }
+
+    /**
+     * @return the number of items processed successfully
+     */
+    public int getSuccessCount() {
+        return results.size() - failures.size();
+    }
+}
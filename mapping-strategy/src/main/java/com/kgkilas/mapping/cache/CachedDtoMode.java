@@ -0,0 +1,11 @@
+package com.kgkilas.mapping.cache;
+
+/**
+ * Selects how a mapper hands out DTOs kept in a {@link DtoCache}.
+ */
+public enum CachedDtoMode {
+    /** Every caller gets its own deep copy of the cached DTO, which it may change freely. */
+    COPY,
+    /** Every caller gets the cached DTO itself; only for DTOs that are immutable or never changed by callers. */
+    SHARED
+}
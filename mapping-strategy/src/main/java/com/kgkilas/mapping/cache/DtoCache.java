@@ -0,0 +1,576 @@
+package com.kgkilas.mapping.cache;
+
+import com.kgkilas.mapping.patch.PatchPlan;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Id;
+import jakarta.persistence.Version;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.EntityEntry;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.engine.spi.Status;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.config.Configuration.AccessLevel;
+import org.modelmapper.convention.MatchingStrategies;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded cache of converted DTOs, keyed by the mapper, the entity class and id, and checked against the entity's
+ * {@link Version} attribute, so a DTO is converted again as soon as its entity has changed.
+ * <p>
+ * Entries are evicted least recently used first once there are more than the maximum number of entries or their
+ * total weight exceeds the maximum weight. Entries are removed when Hibernate updates or deletes their entity or
+ * one of the associated entities the DTO was also converted from, or changes a collection of one of them, once
+ * {@link #listenTo(EntityManagerFactory)} registered the cache's listeners; this is what keeps entities without
+ * version attribute, and DTOs of associations, from being served stale. Only entities with an {@link Id} or
+ * {@link EmbeddedId} field and a set id are cached, and only DTOs whose associated entities have one too.
+ * <p>
+ * The listeners only see flushed changes, so the cache is neither read nor written for entities that are not
+ * managed by an open session having loaded entities on the current thread, or that have unflushed changes in it,
+ * nor for DTOs one of whose associated entities has such changes.
+ * A cache may be shared by several mappers and is thread-safe.
+ */
+public final class DtoCache {
+    private static final Logger logger = LoggerFactory.getLogger(DtoCache.class);
+
+    private static final ClassValue<EntityFields> ENTITY_FIELDS = new ClassValue<>() {
+        @Override
+        protected EntityFields computeValue(Class<?> type) {
+            return EntityFields.of(type);
+        }
+    };
+
+    /**
+     * The id and version fields of an entity class.
+     */
+    private static final class EntityFields {
+        private static final EntityFields NOT_CACHED = new EntityFields(null, null);
+
+        private final Field idField;
+        private final Field versionField;
+
+        private EntityFields(Field idField, Field versionField) {
+            this.idField = idField;
+            this.versionField = versionField;
+        }
+
+        private static EntityFields of(Class<?> type) {
+            if (!type.isAnnotationPresent(Entity.class)) {
+                return NOT_CACHED;
+            }
+            Field idField = null;
+            Field versionField = null;
+            for (Field field : PatchPlan.fieldTable(type).values()) {
+                if (idField == null && (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class))) {
+                    idField = field;
+                } else if (versionField == null && field.isAnnotationPresent(Version.class)) {
+                    versionField = field;
+                }
+            }
+            if (idField == null) {
+                logger.debug("{} has no id field, its DTOs will not be cached", type.getName());
+                return NOT_CACHED;
+            }
+            try {
+                idField.setAccessible(true);
+                if (versionField != null) {
+                    versionField.setAccessible(true);
+                }
+            } catch (RuntimeException e) {
+                logger.warn("Id or version of {} cannot be read, its DTOs will not be cached", type.getName(), e);
+                return NOT_CACHED;
+            }
+            return new EntityFields(idField, versionField);
+        }
+    }
+
+    /**
+     * Identifies an entity by its class and id.
+     */
+    private static final class EntityRef {
+        private final Class<?> type;
+        private final Object id;
+
+        private EntityRef(Class<?> type, Object id) {
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof EntityRef && ((EntityRef) other).type == type && ((EntityRef) other).id.equals(id);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * type.hashCode() + id.hashCode();
+        }
+    }
+
+    /**
+     * The key of an entity's DTO converted by a mapper, with the entity's version and session when the key was taken.
+     * The session is only used while the key is looked up or put, never kept in the cache.
+     */
+    public static final class Key {
+        private final Object owner;
+        private final EntityRef entity;
+        private final Object version;
+        private final long stamp;
+        private final SharedSessionContractImplementor session;
+
+        private Key(Object owner, EntityRef entity, Object version, long stamp, SharedSessionContractImplementor session) {
+            this.owner = owner;
+            this.entity = entity;
+            this.version = version;
+            this.stamp = stamp;
+            this.session = session;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && ((Key) other).owner == owner && ((Key) other).entity.equals(entity);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(owner) + entity.hashCode();
+        }
+    }
+
+    /**
+     * A cached DTO with the version of the entity it was converted from and the associated entities it was also
+     * converted from.
+     */
+    private static final class Entry {
+        private final Object dto;
+        private final Object version;
+        private final long weight;
+        private final List<EntityRef> sources;
+
+        private Entry(Object dto, Object version, long weight, List<EntityRef> sources) {
+            this.dto = dto;
+            this.version = version;
+            this.weight = weight;
+            this.sources = sources;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final ToLongFunction<Object> weigher;
+    private final ModelMapper copier;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<EntityRef, Set<Key>> keysByEntity = new HashMap<>();
+    private final ThreadLocal<Set<SharedSessionContractImplementor>> loadingSessions =
+            ThreadLocal.withInitial(() -> Collections.newSetFromMap(new WeakHashMap<>()));
+    private long weight;
+    private long invalidations;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long invalidationCount;
+
+    /**
+     * Creates a cache bounded by the number of entries, every DTO weighing 1.
+     *
+     * @param maxEntries the maximum number of entries
+     * @throws IllegalArgumentException if the maximum is not positive
+     */
+    public DtoCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, dto -> 1);
+    }
+
+    /**
+     * Creates a cache bounded by the number of entries and their total weight.
+     *
+     * @param maxEntries the maximum number of entries
+     * @param maxWeight  the maximum total weight of the entries; a DTO weighing more is not cached
+     * @param weigher    the weight of a DTO, e.g. an estimate of its size or of the size of its collections
+     * @throws IllegalArgumentException if a maximum is not positive
+     */
+    public DtoCache(int maxEntries, long maxWeight, ToLongFunction<Object> weigher) {
+        if (maxEntries <= 0 || maxWeight <= 0) {
+            throw new IllegalArgumentException("maxEntries and maxWeight must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
+        this.copier = new ModelMapper();
+        copier.getConfiguration()
+                .setMatchingStrategy(MatchingStrategies.STRICT)
+                .setFieldMatchingEnabled(true)
+                .setFieldAccessLevel(AccessLevel.PRIVATE)
+                .setDeepCopyEnabled(true);
+    }
+
+    /**
+     * Registers listeners removing the entries of every entity Hibernate updates or deletes, both when the change
+     * is flushed and when its transaction ends, whether it commits or not, and a listener remembering the sessions
+     * loading entities on each thread, by which the cache tells whether an entity has unflushed changes.
+     *
+     * @param entityManagerFactory the Hibernate entity manager factory
+     */
+    public void listenTo(EntityManagerFactory entityManagerFactory) {
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry().getService(EventListenerRegistry.class);
+        DtoCacheInvalidator invalidator = new DtoCacheInvalidator(this);
+        registry.appendListeners(EventType.POST_UPDATE, invalidator);
+        registry.appendListeners(EventType.POST_DELETE, invalidator);
+        registry.appendListeners(EventType.POST_COMMIT_UPDATE, invalidator);
+        registry.appendListeners(EventType.POST_COMMIT_DELETE, invalidator);
+        registry.appendListeners(EventType.POST_COLLECTION_RECREATE, invalidator);
+        registry.appendListeners(EventType.POST_COLLECTION_UPDATE, invalidator);
+        registry.appendListeners(EventType.POST_COLLECTION_REMOVE, invalidator);
+        registry.appendListeners(EventType.POST_LOAD, (PostLoadEventListener) event ->
+                loadingSessions.get().add(event.getSession()));
+        logger.debug("DTO cache listening to updates and deletes");
+    }
+
+    /**
+     * Returns the key of the DTO the given mapper converts from the entity. Only entities managed by an open session
+     * known to the cache, through the entity's proxy or as a session that loaded entities on the current thread,
+     * have a key, and only while they have no changes in that session: the DTO of an unflushed state must neither
+     * be served the former DTO nor be cached, as its transaction may still roll back without any listener running.
+     *
+     * @param owner  the mapper
+     * @param entity the entity, may be a proxy
+     * @return the key, or null if the entity's DTOs are not cached
+     */
+    public Key keyOf(Object owner, Object entity) {
+        SharedSessionContractImplementor session = null;
+        if (entity instanceof HibernateProxy) {
+            LazyInitializer initializer = ((HibernateProxy) entity).getHibernateLazyInitializer();
+            session = initializer.getSession();
+            entity = initializer.getImplementation();
+        }
+        EntityRef ref = refOf(entity);
+        if (ref == null) {
+            return null;
+        }
+        if (session == null || session.isClosed()) {
+            session = sessionOf(entity);
+        }
+        if (session == null || isDirty(session, entity)) {
+            return null;
+        }
+        EntityFields fields = ENTITY_FIELDS.get(entity.getClass());
+        Object version = fields.versionField == null ? null : read(fields.versionField, entity);
+        synchronized (this) {
+            return new Key(owner, ref, version, invalidations, session);
+        }
+    }
+
+    /**
+     * @return the open session that loaded entities on the current thread and manages the entity, or null
+     */
+    private SharedSessionContractImplementor sessionOf(Object entity) {
+        Iterator<SharedSessionContractImplementor> sessions = loadingSessions.get().iterator();
+        while (sessions.hasNext()) {
+            SharedSessionContractImplementor session = sessions.next();
+            if (session.isClosed()) {
+                sessions.remove();
+            } else if (session.getPersistenceContextInternal().getEntry(entity) != null) {
+                return session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether the entity has changes in the session that are not flushed: changed properties, a changed collection,
+     * or a collection replaced by a plain one. Entities the session does not manage have none.
+     */
+    private static boolean isDirty(SharedSessionContractImplementor session, Object entity) {
+        EntityEntry entry = session.getPersistenceContextInternal().getEntry(entity);
+        if (entry == null) {
+            return false;
+        }
+        if (entry.getStatus() != Status.MANAGED) {
+            return true;
+        }
+        if (entry.isReadOnly() || entry.getLoadedState() == null) {
+            return false;
+        }
+        EntityPersister persister = entry.getPersister();
+        Object[] state = persister.getValues(entity);
+        if (persister.findDirty(state, entry.getLoadedState(), entity, session) != null) {
+            return true;
+        }
+        for (Object value : state) {
+            if (value instanceof PersistentCollection ? ((PersistentCollection<?>) value).isDirty()
+                    : value instanceof Collection || value instanceof Map) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether one of the entities the session manages for the given references has unflushed changes.
+     */
+    private static boolean anyDirty(SharedSessionContractImplementor session, List<EntityRef> refs) {
+        for (EntityRef ref : refs) {
+            EntityPersister persister = session.getFactory().getMappingMetamodel().findEntityDescriptor(ref.type);
+            if (persister == null) {
+                continue;
+            }
+            Object managed = session.getPersistenceContextInternal().getEntity(session.generateEntityKey(ref.id, persister));
+            if (managed != null && isDirty(session, managed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the class and id of the entity, or null if it is not an entity with an id field and a set id
+     */
+    private static EntityRef refOf(Object entity) {
+        if (entity == null) {
+            return null;
+        }
+        EntityFields fields = ENTITY_FIELDS.get(entity.getClass());
+        if (fields == EntityFields.NOT_CACHED) {
+            return null;
+        }
+        Object id = read(fields.idField, entity);
+        return id == null ? null : new EntityRef(entity.getClass(), id);
+    }
+
+    private static Object read(Field field, Object entity) {
+        try {
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read the id or version of " + entity.getClass().getName(), e);
+        }
+    }
+
+    /**
+     * Returns the cached DTO of the key, if it was converted from the same version of the entity and none of the
+     * associated entities it was also converted from has unflushed changes in the key's session.
+     *
+     * @param key the key
+     * @return the cached DTO, or null if there is none
+     */
+    public Object get(Key key) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null || !Objects.equals(entry.version, key.version)) {
+                missCount++;
+                return null;
+            }
+        }
+        boolean dirty = key.session != null && anyDirty(key.session, entry.sources);
+        synchronized (this) {
+            if (dirty) {
+                missCount++;
+                return null;
+            }
+            hitCount++;
+        }
+        return entry.dto;
+    }
+
+    /**
+     * Caches the DTO converted for the key, unless an entity was invalidated since the key was taken, as the DTO
+     * may then be converted from a state that was changed meanwhile.
+     *
+     * @param key the key
+     * @param dto the DTO, no longer changed by anyone
+     */
+    public void put(Key key, Object dto) {
+        put(key, dto, List.of());
+    }
+
+    /**
+     * Caches the DTO converted for the key and the associated entities it was also converted from, so a change to
+     * any of them removes the entry. Not cached if an entity was invalidated since the key was taken, if one of
+     * the associated entities has no id by which its changes could be told, or has unflushed changes in the key's
+     * session.
+     *
+     * @param key     the key
+     * @param dto     the DTO, no longer changed by anyone
+     * @param sources the associated entities the DTO was converted from, e.g. the author of a book
+     */
+    public void put(Key key, Object dto, Collection<?> sources) {
+        List<EntityRef> refs = new ArrayList<>(sources.size());
+        for (Object source : sources) {
+            EntityRef ref = refOf(source);
+            if (ref == null) {
+                logger.debug("DTO of {} read {} without id, not caching it", key.entity.type.getName(),
+                        source == null ? null : source.getClass().getName());
+                return;
+            }
+            if (key.session != null && isDirty(key.session, source)) {
+                return;
+            }
+            if (!ref.equals(key.entity)) {
+                refs.add(ref);
+            }
+        }
+        long dtoWeight = weigher.applyAsLong(dto);
+        synchronized (this) {
+            if (key.stamp != invalidations || dtoWeight > maxWeight) {
+                return;
+            }
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                forget(key, previous);
+            }
+            key = new Key(key.owner, key.entity, key.version, key.stamp, null);
+            entries.put(key, new Entry(dto, key.version, dtoWeight, refs));
+            index(key.entity, key);
+            for (EntityRef ref : refs) {
+                index(ref, key);
+            }
+            weight += dtoWeight;
+            Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries || weight > maxWeight) {
+                Map.Entry<Key, Entry> evicted = eldest.next();
+                eldest.remove();
+                forget(evicted.getKey(), evicted.getValue());
+                evictionCount++;
+            }
+        }
+    }
+
+    /**
+     * Returns a deep copy of a cached DTO.
+     *
+     * @param dto      the DTO
+     * @param dtoClass the DTO class
+     * @param <D>      the type of the DTO
+     * @return the copy
+     */
+    public <D> D copy(D dto, Class<D> dtoClass) {
+        return copier.map(dto, dtoClass);
+    }
+
+    /**
+     * Removes the entries of an entity and those converted from it as an associated entity, whatever mapper
+     * converted them.
+     *
+     * @param entityClass the entity class
+     * @param id          the id of the entity
+     */
+    public synchronized void invalidate(Class<?> entityClass, Object id) {
+        invalidations++;
+        Set<Key> keys = keysByEntity.get(new EntityRef(entityClass, id));
+        if (keys == null) {
+            return;
+        }
+        for (Key key : new ArrayList<>(keys)) {
+            forget(key, entries.remove(key));
+            invalidationCount++;
+        }
+    }
+
+    /**
+     * Removes every entry.
+     */
+    public synchronized void invalidateAll() {
+        invalidations++;
+        invalidationCount += entries.size();
+        entries.clear();
+        keysByEntity.clear();
+        weight = 0;
+    }
+
+    private void index(EntityRef ref, Key key) {
+        keysByEntity.computeIfAbsent(ref, k -> new HashSet<>(2)).add(key);
+    }
+
+    private void forget(Key key, Entry entry) {
+        weight -= entry.weight;
+        unindex(key.entity, key);
+        for (EntityRef ref : entry.sources) {
+            unindex(ref, key);
+        }
+    }
+
+    private void unindex(EntityRef ref, Key key) {
+        Set<Key> keys = keysByEntity.get(ref);
+        if (keys == null) {
+            return;
+        }
+        keys.remove(key);
+        if (keys.isEmpty()) {
+            keysByEntity.remove(ref);
+        }
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the total weight of the entries
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the number of lookups that found a DTO of the current version
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that found no DTO or one of another version
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the share of lookups that were hits, 0 before the first lookup
+     */
+    public synchronized double getHitRate() {
+        long lookups = hitCount + missCount;
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * @return the number of entries evicted to stay within the bounds
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * @return the number of entries removed because their entity changed or the cache was cleared
+     */
+    public synchronized long getInvalidationCount() {
+        return invalidationCount;
+    }
+}
@@ -0,0 +1,78 @@
+package com.kgkilas.mapping.cache;
+
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostCommitDeleteEventListener;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+
+/**
+ * Hibernate listener removing the cached DTOs of updated and deleted entities. Registered for both the flush and
+ * the end of the transaction: the first keeps the changing transaction from being served the former DTO, the second
+ * drops DTOs other transactions converted from the uncommitted or rolled back state meanwhile. A changed collection
+ * removes the DTOs of its owner, which is not updated itself when it has no version attribute.
+ */
+final class DtoCacheInvalidator implements PostCommitUpdateEventListener, PostCommitDeleteEventListener,
+        PostCollectionRecreateEventListener, PostCollectionUpdateEventListener, PostCollectionRemoveEventListener {
+
+    private final DtoCache cache;
+
+    DtoCacheInvalidator(DtoCache cache) {
+        this.cache = cache;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        cache.invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent event) {
+        onPostUpdate(event);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        cache.invalidate(event.getPersister().getMappedClass(), event.getId());
+    }
+
+    @Override
+    public void onPostDeleteCommitFailed(PostDeleteEvent event) {
+        onPostDelete(event);
+    }
+
+    @Override
+    public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+        invalidateOwner(event);
+    }
+
+    @Override
+    public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+        invalidateOwner(event);
+    }
+
+    private void invalidateOwner(AbstractCollectionEvent event) {
+        Object ownerId = event.getAffectedOwnerIdOrNull();
+        if (ownerId != null) {
+            cache.invalidate(event.getSession().getFactory().getMappingMetamodel()
+                    .getEntityDescriptor(event.getAffectedOwnerEntityName()).getMappedClass(), ownerId);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return true;
+    }
+}
@@ -5,6 +5,7 @@ import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.GenericBeanDefinition;
+import org.springframework.beans.factory.support.RootBeanDefinition;
 import org.springframework.context.annotation.ClassPathScanningCandidateComponentProvider;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.core.type.filter.AnnotationTypeFilter;
@@ -18,6 +19,16 @@ import java.util.Set;
 @Configuration
 public class BaseMapperBeanConfig implements org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor {
 
+    /**
+     * Suffix of the mapper classes generated by the mapping-processor module.
+     */
+    private static final String GENERATED_MAPPER_SUFFIX = "_Generated";
+
+    /**
+     * Name of the bean warming up the registered mappers at startup.
+     */
+    private static final String WARM_UP_BEAN_NAME = "mapperWarmUp";
+
     private final String basePackage;
 
     public BaseMapperBeanConfig(@Value("${mapper.base.package}") String basePackage) {
@@ -41,6 +52,9 @@ public class BaseMapperBeanConfig implements org.springframework.beans.factory.s
                 throw new BeansException("Failed to process MapperBean annotation", e) {};
             }
         }
+        if (!registry.containsBeanDefinition(WARM_UP_BEAN_NAME)) {
+            registry.registerBeanDefinition(WARM_UP_BEAN_NAME, new RootBeanDefinition(MapperWarmUp.class));
+        }
     }
 
     private void registerBeansInPackage(ClassPathScanningCandidateComponentProvider scanner, BeanDefinitionRegistry registry, String packageName) throws ClassNotFoundException {
@@ -48,11 +62,25 @@ public class BaseMapperBeanConfig implements org.springframework.beans.factory.s
         for (BeanDefinition definition : packageComponents) {
             GenericBeanDefinition genericBeanDefinition = (GenericBeanDefinition) definition;
             Class<?> beanClass = Class.forName(genericBeanDefinition.getBeanClassName());
-            genericBeanDefinition.setBeanClass(beanClass);
+            genericBeanDefinition.setBeanClass(resolveGeneratedMapper(beanClass));
             registry.registerBeanDefinition(beanClass.getSimpleName(), genericBeanDefinition);
         }
     }
 
+    /**
+     * Returns the compile-time generated subclass of the given mapper if one is on the classpath,
+     * otherwise the mapper itself. The generated subclass checks the type maps of its ModelMapper before its first
+     * conversion and keeps the ModelMapper conversion where they do more than copy same-named properties.
+     */
+    private Class<?> resolveGeneratedMapper(Class<?> beanClass) {
+        try {
+            Class<?> generatedClass = Class.forName(beanClass.getName() + GENERATED_MAPPER_SUFFIX, false, beanClass.getClassLoader());
+            return beanClass.isAssignableFrom(generatedClass) ? generatedClass : beanClass;
+        } catch (ClassNotFoundException e) {
+            return beanClass;
+        }
+    }
+
     @Override
     public void postProcessBeanFactory(org.springframework.beans.factory.config.ConfigurableListableBeanFactory beanFactory) throws BeansException {
         // No implementation needed
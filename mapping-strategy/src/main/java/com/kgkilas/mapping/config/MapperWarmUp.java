@@ -0,0 +1,86 @@
+package com.kgkilas.mapping.config;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Warms up every registered mapper in parallel once all singletons are created, so the ModelMapper type maps
+ * are not built on the first request after a deploy. Logs the time taken per mapper and in total.
+ * <p>
+ * Opt-in through {@code mapper.warmup.enabled} (default false). A mapper failing to warm up is only logged, as
+ * its first conversion would fail the same way; {@code mapper.warmup.fail-on-unmapped} (default false) fails
+ * startup if a type map leaves destination properties unmapped instead of only logging them.
+ */
+public class MapperWarmUp implements SmartInitializingSingleton {
+    private static final Logger logger = LoggerFactory.getLogger(MapperWarmUp.class);
+
+    private final ObjectProvider<GenericMapper<?, ?>> mappers;
+    private final boolean enabled;
+    private final boolean failOnUnmapped;
+
+    public MapperWarmUp(ObjectProvider<GenericMapper<?, ?>> mappers,
+                        @Value("${mapper.warmup.enabled:false}") boolean enabled,
+                        @Value("${mapper.warmup.fail-on-unmapped:false}") boolean failOnUnmapped) {
+        this.mappers = mappers;
+        this.enabled = enabled;
+        this.failOnUnmapped = failOnUnmapped;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (enabled) {
+            warmUp(mappers.orderedStream().collect(Collectors.toList()));
+        }
+    }
+
+    /**
+     * Warms up the given mappers in parallel on the common fork-join pool.
+     *
+     * @param mappers the mappers to warm up
+     * @throws IllegalStateException if a mapper leaves properties unmapped and failing on unmapped properties
+     *                               is enabled
+     */
+    public void warmUp(List<GenericMapper<?, ?>> mappers) {
+        long start = System.nanoTime();
+        List<CompletableFuture<List<String>>> tasks = new ArrayList<>(mappers.size());
+        for (GenericMapper<?, ?> mapper : mappers) {
+            tasks.add(CompletableFuture.supplyAsync(() -> warmUp(mapper)));
+        }
+        List<String> unmappedByMapper = new ArrayList<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            String mapperName = mappers.get(i).getClass().getSimpleName();
+            try {
+                List<String> unmapped = tasks.get(i).join();
+                if (!unmapped.isEmpty()) {
+                    logger.warn("Mapper {} leaves properties unmapped: {}", mapperName, unmapped);
+                    if (failOnUnmapped) {
+                        unmappedByMapper.add(mapperName + " leaves properties unmapped: " + unmapped);
+                    }
+                }
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                logger.warn("Mapper {} failed to warm up", mapperName, cause);
+            }
+        }
+        logger.info("Warmed up {} mappers in {} ms", mappers.size(), (System.nanoTime() - start) / 1_000_000);
+        if (!unmappedByMapper.isEmpty()) {
+            throw new IllegalStateException("Mapper warm-up failed:\n" + String.join("\n", unmappedByMapper));
+        }
+    }
+
+    private static List<String> warmUp(GenericMapper<?, ?> mapper) {
+        long start = System.nanoTime();
+        List<String> unmapped = mapper.warmUp();
+        logger.debug("Warmed up mapper {} in {} ms", mapper.getClass().getSimpleName(), (System.nanoTime() - start) / 1_000_000);
+        return unmapped;
+    }
+}
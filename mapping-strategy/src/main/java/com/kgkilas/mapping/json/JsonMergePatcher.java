@@ -0,0 +1,134 @@
+package com.kgkilas.mapping.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.patch.PatchField;
+import com.kgkilas.mapping.patch.PatchPlan;
+import com.kgkilas.mapping.strategy.NullHandlingStrategy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Applies a JSON Merge Patch (RFC 7396) directly from a Jackson token stream onto an existing object,
+ * without materializing an intermediate update DTO.
+ * <p>
+ * Members are matched to fields through the patch plan of the existing object's class. Explicit {@code null}
+ * members are passed to the {@link NullHandlingStrategy} (with a null update object), absent members are left
+ * untouched, nested objects are merged recursively into existing non-null values, and every other value
+ * replaces the field. Objects patching an existing map are merged key by key into that map: a {@code null}
+ * member removes its key, an object merges into the existing bean or map under its key, and any other value
+ * is put under its key.
+ */
+public final class JsonMergePatcher {
+    private static final Logger logger = LoggerFactory.getLogger(JsonMergePatcher.class);
+
+    private final ObjectMapper objectMapper;
+    private final AccessMode accessMode;
+    private final NullHandlingStrategy nullHandlingStrategy;
+
+    public JsonMergePatcher(ObjectMapper objectMapper, AccessMode accessMode, NullHandlingStrategy nullHandlingStrategy) {
+        this.objectMapper = objectMapper;
+        this.accessMode = accessMode;
+        this.nullHandlingStrategy = nullHandlingStrategy;
+    }
+
+    /**
+     * Reads one JSON object from the parser and merges it into existing.
+     *
+     * @param parser   the parser, positioned before or at the start of the patch object
+     * @param existing the object to be patched
+     * @throws IOException              if the JSON cannot be read or a value cannot be converted
+     * @throws IllegalArgumentException if the patch document is not a JSON object
+     */
+    public void apply(JsonParser parser, Object existing) throws IOException {
+        if (existing == null) {
+            throw new IllegalArgumentException("existingDTO must be non-null");
+        }
+        JsonToken token = parser.currentToken() == null ? parser.nextToken() : parser.currentToken();
+        if (token != JsonToken.START_OBJECT) {
+            throw new IllegalArgumentException("JSON merge patch must be an object, found " + token);
+        }
+        mergeObject(parser, existing);
+    }
+
+    private void mergeObject(JsonParser parser, Object existing) throws IOException {
+        PatchPlan plan = PatchPlan.of(existing.getClass(), existing.getClass(), accessMode);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken valueToken = parser.nextToken();
+            PatchField field = plan.getField(name);
+            if (field == null || !field.isPatchable()) {
+                logger.debug("Skipping member '{}' with no patchable field in {}", name, plan.getTargetType().getName());
+                parser.skipChildren();
+                continue;
+            }
+            mergeField(parser, valueToken, existing, field);
+        }
+    }
+
+    private void mergeField(JsonParser parser, JsonToken valueToken, Object existing, PatchField field) throws IOException {
+        if (valueToken == JsonToken.VALUE_NULL) {
+            try {
+                nullHandlingStrategy.handle(field, null, existing);
+                logger.debug("Field '{}' set to null", field.getName());
+            } catch (IllegalAccessException | NoSuchFieldException e) {
+                logger.error("Error accessing field '{}'", field.getName(), e);
+            }
+            return;
+        }
+        JavaType type = objectMapper.getTypeFactory().constructType(field.getTargetField().getGenericType());
+        if (valueToken == JsonToken.START_OBJECT && field.getValueKind() != PatchField.ValueKind.SIMPLE) {
+            Object existingValue = field.getTargetAccessor().get(existing);
+            if (existingValue instanceof Map && field.isContainer(existingValue)) {
+                mergeMap(parser, castMap(existingValue), type);
+                logger.debug("Map field '{}' merged", field.getName());
+                return;
+            }
+            if (existingValue != null && isMergeable(field, existingValue)) {
+                mergeObject(parser, existingValue);
+                return;
+            }
+        }
+        Object value = objectMapper.readValue(parser, type);
+        field.getTargetAccessor().set(existing, value);
+        logger.debug("Field '{}' updated with value '{}'", field.getName(), value);
+    }
+
+    private void mergeMap(JsonParser parser, Map<Object, Object> existing, JavaType mapType) throws IOException {
+        JavaType keyType = mapType.isMapLikeType() ? mapType.getKeyType() : objectMapper.constructType(Object.class);
+        JavaType valueType = mapType.isMapLikeType() ? mapType.getContentType() : objectMapper.constructType(Object.class);
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            Object key = objectMapper.convertValue(parser.currentName(), keyType);
+            JsonToken valueToken = parser.nextToken();
+            if (valueToken == JsonToken.VALUE_NULL) {
+                existing.remove(key);
+                continue;
+            }
+            Object existingValue = existing.get(key);
+            if (valueToken == JsonToken.START_OBJECT && existingValue instanceof Map) {
+                mergeMap(parser, castMap(existingValue), valueType);
+            } else if (valueToken == JsonToken.START_OBJECT && existingValue != null
+                    && PatchPlan.isBeanType(existingValue.getClass())) {
+                mergeObject(parser, existingValue);
+            } else {
+                existing.put(key, objectMapper.readValue(parser, valueType));
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> castMap(Object map) {
+        return (Map<Object, Object>) map;
+    }
+
+    private boolean isMergeable(PatchField field, Object existingValue) {
+        return field.isComplex(existingValue) && !(existingValue instanceof Map) && !(existingValue instanceof Collection);
+    }
+}
@@ -0,0 +1,119 @@
+package com.kgkilas.mapping.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A parsed JSON Patch (RFC 6902) document whose paths are compiled once.
+ * Instances are immutable and can be applied repeatedly through {@link JsonPatcher}.
+ */
+@Getter
+public final class JsonPatch {
+
+    /**
+     * The JSON Patch operation types.
+     */
+    public enum Op {
+        ADD, REMOVE, REPLACE, MOVE, COPY, TEST
+    }
+
+    /**
+     * A single operation with its compiled path and, for move and copy, its compiled source path.
+     */
+    @Getter
+    public static final class Operation {
+        private final Op op;
+        @Getter(lombok.AccessLevel.PACKAGE)
+        private final JsonPointerPath path;
+        @Getter(lombok.AccessLevel.PACKAGE)
+        private final JsonPointerPath from;
+        private final JsonNode value;
+
+        private Operation(Op op, JsonPointerPath path, JsonPointerPath from, JsonNode value) {
+            this.op = op;
+            this.path = path;
+            this.from = from;
+            this.value = value;
+        }
+
+        @Override
+        public String toString() {
+            return op.name().toLowerCase(Locale.ROOT) + " " + path;
+        }
+    }
+
+    private final List<Operation> operations;
+
+    private JsonPatch(List<Operation> operations) {
+        this.operations = Collections.unmodifiableList(operations);
+    }
+
+    /**
+     * Reads and compiles a JSON Patch document.
+     *
+     * @param objectMapper the mapper used to read the document
+     * @param parser       the parser positioned before or at the start of the operations array
+     * @return the compiled patch
+     * @throws IOException              if the JSON cannot be read
+     * @throws IllegalArgumentException if the document is not a valid JSON Patch
+     */
+    public static JsonPatch parse(ObjectMapper objectMapper, JsonParser parser) throws IOException {
+        return of(objectMapper.readTree(parser));
+    }
+
+    /**
+     * Compiles a JSON Patch document that has already been read into a tree.
+     *
+     * @param document the operations array
+     * @return the compiled patch
+     * @throws IllegalArgumentException if the document is not a valid JSON Patch
+     */
+    public static JsonPatch of(JsonNode document) {
+        if (document == null || !document.isArray()) {
+            throw new IllegalArgumentException("JSON patch must be an array of operations");
+        }
+        List<Operation> operations = new ArrayList<>(document.size());
+        for (JsonNode node : document) {
+            operations.add(operation(node));
+        }
+        return new JsonPatch(operations);
+    }
+
+    private static Operation operation(JsonNode node) {
+        Op op;
+        try {
+            op = Op.valueOf(requiredText(node, "op").toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown JSON patch operation " + node.get("op"), e);
+        }
+        JsonPointerPath path = JsonPointerPath.compile(requiredText(node, "path"));
+        JsonPointerPath from = op == Op.MOVE || op == Op.COPY ? JsonPointerPath.compile(requiredText(node, "from")) : null;
+        JsonNode value = null;
+        if (op == Op.ADD || op == Op.REPLACE || op == Op.TEST) {
+            value = node.get("value");
+            if (value == null) {
+                throw new IllegalArgumentException("JSON patch operation '" + node.get("op").asText() + "' requires a value");
+            }
+        }
+        if (op == Op.MOVE && from.isPrefixOf(path)) {
+            throw new IllegalArgumentException("Cannot move " + from + " into its own child " + path);
+        }
+        return new Operation(op, path, from, value);
+    }
+
+    private static String requiredText(JsonNode node, String member) {
+        JsonNode value = node.get(member);
+        if (value == null || !value.isTextual()) {
+            throw new IllegalArgumentException("JSON patch operation requires a string '" + member + "' member");
+        }
+        return value.asText();
+    }
+}
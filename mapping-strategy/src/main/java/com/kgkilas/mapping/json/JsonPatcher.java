@@ -0,0 +1,313 @@
+package com.kgkilas.mapping.json;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.patch.PatchField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Applies a compiled {@link JsonPatch} (RFC 6902) to an object graph in a single pass.
+ * <p>
+ * Pointer tokens address bean fields through the patch plan, list elements by index (or "-" for appending)
+ * and map entries by key. Removing a bean field sets it to null, whatever null handling strategy the mapper uses.
+ * <p>
+ * Operations are applied in order and the patch is atomic, as RFC 6902 requires: every change is recorded with
+ * its inverse, and if an operation fails or a test does not match, the changes made so far are undone in reverse
+ * order before an {@link IllegalArgumentException} is thrown. Objects created by the patch are replaced by the
+ * former ones; objects changed in place get their former field values, elements and entries back. A check of
+ * the patched object, such as bean validation, can be run before the changes are kept, and rejecting the object
+ * undoes them the same way.
+ */
+public final class JsonPatcher {
+    private static final Logger logger = LoggerFactory.getLogger(JsonPatcher.class);
+
+    private static final Comparator<JsonNode> JSON_EQUALITY = (a, b) -> {
+        if (a.isNumber() && b.isNumber()) {
+            return a.decimalValue().compareTo(b.decimalValue());
+        }
+        return a.equals(b) ? 0 : 1;
+    };
+
+    private final ObjectMapper objectMapper;
+    private final AccessMode accessMode;
+
+    public JsonPatcher(ObjectMapper objectMapper, AccessMode accessMode) {
+        this.objectMapper = objectMapper;
+        this.accessMode = accessMode;
+    }
+
+    /**
+     * Applies all operations of the patch to root, or none of them.
+     *
+     * @param patch the compiled patch
+     * @param root  the object to be patched
+     * @throws IllegalArgumentException if an operation cannot be applied or a test fails; root is then unchanged
+     */
+    public void apply(JsonPatch patch, Object root) {
+        apply(patch, root, patched -> { });
+    }
+
+    /**
+     * Applies all operations of the patch to root and checks the result, keeping the changes only if the check
+     * passes.
+     *
+     * @param patch the compiled patch
+     * @param root  the object to be patched
+     * @param check called with the patched root, throws to reject it
+     * @throws IllegalArgumentException if an operation cannot be applied or a test fails; root is then unchanged
+     * @throws RuntimeException         thrown by the check; root is then unchanged
+     */
+    public void apply(JsonPatch patch, Object root, Consumer<Object> check) {
+        if (root == null) {
+            throw new IllegalArgumentException("existingDTO must be non-null");
+        }
+        List<Runnable> undo = new ArrayList<>();
+        for (JsonPatch.Operation operation : patch.getOperations()) {
+            try {
+                apply(operation, root, undo);
+            } catch (RuntimeException e) {
+                rollBack(undo, e);
+                if (e instanceof IllegalArgumentException) {
+                    throw e;
+                }
+                throw new IllegalArgumentException("JSON patch operation '" + operation + "' failed: " + e.getMessage(), e);
+            }
+            logger.debug("Applied JSON patch operation '{}'", operation);
+        }
+        try {
+            check.accept(root);
+        } catch (RuntimeException e) {
+            rollBack(undo, e);
+            throw e;
+        }
+    }
+
+    private void rollBack(List<Runnable> undo, RuntimeException cause) {
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            try {
+                undo.get(i).run();
+            } catch (RuntimeException e) {
+                cause.addSuppressed(e);
+            }
+        }
+        logger.debug("Rolled back {} JSON patch changes", undo.size());
+    }
+
+    private void apply(JsonPatch.Operation operation, Object root, List<Runnable> undo) {
+        JsonPointerPath path = operation.getPath();
+        switch (operation.getOp()) {
+            case ADD:
+                locate(root, path, undo).add(operation.getValue());
+                break;
+            case REMOVE:
+                locate(root, path, undo).remove();
+                break;
+            case REPLACE:
+                locate(root, path, undo).replace(operation.getValue());
+                break;
+            case MOVE: {
+                Object value = locate(root, operation.getFrom(), undo).remove();
+                locate(root, path, undo).addValue(value);
+                break;
+            }
+            case COPY: {
+                Object value = locate(root, operation.getFrom(), undo).get();
+                locate(root, path, undo).add(objectMapper.valueToTree(value));
+                break;
+            }
+            default: {
+                Object value = path.isRoot() ? root : locate(root, path, undo).get();
+                JsonNode actual = objectMapper.valueToTree(value);
+                if (!actual.equals(JSON_EQUALITY, operation.getValue())) {
+                    throw new IllegalArgumentException("JSON patch test failed at '" + path + "'");
+                }
+            }
+        }
+    }
+
+    private Location locate(Object root, JsonPointerPath path, List<Runnable> undo) {
+        if (path.isRoot()) {
+            throw new IllegalArgumentException("JSON patch cannot add, remove or replace the root object");
+        }
+        JsonPointerPath.Segment[] segments = path.getSegments();
+        Location location = new Location(root, objectMapper.constructType(root.getClass()), segments[0], path, undo);
+        for (int i = 1; i < segments.length; i++) {
+            Object child = location.get();
+            if (child == null) {
+                throw new IllegalArgumentException("JSON patch path '" + path + "' does not exist");
+            }
+            location = new Location(child, location.valueType(), segments[i], path, undo);
+        }
+        return location;
+    }
+
+    /**
+     * The parent container of the last token of a path, together with its declared type. Every change made
+     * through it records its inverse in the undo log of the patch.
+     */
+    private final class Location {
+        private final Object container;
+        private final JavaType containerType;
+        private final JsonPointerPath.Segment segment;
+        private final JsonPointerPath path;
+        private final PatchField field;
+        private final List<Runnable> undo;
+
+        private Location(Object container, JavaType containerType, JsonPointerPath.Segment segment, JsonPointerPath path,
+                         List<Runnable> undo) {
+            this.container = container;
+            this.containerType = containerType;
+            this.segment = segment;
+            this.path = path;
+            this.undo = undo;
+            if (container instanceof List || container instanceof Map) {
+                this.field = null;
+            } else {
+                this.field = segment.field(container.getClass(), accessMode);
+                if (field == null || !field.isPatchable()) {
+                    throw new IllegalArgumentException("JSON patch path '" + path + "' does not exist");
+                }
+            }
+        }
+
+        private JavaType valueType() {
+            if (field != null) {
+                return objectMapper.constructType(field.getTargetField().getGenericType());
+            }
+            JavaType contentType = containerType.getContentType();
+            return contentType != null ? contentType : objectMapper.constructType(Object.class);
+        }
+
+        private Object get() {
+            if (container instanceof List) {
+                return list().get(existingIndex());
+            }
+            if (container instanceof Map) {
+                requireKey();
+                return map().get(segment.getName());
+            }
+            return field.getTargetAccessor().get(container);
+        }
+
+        private void add(JsonNode value) {
+            addValue(convert(value));
+        }
+
+        private void addValue(Object value) {
+            if (container instanceof List) {
+                List<Object> list = list();
+                int index = segment.getIndex();
+                if (index == JsonPointerPath.Segment.END_OF_ARRAY) {
+                    list.add(value);
+                    int added = list.size() - 1;
+                    undo.add(() -> list.remove(added));
+                } else if (index >= 0 && index <= list.size()) {
+                    list.add(index, value);
+                    undo.add(() -> list.remove(index));
+                } else {
+                    throw new IllegalArgumentException("JSON patch path '" + path + "' is not a valid array index");
+                }
+            } else if (container instanceof Map) {
+                put(value);
+            } else {
+                set(value);
+            }
+        }
+
+        private void replace(JsonNode value) {
+            Object converted = convert(value);
+            if (container instanceof List) {
+                List<Object> list = list();
+                int index = existingIndex();
+                Object previous = list.set(index, converted);
+                undo.add(() -> list.set(index, previous));
+            } else if (container instanceof Map) {
+                requireKey();
+                put(converted);
+            } else {
+                set(converted);
+            }
+        }
+
+        private Object remove() {
+            if (container instanceof List) {
+                List<Object> list = list();
+                int index = existingIndex();
+                Object previous = list.remove(index);
+                undo.add(() -> list.add(index, previous));
+                return previous;
+            }
+            if (container instanceof Map) {
+                requireKey();
+                Map<String, Object> map = map();
+                String key = segment.getName();
+                Object previous = map.remove(key);
+                undo.add(() -> map.put(key, previous));
+                return previous;
+            }
+            if (field.getTargetField().getType().isPrimitive()) {
+                throw new IllegalArgumentException("JSON patch path '" + path + "' is a primitive and cannot be removed");
+            }
+            return set(null);
+        }
+
+        private void put(Object value) {
+            Map<String, Object> map = map();
+            String key = segment.getName();
+            boolean existed = map.containsKey(key);
+            Object previous = map.put(key, value);
+            undo.add(() -> {
+                if (existed) {
+                    map.put(key, previous);
+                } else {
+                    map.remove(key);
+                }
+            });
+        }
+
+        private Object set(Object value) {
+            Object previous = field.getTargetAccessor().get(container);
+            field.getTargetAccessor().set(container, value);
+            Object target = container;
+            undo.add(() -> field.getTargetAccessor().set(target, previous));
+            return previous;
+        }
+
+        private Object convert(JsonNode value) {
+            return value.isNull() ? null : objectMapper.convertValue(value, valueType());
+        }
+
+        private int existingIndex() {
+            int index = segment.getIndex();
+            if (index < 0 || index >= list().size()) {
+                throw new IllegalArgumentException("JSON patch path '" + path + "' is not a valid array index");
+            }
+            return index;
+        }
+
+        private void requireKey() {
+            if (!map().containsKey(segment.getName())) {
+                throw new IllegalArgumentException("JSON patch path '" + path + "' does not exist");
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Object> list() {
+            return (List<Object>) container;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map<String, Object> map() {
+            return (Map<String, Object>) container;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.kgkilas.mapping.json;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.patch.PatchField;
+import com.kgkilas.mapping.patch.PatchPlan;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A JSON Pointer (RFC 6901) parsed once into segments. Compiled pointers are cached by their string form,
+ * and each segment remembers the patch plan field it resolved to for the last owner class, so applying the
+ * same path repeatedly neither re-parses the pointer nor looks up fields again.
+ */
+final class JsonPointerPath {
+
+    private static final int MAX_CACHED_POINTERS = 4096;
+    private static final ConcurrentMap<String, JsonPointerPath> CACHE = new ConcurrentHashMap<>();
+
+    private final String pointer;
+    private final Segment[] segments;
+
+    private JsonPointerPath(String pointer, Segment[] segments) {
+        this.pointer = pointer;
+        this.segments = segments;
+    }
+
+    /**
+     * Returns the compiled form of the given pointer.
+     *
+     * @param pointer the JSON Pointer string
+     * @return the compiled pointer
+     * @throws IllegalArgumentException if the pointer is malformed
+     */
+    static JsonPointerPath compile(String pointer) {
+        JsonPointerPath path = CACHE.get(pointer);
+        if (path != null) {
+            return path;
+        }
+        path = parse(pointer);
+        if (CACHE.size() < MAX_CACHED_POINTERS) {
+            CACHE.putIfAbsent(pointer, path);
+        }
+        return path;
+    }
+
+    private static JsonPointerPath parse(String pointer) {
+        if (!pointer.isEmpty() && pointer.charAt(0) != '/') {
+            throw new IllegalArgumentException("Invalid JSON pointer '" + pointer + "'");
+        }
+        List<Segment> segments = new ArrayList<>();
+        int start = 1;
+        while (start <= pointer.length() && !pointer.isEmpty()) {
+            int end = pointer.indexOf('/', start);
+            if (end < 0) {
+                end = pointer.length();
+            }
+            segments.add(new Segment(pointer.substring(start, end).replace("~1", "/").replace("~0", "~")));
+            start = end + 1;
+        }
+        return new JsonPointerPath(pointer, segments.toArray(new Segment[0]));
+    }
+
+    String getPointer() {
+        return pointer;
+    }
+
+    Segment[] getSegments() {
+        return segments;
+    }
+
+    boolean isRoot() {
+        return segments.length == 0;
+    }
+
+    boolean isPrefixOf(JsonPointerPath other) {
+        return other.pointer.startsWith(pointer + "/");
+    }
+
+    @Override
+    public String toString() {
+        return pointer;
+    }
+
+    /**
+     * One reference token of a pointer.
+     */
+    static final class Segment {
+        /** Index value of the "-" token, which addresses the end of an array. */
+        static final int END_OF_ARRAY = -2;
+
+        private final String name;
+        private final int index;
+        private volatile FieldBinding binding;
+
+        private Segment(String name) {
+            this.name = name;
+            this.index = "-".equals(name) ? END_OF_ARRAY : parseIndex(name);
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return the array index, {@link #END_OF_ARRAY} for "-", or -1 if the token is not an index
+         */
+        int getIndex() {
+            return index;
+        }
+
+        /**
+         * Resolves the token as a field of the given owner class, caching the result for that class.
+         *
+         * @return the field, or null if the owner has no such field
+         */
+        PatchField field(Class<?> ownerType, AccessMode accessMode) {
+            FieldBinding current = binding;
+            if (current != null && current.ownerType == ownerType && current.accessMode == accessMode) {
+                return current.field;
+            }
+            PatchField field = PatchPlan.of(ownerType, ownerType, accessMode).getField(name);
+            binding = new FieldBinding(ownerType, accessMode, field);
+            return field;
+        }
+
+        private static int parseIndex(String token) {
+            if (token.isEmpty() || (token.length() > 1 && token.charAt(0) == '0')) {
+                return -1;
+            }
+            for (int i = 0; i < token.length(); i++) {
+                if (!Character.isDigit(token.charAt(i))) {
+                    return -1;
+                }
+            }
+            try {
+                return Integer.parseInt(token);
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+    }
+
+    private static final class FieldBinding {
+        private final Class<?> ownerType;
+        private final AccessMode accessMode;
+        private final PatchField field;
+
+        private FieldBinding(Class<?> ownerType, AccessMode accessMode, PatchField field) {
+            this.ownerType = ownerType;
+            this.accessMode = accessMode;
+            this.field = field;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.kgkilas.mapping.lazy;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The associations and lazy attributes left out by load-safe mappings because they were not loaded,
+ * i.e. those a plain mapping would have loaded one query at a time.
+ * <p>
+ * Each is identified by its dotted attribute path from the mapped entity (e.g. {@code author} or
+ * {@code books.author} for the author of every book), counted once per object it was missing from.
+ * Paths with high counts are candidates for fetch joins or entity graphs. A report may collect
+ * several mapping calls and is not thread-safe.
+ */
+public final class LazyLoadReport {
+    private final Map<String, Integer> counts = new LinkedHashMap<>();
+
+    /**
+     * @return true if nothing was left out
+     */
+    public boolean isEmpty() {
+        return counts.isEmpty();
+    }
+
+    /**
+     * @return the paths of everything left out, in the order first seen
+     */
+    public Set<String> getPaths() {
+        return Collections.unmodifiableSet(counts.keySet());
+    }
+
+    /**
+     * @return the number of objects every path was left out of, by path
+     */
+    public Map<String, Integer> getCounts() {
+        return Collections.unmodifiableMap(counts);
+    }
+
+    /**
+     * @param path the dotted attribute path
+     * @return the number of objects the path was left out of
+     */
+    public int getCount(String path) {
+        return counts.getOrDefault(path, 0);
+    }
+
+    /**
+     * Records that the attribute at the given path was not loaded on one object.
+     *
+     * @param path the dotted attribute path
+     */
+    public void record(String path) {
+        counts.merge(path, 1, Integer::sum);
+    }
+
+    @Override
+    public String toString() {
+        return counts.toString();
+    }
+}
@@ -0,0 +1,308 @@
+package com.kgkilas.mapping.lazy;
+
+import com.kgkilas.mapping.patch.PatchPlan;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import org.hibernate.Hibernate;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Copies the loaded part of an entity graph, so that it can be mapped without triggering lazy loads.
+ * <p>
+ * Entities and embeddables are copied field by field; fields are read directly, which never initialises a proxy,
+ * a collection or a lazy attribute. Proxies that are not initialised are replaced according to the
+ * {@link UnloadedPolicy}, collections that are not initialised and lazy attributes that are not loaded are left
+ * null, and each of them is recorded in the report. Loaded collections and maps holding entities are copied into
+ * plain collections and maps. Other values are shared with the original graph.
+ * <p>
+ * Copies made by the same copier are shared, so an object reachable from several roots or along a cycle is copied
+ * once. Copied sets and maps are filled only once every copied object is, so elements and keys whose
+ * {@code equals}, {@code hashCode} or ordering depend on their fields are not compared while still empty. The cost of a copy grows with the loaded graph reachable from the root. A copier is not thread-safe.
+ */
+public final class LoadedGraphCopier {
+    private static final Logger logger = LoggerFactory.getLogger(LoadedGraphCopier.class);
+
+    private static final String ENHANCEMENT_PREFIX = "$$_hibernate_";
+
+    private static final ClassValue<Shape> SHAPES = new ClassValue<>() {
+        @Override
+        protected Shape computeValue(Class<?> type) {
+            return Shape.of(type);
+        }
+    };
+
+    /**
+     * The fields and the no-argument constructor of a copied class.
+     */
+    private static final class Shape {
+        private static final Shape NOT_COPIED = new Shape(null, null, null);
+
+        private final Constructor<?> constructor;
+        private final Field[] fields;
+        private final Field idField;
+
+        private Shape(Constructor<?> constructor, Field[] fields, Field idField) {
+            this.constructor = constructor;
+            this.fields = fields;
+            this.idField = idField;
+        }
+
+        private static Shape of(Class<?> type) {
+            if (!type.isAnnotationPresent(Entity.class) && !type.isAnnotationPresent(Embeddable.class)) {
+                return NOT_COPIED;
+            }
+            try {
+                Constructor<?> constructor = type.getDeclaredConstructor();
+                constructor.setAccessible(true);
+                List<Field> fields = new ArrayList<>();
+                Field idField = null;
+                for (Field field : PatchPlan.fieldTable(type).values()) {
+                    if (field.getName().startsWith(ENHANCEMENT_PREFIX)) {
+                        continue;
+                    }
+                    field.setAccessible(true);
+                    fields.add(field);
+                    if (idField == null && (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class))) {
+                        idField = field;
+                    }
+                }
+                return new Shape(constructor, fields.toArray(new Field[0]), idField);
+            } catch (NoSuchMethodException | RuntimeException e) {
+                logger.warn("{} cannot be copied, it will be mapped as is", type.getName(), e);
+                return NOT_COPIED;
+            }
+        }
+
+        private Object newInstance() throws ReflectiveOperationException {
+            return constructor.newInstance();
+        }
+    }
+
+    /**
+     * A copied object whose fields are still to be filled.
+     */
+    private static final class Frame {
+        private final Object original;
+        private final Object copy;
+        private final Frame parent;
+        private final String name;
+
+        private Frame(Object original, Object copy, Frame parent, String name) {
+            this.original = original;
+            this.copy = copy;
+            this.parent = parent;
+            this.name = name;
+        }
+    }
+
+    private final UnloadedPolicy policy;
+    private final LazyLoadReport report;
+    private final Map<Object, Object> copies = new IdentityHashMap<>();
+    private final Deque<Frame> stack = new ArrayDeque<>();
+    private final List<Runnable> pendingFills = new ArrayList<>();
+
+    /**
+     * @param policy what to put in place of associations that are not loaded
+     * @param report the report to record what was left out in, may be null
+     */
+    public LoadedGraphCopier(UnloadedPolicy policy, LazyLoadReport report) {
+        this.policy = policy;
+        this.report = report;
+    }
+
+    /**
+     * Copies the loaded part of the graph reachable from the given object.
+     *
+     * @param root the entity to copy, may be a proxy
+     * @param <T>  the type of the entity
+     * @return the copy, the root itself if it is not an entity or embeddable, or null or an id-only instance
+     * if the root is a proxy that is not initialised
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T copy(T root) {
+        Object copy = copyValue(root, null, null);
+        while (!stack.isEmpty()) {
+            fill(stack.pop());
+        }
+        for (int i = pendingFills.size() - 1; i >= 0; i--) {
+            pendingFills.get(i).run();
+        }
+        pendingFills.clear();
+        return (T) copy;
+    }
+
+    private void fill(Frame frame) {
+        for (Field field : SHAPES.get(frame.original.getClass()).fields) {
+            if (!Hibernate.isPropertyInitialized(frame.original, field.getName())) {
+                unloaded(frame, field.getName());
+                continue;
+            }
+            try {
+                Object value = copyValue(field.get(frame.original), frame, field.getName());
+                if (value != null || !field.getType().isPrimitive()) {
+                    field.set(frame.copy, value);
+                }
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("Cannot copy field '" + field.getName() + "' of "
+                        + frame.original.getClass().getName(), e);
+            }
+        }
+    }
+
+    private Object copyValue(Object value, Frame owner, String name) {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof HibernateProxy) {
+            LazyInitializer initializer = ((HibernateProxy) value).getHibernateLazyInitializer();
+            if (initializer.isUninitialized()) {
+                unloaded(owner, name);
+                return policy == UnloadedPolicy.ID_ONLY ? idOnly(value, initializer) : null;
+            }
+            value = initializer.getImplementation();
+        }
+        if (value instanceof PersistentCollection && !((PersistentCollection<?>) value).wasInitialized()) {
+            unloaded(owner, name);
+            return null;
+        }
+        if (value instanceof Collection) {
+            return copyCollection((Collection<?>) value, owner, name);
+        }
+        if (value instanceof Map) {
+            return copyMap((Map<?, ?>) value, owner, name);
+        }
+        Object copy = copies.get(value);
+        if (copy != null) {
+            return copy;
+        }
+        Shape shape = SHAPES.get(value.getClass());
+        if (shape == Shape.NOT_COPIED) {
+            return value;
+        }
+        try {
+            copy = shape.newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Cannot instantiate " + value.getClass().getName(), e);
+        }
+        copies.put(value, copy);
+        stack.push(new Frame(value, copy, owner, name));
+        return copy;
+    }
+
+    private Object idOnly(Object proxy, LazyInitializer initializer) {
+        Object copy = copies.get(proxy);
+        if (copy != null) {
+            return copy;
+        }
+        Shape shape = SHAPES.get(initializer.getPersistentClass());
+        if (shape.idField == null) {
+            return null;
+        }
+        try {
+            copy = shape.newInstance();
+            shape.idField.set(copy, initializer.getInternalIdentifier());
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            throw new IllegalStateException("Cannot instantiate " + initializer.getPersistentClass().getName(), e);
+        }
+        copies.put(proxy, copy);
+        return copy;
+    }
+
+    private Object copyCollection(Collection<?> collection, Frame owner, String name) {
+        List<Object> elements = new ArrayList<>(collection.size());
+        boolean changed = false;
+        for (Object element : collection) {
+            Object copy = copyValue(element, owner, name);
+            elements.add(copy);
+            changed |= copy != element;
+        }
+        if (!changed) {
+            return collection;
+        }
+        if (!(collection instanceof Set)) {
+            return elements;
+        }
+        Set<Object> copy = collection instanceof SortedSet
+                ? new TreeSet<>(comparator(((SortedSet<?>) collection).comparator())) : new LinkedHashSet<>();
+        pendingFills.add(() -> copy.addAll(elements));
+        return copy;
+    }
+
+    private Object copyMap(Map<?, ?> map, Frame owner, String name) {
+        List<Object> keys = new ArrayList<>(map.size());
+        List<Object> values = new ArrayList<>(map.size());
+        boolean changed = false;
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            Object key = copyValue(entry.getKey(), owner, name);
+            Object value = copyValue(entry.getValue(), owner, name);
+            keys.add(key);
+            values.add(value);
+            changed |= key != entry.getKey() || value != entry.getValue();
+        }
+        if (!changed) {
+            return map;
+        }
+        Map<Object, Object> copy = map instanceof SortedMap
+                ? new TreeMap<>(comparator(((SortedMap<?, ?>) map).comparator())) : new LinkedHashMap<>();
+        pendingFills.add(() -> {
+            for (int i = 0; i < keys.size(); i++) {
+                copy.put(keys.get(i), values.get(i));
+            }
+        });
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Comparator<Object> comparator(Comparator<?> comparator) {
+        return (Comparator<Object>) comparator;
+    }
+
+    private void unloaded(Frame owner, String name) {
+        if (report == null || name == null) {
+            return;
+        }
+        String path = path(owner, name);
+        logger.debug("'{}' is not loaded, it is left out", path);
+        report.record(path);
+    }
+
+    private static String path(Frame owner, String name) {
+        List<String> segments = new ArrayList<>();
+        segments.add(name);
+        for (Frame frame = owner; frame != null && frame.name != null; frame = frame.parent) {
+            segments.add(frame.name);
+        }
+        StringBuilder path = new StringBuilder();
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            path.append(segments.get(i));
+            if (i > 0) {
+                path.append('.');
+            }
+        }
+        return path.toString();
+    }
+}
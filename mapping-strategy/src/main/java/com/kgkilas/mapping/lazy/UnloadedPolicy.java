@@ -0,0 +1,12 @@
+package com.kgkilas.mapping.lazy;
+
+/**
+ * Selects what a load-safe mapping puts in place of an association that is not loaded.
+ * Collections and lazy attributes that are not loaded are always left null.
+ */
+public enum UnloadedPolicy {
+    /** The association is left null. */
+    NULL,
+    /** The association is replaced by an instance of the associated entity with only its id set. */
+    ID_ONLY
+}
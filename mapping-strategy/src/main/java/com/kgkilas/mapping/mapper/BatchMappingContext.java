@@ -0,0 +1,114 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.patch.PatchPlan;
+import jakarta.validation.Path;
+import jakarta.validation.TraversableResolver;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+
+import java.lang.annotation.ElementType;
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Identity memo for the conversions of one batch: an entity, or a sub-object shared by several entities
+ * (e.g. the author of many books), converted once is reused for every later occurrence instead of being
+ * converted and validated again. DTOs converted within the same context may therefore share sub-objects.
+ * <p>
+ * Create one context per batch and pass it to the mapper's context-aware conversions; it may be shared by several
+ * mappers. A context keeps every converted object until it is discarded and is not thread-safe.
+ */
+public final class BatchMappingContext {
+    private final Map<Class<?>, Map<Object, Object>> converted = new HashMap<>();
+    private final Set<Object> validated = Collections.newSetFromMap(new IdentityHashMap<>());
+    private Validator validator;
+    private int reusedCount;
+
+    /**
+     * @return the number of conversions saved by reusing an earlier result
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * Returns the result of an earlier conversion of the same source object to the given type.
+     *
+     * @param source the source object
+     * @param type   the destination type
+     * @return the earlier result, or null if the source was not converted to the type yet
+     */
+    Object get(Object source, Class<?> type) {
+        Map<Object, Object> results = converted.get(type);
+        Object result = results == null ? null : results.get(source);
+        if (result != null) {
+            reusedCount++;
+        }
+        return result;
+    }
+
+    /**
+     * Records the result of converting the source object to the given type.
+     *
+     * @param source the source object
+     * @param type   the destination type
+     * @param result the result
+     */
+    void put(Object source, Class<?> type, Object result) {
+        converted.computeIfAbsent(type, key -> new IdentityHashMap<>()).put(source, result);
+    }
+
+    /**
+     * Returns a validator that does not cascade into objects it already validated within this context.
+     *
+     * @param factory the factory of the mapper's validator
+     * @return the validator
+     */
+    Validator validator(ValidatorFactory factory) {
+        if (validator == null) {
+            validator = factory.usingContext().traversableResolver(new OnceResolver()).getValidator();
+        }
+        return validator;
+    }
+
+    /**
+     * Lets validation cascade into a bean only the first time it is reached within the context.
+     * Collections and maps are always cascaded into, their elements being checked one by one.
+     */
+    private final class OnceResolver implements TraversableResolver {
+
+        @Override
+        public boolean isReachable(Object traversableObject, Path.Node traversableProperty, Class<?> rootBeanType,
+                                   Path pathToTraversableObject, ElementType elementType) {
+            return true;
+        }
+
+        @Override
+        public boolean isCascadable(Object traversableObject, Path.Node traversableProperty, Class<?> rootBeanType,
+                                    Path pathToTraversableObject, ElementType elementType) {
+            if (traversableObject == null || traversableProperty.getName() == null) {
+                return true;
+            }
+            Field field = PatchPlan.findField(traversableObject.getClass(), traversableProperty.getName());
+            if (field == null) {
+                return true;
+            }
+            Object value;
+            try {
+                field.setAccessible(true);
+                value = field.get(traversableObject);
+            } catch (IllegalAccessException | RuntimeException e) {
+                return true;
+            }
+            if (value == null || value instanceof Collection || value instanceof Map) {
+                return true;
+            }
+            return validated.add(value);
+        }
+    }
+}
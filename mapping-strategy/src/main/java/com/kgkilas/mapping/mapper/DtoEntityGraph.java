@@ -0,0 +1,162 @@
+package com.kgkilas.mapping.mapper;
+
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.OrderColumn;
+import jakarta.persistence.Subgraph;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.PluralAttribute;
+import jakarta.persistence.metamodel.SingularAttribute;
+import jakarta.persistence.metamodel.Type;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the entity graph fetching the associations a DTO is mapped from.
+ * Source paths of the {@link DtoShape} are resolved against the JPA metamodel: associations and embedded
+ * attributes along a path become graph nodes, with a subgraph where the path continues below them;
+ * basic attributes and properties that are not persistent end the path.
+ * <p>
+ * A bag ({@code Collection} or unindexed {@code List} attribute) fetched together with another collection
+ * would fail with two bags, or hold every element once per row of the other collections. So bags are only
+ * part of a graph fetching no other collection, and are otherwise left out with a warning, to be loaded lazily.
+ * Fetching several sets or indexed lists in one query multiplies its rows, which is logged as a warning as well.
+ */
+final class DtoEntityGraph {
+    private static final Logger logger = LoggerFactory.getLogger(DtoEntityGraph.class);
+
+    /**
+     * An attribute node of the graph being built and the nodes below it.
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private boolean collection;
+        private boolean bag;
+    }
+
+    private DtoEntityGraph() {
+    }
+
+    /**
+     * Builds the graph for the given entity class.
+     *
+     * @param entityManager the entity manager creating the graph
+     * @param entityClass   the root entity class
+     * @param shape         the shape of the DTO mapped from the entity
+     * @param <E>           the type of the entity
+     * @return the entity graph
+     */
+    static <E> EntityGraph<E> build(EntityManager entityManager, Class<E> entityClass, DtoShape shape) {
+        Metamodel metamodel = entityManager.getMetamodel();
+        Node root = new Node();
+        for (DtoShape.Property property : shape.getProperties()) {
+            add(root, metamodel.managedType(entityClass), property.getSourcePath());
+        }
+        List<String> collections = new ArrayList<>();
+        List<String> bags = new ArrayList<>();
+        collect(root, "", collections, bags);
+        if (!bags.isEmpty() && collections.size() > 1) {
+            logger.warn("Left the bags {} out of the entity graph for {}, since they cannot be fetched together with "
+                    + "the collections {}", bags, entityClass.getName(), collections);
+            removeBags(root);
+            collections.removeAll(bags);
+        }
+        if (collections.size() > 1) {
+            logger.warn("Entity graph for {} fetches the collections {} in one query, which returns the product of "
+                    + "their sizes in rows", entityClass.getName(), collections);
+        }
+        EntityGraph<E> graph = entityManager.createEntityGraph(entityClass);
+        for (Map.Entry<String, Node> child : root.children.entrySet()) {
+            if (child.getValue().children.isEmpty()) {
+                graph.addAttributeNodes(child.getKey());
+            } else {
+                fill(graph.addSubgraph(child.getKey()), child.getValue());
+            }
+        }
+        logger.debug("Built entity graph for {}: {}", entityClass.getName(), root.children.keySet());
+        return graph;
+    }
+
+    private static void add(Node root, ManagedType<?> rootType, List<String> path) {
+        Node node = root;
+        ManagedType<?> type = rootType;
+        for (String name : path) {
+            Attribute<?, ?> attribute = attribute(type, name);
+            if (attribute == null || attribute.getPersistentAttributeType() == Attribute.PersistentAttributeType.BASIC) {
+                return;
+            }
+            node = node.children.computeIfAbsent(name, key -> new Node());
+            if (attribute instanceof PluralAttribute) {
+                PluralAttribute.CollectionType collectionType = ((PluralAttribute<?, ?, ?>) attribute).getCollectionType();
+                node.collection = true;
+                node.bag = collectionType == PluralAttribute.CollectionType.COLLECTION
+                        || collectionType == PluralAttribute.CollectionType.LIST && !isIndexed(attribute);
+            }
+            Type<?> target = attribute instanceof PluralAttribute
+                    ? ((PluralAttribute<?, ?, ?>) attribute).getElementType()
+                    : ((SingularAttribute<?, ?>) attribute).getType();
+            if (!(target instanceof ManagedType)) {
+                return;
+            }
+            type = (ManagedType<?>) target;
+        }
+    }
+
+    /**
+     * Whether a list attribute has an order column, which Hibernate fetches as an indexed list rather than a bag.
+     */
+    private static boolean isIndexed(Attribute<?, ?> attribute) {
+        Member member = attribute.getJavaMember();
+        return member instanceof AnnotatedElement && ((AnnotatedElement) member).isAnnotationPresent(OrderColumn.class);
+    }
+
+    /**
+     * Collects the paths of the collections of the graph, and of the bags among them.
+     */
+    private static void collect(Node node, String path, List<String> collections, List<String> bags) {
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            String childPath = path + child.getKey();
+            if (child.getValue().collection) {
+                collections.add(childPath);
+            }
+            if (child.getValue().bag) {
+                bags.add(childPath);
+            }
+            collect(child.getValue(), childPath + ".", collections, bags);
+        }
+    }
+
+    private static void removeBags(Node node) {
+        node.children.values().removeIf(child -> child.bag);
+        for (Node child : node.children.values()) {
+            removeBags(child);
+        }
+    }
+
+    private static Attribute<?, ?> attribute(ManagedType<?> type, String name) {
+        try {
+            return type.getAttribute(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void fill(Subgraph<?> graph, Node node) {
+        for (Map.Entry<String, Node> child : node.children.entrySet()) {
+            if (child.getValue().children.isEmpty()) {
+                graph.addAttributeNodes(child.getKey());
+            } else {
+                fill(graph.addSubgraph(child.getKey()), child.getValue());
+            }
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TupleElement;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.From;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import jakarta.persistence.metamodel.Attribute;
+import jakarta.persistence.metamodel.ManagedType;
+import jakarta.persistence.metamodel.Metamodel;
+import jakarta.persistence.metamodel.SingularAttribute;
+import org.modelmapper.ModelMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled projection of an entity onto a DTO: a tuple query selecting only the columns the DTO is mapped from,
+ * and a writer filling DTOs straight from the tuples.
+ * <p>
+ * Every single-valued property of the {@link DtoShape} without converter is a column candidate. The query selects
+ * those whose source path is a basic attribute reached through single-valued associations and embeddables,
+ * joining associations as left joins, and aliases every selection with the destination path. A source path several
+ * properties are mapped from is selected once, with the destination path of the first, and written into all. DTO collections and
+ * properties mapped by converters are not projected and stay unset. Values are written as they are when they are
+ * of the destination property's type, and converted by the model mapper otherwise.
+ */
+final class DtoProjection {
+    private static final Logger logger = LoggerFactory.getLogger(DtoProjection.class);
+
+    /**
+     * Writes one selected value into the DTO, creating the nested DTO objects holding it.
+     */
+    private static final class Writer {
+        private final List<String> sourcePath;
+        private final FieldAccessor[] destination;
+        private final Constructor<?>[] holders;
+        private final Class<?> valueType;
+
+        private Writer(List<String> sourcePath, FieldAccessor[] destination, Constructor<?>[] holders) {
+            this.sourcePath = sourcePath;
+            this.destination = destination;
+            this.holders = holders;
+            this.valueType = EntityPatchPlan.wrap(destination[destination.length - 1].getType());
+        }
+
+        private void write(Object dto, Object value, ModelMapper modelMapper) throws ReflectiveOperationException {
+            Object holder = dto;
+            for (int i = 0; i < destination.length - 1; i++) {
+                Object next = destination[i].get(holder);
+                if (next == null) {
+                    next = holders[i].newInstance();
+                    destination[i].set(holder, next);
+                }
+                holder = next;
+            }
+            if (!valueType.isInstance(value)) {
+                value = modelMapper.map(value, valueType);
+            }
+            destination[destination.length - 1].set(holder, value);
+        }
+    }
+
+    private final Class<?> dtoClass;
+    private final AccessMode accessMode;
+    private final Constructor<?> dtoConstructor;
+    private final Map<String, List<Writer>> writers;
+
+    private DtoProjection(Class<?> dtoClass, AccessMode accessMode, Constructor<?> dtoConstructor,
+                          Map<String, List<Writer>> writers) {
+        this.dtoClass = dtoClass;
+        this.accessMode = accessMode;
+        this.dtoConstructor = dtoConstructor;
+        this.writers = writers;
+    }
+
+    /**
+     * Compiles the writers of every column candidate of the shape.
+     *
+     * @param dtoClass   the DTO class, with a no-argument constructor
+     * @param shape      the shape of the DTO
+     * @param accessMode how DTO fields without getter and setter are accessed
+     * @return the projection
+     * @throws IllegalArgumentException if the DTO class or a nested DTO class has no no-argument constructor
+     */
+    static DtoProjection of(Class<?> dtoClass, DtoShape shape, AccessMode accessMode) {
+        Map<String, List<Writer>> writers = new LinkedHashMap<>();
+        Map<List<String>, String> aliases = new HashMap<>();
+        for (DtoShape.Property property : shape.getProperties()) {
+            if (property.isPlural() || property.isConverted()) {
+                continue;
+            }
+            List<String> path = property.getDestinationPath();
+            FieldAccessor[] destination = new FieldAccessor[path.size()];
+            Constructor<?>[] holders = new Constructor<?>[path.size() - 1];
+            Class<?> owner = dtoClass;
+            for (int i = 0; i < destination.length && owner != null; i++) {
+                destination[i] = EntityPatchPlan.accessorFor(owner, path.get(i), accessMode);
+                owner = destination[i] == null ? null : destination[i].getType();
+                if (owner != null && i < holders.length) {
+                    holders[i] = constructor(owner);
+                }
+            }
+            if (owner == null) {
+                logger.warn("Property '{}' of {} has no accessor, it will not be projected", String.join(".", path),
+                        dtoClass.getName());
+                continue;
+            }
+            String alias = aliases.computeIfAbsent(property.getSourcePath(), sourcePath -> String.join(".", path));
+            writers.computeIfAbsent(alias, key -> new ArrayList<>(1))
+                    .add(new Writer(property.getSourcePath(), destination, holders));
+        }
+        return new DtoProjection(dtoClass, accessMode, constructor(dtoClass), writers);
+    }
+
+    AccessMode getAccessMode() {
+        return accessMode;
+    }
+
+    private static Constructor<?> constructor(Class<?> type) {
+        try {
+            Constructor<?> constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException | RuntimeException e) {
+            throw new IllegalArgumentException(type.getName() + " needs a no-argument constructor to be projected", e);
+        }
+    }
+
+    /**
+     * Creates the tuple query selecting the projected columns of every entity. Restrictions and ordering can be
+     * added through the query's root.
+     *
+     * @param entityManager the entity manager
+     * @param entityClass   the entity class
+     * @param <E>           the type of the entity
+     * @return the query
+     */
+    <E> CriteriaQuery<Tuple> createQuery(EntityManager entityManager, Class<E> entityClass) {
+        Metamodel metamodel = entityManager.getMetamodel();
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<E> root = query.from(entityClass);
+        Map<String, From<?, ?>> joins = new HashMap<>();
+        List<Selection<?>> selections = new ArrayList<>();
+        for (Map.Entry<String, List<Writer>> column : writers.entrySet()) {
+            Path<?> path = select(root, metamodel.managedType(entityClass), column.getValue().get(0).sourcePath, joins);
+            if (path != null) {
+                selections.add(path.alias(column.getKey()));
+            }
+        }
+        if (selections.isEmpty()) {
+            throw new IllegalArgumentException("No property of " + dtoClass.getName() + " can be projected from "
+                    + entityClass.getName());
+        }
+        return query.multiselect(selections);
+    }
+
+    private static Path<?> select(Root<?> root, ManagedType<?> rootType, List<String> sourcePath,
+                                  Map<String, From<?, ?>> joins) {
+        Path<?> path = root;
+        ManagedType<?> type = rootType;
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < sourcePath.size(); i++) {
+            String name = sourcePath.get(i);
+            Attribute<?, ?> attribute = attribute(type, name);
+            if (!(attribute instanceof SingularAttribute)) {
+                return null;
+            }
+            Attribute.PersistentAttributeType kind = attribute.getPersistentAttributeType();
+            if (i == sourcePath.size() - 1) {
+                return kind == Attribute.PersistentAttributeType.BASIC ? path.get(name) : null;
+            }
+            prefix.append(name).append('.');
+            if (kind == Attribute.PersistentAttributeType.EMBEDDED) {
+                path = path.get(name);
+            } else if (attribute.isAssociation() && path instanceof From) {
+                From<?, ?> from = (From<?, ?>) path;
+                path = joins.computeIfAbsent(prefix.toString(), key -> from.join(name, JoinType.LEFT));
+            } else {
+                return null;
+            }
+            if (!(((SingularAttribute<?, ?>) attribute).getType() instanceof ManagedType)) {
+                return null;
+            }
+            type = (ManagedType<?>) ((SingularAttribute<?, ?>) attribute).getType();
+        }
+        return null;
+    }
+
+    private static Attribute<?, ?> attribute(ManagedType<?> type, String name) {
+        try {
+            return type.getAttribute(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates a DTO from a tuple of the projection query, without instantiating the entity.
+     *
+     * @param tuple       the tuple
+     * @param modelMapper the model mapper converting values of another type than their DTO property
+     * @return the DTO
+     */
+    Object map(Tuple tuple, ModelMapper modelMapper) {
+        try {
+            Object dto = dtoConstructor.newInstance();
+            for (TupleElement<?> element : tuple.getElements()) {
+                List<Writer> column = writers.get(element.getAlias());
+                Object value = tuple.get(element);
+                if (column != null && value != null) {
+                    for (Writer writer : column) {
+                        writer.write(dto, value, modelMapper);
+                    }
+                }
+            }
+            return dto;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create " + dtoClass.getName() + " from a tuple", e);
+        }
+    }
+}
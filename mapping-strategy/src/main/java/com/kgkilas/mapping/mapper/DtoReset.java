@@ -0,0 +1,74 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clears the nested DTOs, collections and maps of a DTO before it is mapped into again.
+ * ModelMapper maps into an existing nested DTO instead of creating one, and leaves it in place when the source
+ * association is null, and it merges a source collection into an existing destination collection element by
+ * element, keeping surplus elements. Setting every such property of the DTO to null makes ModelMapper create
+ * them afresh, so mapping into a reused DTO gives the same result as mapping into a new one and never changes
+ * nested DTOs or collections taken from an earlier result.
+ */
+final class DtoReset {
+
+    private final AccessMode accessMode;
+    private final List<FieldAccessor> properties;
+
+    private DtoReset(AccessMode accessMode, List<FieldAccessor> properties) {
+        this.accessMode = accessMode;
+        this.properties = properties;
+    }
+
+    AccessMode getAccessMode() {
+        return accessMode;
+    }
+
+    /**
+     * Finds the properties of the DTO class holding nested DTOs, collections or maps.
+     *
+     * @param dtoClass   the DTO class
+     * @param shape      the shape of the DTO
+     * @param accessMode how DTO fields without getter and setter are accessed
+     * @return the reset
+     */
+    static DtoReset of(Class<?> dtoClass, DtoShape shape, AccessMode accessMode) {
+        Map<String, FieldAccessor> properties = new LinkedHashMap<>();
+        for (DtoShape.Property property : shape.getProperties()) {
+            List<String> path = property.getDestinationPath();
+            if (path.size() == 1 && !isContainer(property.getDestinationType())) {
+                continue;
+            }
+            String name = path.get(0);
+            if (!properties.containsKey(name)) {
+                FieldAccessor accessor = EntityPatchPlan.accessorFor(dtoClass, name, accessMode);
+                if (accessor != null && !accessor.getType().isPrimitive()) {
+                    properties.put(name, accessor);
+                }
+            }
+        }
+        return new DtoReset(accessMode, new ArrayList<>(properties.values()));
+    }
+
+    private static boolean isContainer(Class<?> type) {
+        return Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Sets the nested DTOs, collections and maps of the DTO to null.
+     *
+     * @param dto the DTO
+     */
+    void apply(Object dto) {
+        for (FieldAccessor property : properties) {
+            property.set(dto, null);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.kgkilas.mapping.mapper;
+
+import org.modelmapper.ModelMapper;
+import org.modelmapper.spi.Mapping;
+import org.modelmapper.spi.PropertyInfo;
+import org.modelmapper.spi.PropertyMapping;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The source properties a DTO is mapped from, as found in the ModelMapper type maps.
+ * Every property mapping of the type map between the entity and DTO classes contributes its source path;
+ * a mapping without converter between a bean or a collection of beans and another bean type is followed into
+ * the type map between the two (element) types, with its paths prefixed by the source path. A pair of types
+ * already being followed is not followed again, so cyclic DTOs end.
+ */
+final class DtoShape {
+
+    /**
+     * A source property chain and the destination property chain it is mapped to.
+     */
+    static final class Property {
+        private final List<String> sourcePath;
+        private final List<String> destinationPath;
+        private final Class<?> sourceType;
+        private final Class<?> destinationType;
+        private final boolean plural;
+        private final boolean converted;
+
+        private Property(List<String> sourcePath, List<String> destinationPath, Class<?> sourceType,
+                         Class<?> destinationType, boolean plural, boolean converted) {
+            this.sourcePath = sourcePath;
+            this.destinationPath = destinationPath;
+            this.sourceType = sourceType;
+            this.destinationType = destinationType;
+            this.plural = plural;
+            this.converted = converted;
+        }
+
+        /**
+         * @return the property names from the root source object to the mapped value
+         */
+        List<String> getSourcePath() {
+            return sourcePath;
+        }
+
+        /**
+         * @return the property names from the root destination object to the mapped value
+         */
+        List<String> getDestinationPath() {
+            return destinationPath;
+        }
+
+        /**
+         * @return the type of the last source property
+         */
+        Class<?> getSourceType() {
+            return sourceType;
+        }
+
+        /**
+         * @return the type of the last destination property
+         */
+        Class<?> getDestinationType() {
+            return destinationType;
+        }
+
+        /**
+         * @return true if the source path goes through or ends in a collection or map
+         */
+        boolean isPlural() {
+            return plural;
+        }
+
+        /**
+         * @return true if the mapping has its own converter
+         */
+        boolean isConverted() {
+            return converted;
+        }
+    }
+
+    private final List<Property> properties;
+
+    private DtoShape(List<Property> properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * @return the mapped properties, nested ones after the property holding them
+     */
+    List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * Resolves the shape of the mapping between the given types, creating the type maps it needs.
+     *
+     * @param modelMapper     the model mapper
+     * @param sourceType      the source class
+     * @param destinationType the destination class
+     * @return the shape
+     */
+    static DtoShape of(ModelMapper modelMapper, Class<?> sourceType, Class<?> destinationType) {
+        List<Property> properties = new ArrayList<>();
+        collect(modelMapper, sourceType, destinationType, Collections.emptyList(), Collections.emptyList(), false,
+                new HashSet<>(), properties);
+        return new DtoShape(Collections.unmodifiableList(properties));
+    }
+
+    private static void collect(ModelMapper modelMapper, Class<?> sourceType, Class<?> destinationType,
+                                List<String> sourcePrefix, List<String> destinationPrefix, boolean plural,
+                                Set<List<Class<?>>> following, List<Property> properties) {
+        List<Class<?>> pair = List.of(sourceType, destinationType);
+        if (!following.add(pair)) {
+            return;
+        }
+        for (Mapping mapping : modelMapper.typeMap(sourceType, destinationType).getMappings()) {
+            if (mapping.isSkipped() || !(mapping instanceof PropertyMapping)) {
+                continue;
+            }
+            PropertyMapping propertyMapping = (PropertyMapping) mapping;
+            List<String> sourcePath = new ArrayList<>(sourcePrefix);
+            boolean pluralPath = plural;
+            for (PropertyInfo property : propertyMapping.getSourceProperties()) {
+                sourcePath.add(property.getName());
+                pluralPath |= isContainer(property.getType());
+            }
+            List<String> destinationPath = new ArrayList<>(destinationPrefix);
+            for (PropertyInfo property : propertyMapping.getDestinationProperties()) {
+                destinationPath.add(property.getName());
+            }
+            PropertyInfo source = propertyMapping.getLastSourceProperty();
+            PropertyInfo destination = propertyMapping.getLastDestinationProperty();
+            properties.add(new Property(Collections.unmodifiableList(sourcePath), Collections.unmodifiableList(destinationPath),
+                    source.getType(), destination.getType(), pluralPath, mapping.getConverter() != null));
+            Class<?> sourceElement = elementType(source.getType(), source.getGenericType());
+            Class<?> destinationElement = elementType(destination.getType(), destination.getGenericType());
+            if (mapping.getConverter() == null && sourceElement != null && destinationElement != null
+                    && sourceElement != destinationElement
+                    && isBean(sourceElement) && isBean(destinationElement)) {
+                collect(modelMapper, sourceElement, destinationElement, sourcePath, destinationPath, pluralPath,
+                        following, properties);
+            }
+        }
+        following.remove(pair);
+    }
+
+    private static boolean isContainer(Class<?> type) {
+        return Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Returns the class of the beans held by a property: its own class, or the element (value) class of a
+     * collection (map), or null if it cannot be determined.
+     */
+    private static Class<?> elementType(Class<?> type, Type genericType) {
+        if (!isContainer(type)) {
+            return type;
+        }
+        if (!(genericType instanceof ParameterizedType)) {
+            return null;
+        }
+        Type[] arguments = ((ParameterizedType) genericType).getActualTypeArguments();
+        Type element = Map.class.isAssignableFrom(type) ? arguments[arguments.length - 1] : arguments[0];
+        if (element instanceof ParameterizedType) {
+            element = ((ParameterizedType) element).getRawType();
+        }
+        return element instanceof Class ? (Class<?>) element : null;
+    }
+
+    private static boolean isBean(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && !type.isEnum() && !type.isInterface()
+                && !type.getName().startsWith("java.");
+    }
+}
@@ -0,0 +1,139 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+import jakarta.persistence.Entity;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.proxy.LazyInitializer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Finds the entities a DTO is converted from besides its root entity: every entity reached along the source paths
+ * of the DTO's shape, through single-valued properties, collections and map values. A DTO cache records them, so
+ * a change to e.g. the author behind a book DTO drops the cached book DTO too.
+ * <p>
+ * Uninitialized proxies and collections are neither loaded nor followed: the conversion did not read them, so the
+ * DTO does not depend on their state beyond the id held by the owning entity. The paths are finite, so cyclic
+ * entity graphs end without a visited set.
+ */
+final class DtoSources {
+
+    /**
+     * A source property, with the properties read from its values.
+     */
+    private static final class Node {
+        private final String name;
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private final Map<Class<?>, Optional<FieldAccessor>> accessors = new ConcurrentHashMap<>();
+
+        private Node(String name) {
+            this.name = name;
+        }
+    }
+
+    private final AccessMode accessMode;
+    private final Node root = new Node(null);
+
+    private DtoSources(AccessMode accessMode) {
+        this.accessMode = accessMode;
+    }
+
+    AccessMode getAccessMode() {
+        return accessMode;
+    }
+
+    /**
+     * Merges the source paths of the shape into a tree of properties to follow.
+     *
+     * @param shape      the shape of the DTO
+     * @param accessMode how entity fields without getter are read
+     * @return the sources
+     */
+    static DtoSources of(DtoShape shape, AccessMode accessMode) {
+        DtoSources sources = new DtoSources(accessMode);
+        for (DtoShape.Property property : shape.getProperties()) {
+            Node node = sources.root;
+            for (String name : property.getSourcePath()) {
+                node = node.children.computeIfAbsent(name, Node::new);
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * Collects the loaded entities reachable from the root entity along the source paths, each once.
+     *
+     * @param entity the root entity, not included
+     * @return the entities the DTO is also converted from
+     */
+    List<Object> of(Object entity) {
+        Object source = unproxy(entity);
+        if (source == null || root.children.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<Object> found = Collections.newSetFromMap(new IdentityHashMap<>());
+        collect(source, root, found);
+        found.remove(source);
+        return new ArrayList<>(found);
+    }
+
+    private void collect(Object source, Node node, Set<Object> found) {
+        for (Node child : node.children.values()) {
+            FieldAccessor accessor = child.accessors.computeIfAbsent(source.getClass(),
+                    type -> Optional.ofNullable(EntityPatchPlan.accessorFor(type, child.name, accessMode))).orElse(null);
+            if (accessor == null) {
+                continue;
+            }
+            Object value = accessor.get(source);
+            if (value instanceof PersistentCollection && !((PersistentCollection<?>) value).wasInitialized()) {
+                continue;
+            }
+            if (value instanceof Collection) {
+                for (Object element : (Collection<?>) value) {
+                    visit(element, child, found);
+                }
+            } else if (value instanceof Map) {
+                for (Object element : ((Map<?, ?>) value).values()) {
+                    visit(element, child, found);
+                }
+            } else {
+                visit(value, child, found);
+            }
+        }
+    }
+
+    private void visit(Object value, Node node, Set<Object> found) {
+        value = unproxy(value);
+        if (value == null) {
+            return;
+        }
+        if (value.getClass().isAnnotationPresent(Entity.class)) {
+            found.add(value);
+        }
+        if (!node.children.isEmpty()) {
+            collect(value, node, found);
+        }
+    }
+
+    /**
+     * @return the implementation of an initialized proxy, null for an uninitialized one, the value otherwise
+     */
+    private static Object unproxy(Object value) {
+        if (value instanceof HibernateProxy) {
+            LazyInitializer initializer = ((HibernateProxy) value).getHibernateLazyInitializer();
+            return initializer.isUninitialized() ? null : initializer.getImplementation();
+        }
+        return value;
+    }
+}
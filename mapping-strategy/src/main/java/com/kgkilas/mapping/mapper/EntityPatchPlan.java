@@ -0,0 +1,484 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+import com.kgkilas.mapping.accessor.PropertyAccessor;
+import com.kgkilas.mapping.annotation.IgnoreField;
+import com.kgkilas.mapping.patch.FieldMask;
+import com.kgkilas.mapping.patch.PatchField;
+import com.kgkilas.mapping.patch.PatchPlan;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.EmbeddedId;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.PersistenceUnitUtil;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.TypeMap;
+import org.modelmapper.spi.Mapping;
+import org.modelmapper.spi.PropertyInfo;
+import org.modelmapper.spi.PropertyMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Precompiled plan for patching a DTO straight onto an entity of another type.
+ * Built once from the ModelMapper {@link TypeMap} between the two classes: every property mapping becomes a step
+ * that reads the source property chain of the update and writes the last destination property of the entity.
+ * Properties are accessed through their getters and setters where available, so lazy associations are loaded
+ * and entity setters run; otherwise the fields are accessed directly.
+ * <p>
+ * Steps only write the entity's own properties, descending into embedded objects but never into associated
+ * entities. An association is changed by pointing it to the entity with the new id, obtained from
+ * {@link EntityManager#getReference(Class, Object)}, whether the mapping targets the association itself or
+ * its id ({@code author.id}); mappings writing other properties of an associated entity are not patched.
+ * Collections of entities are merged by id: existing elements the update still holds are kept as they are,
+ * the others are removed, and references to the new ids are added. Collections on the inverse side of
+ * an association and maps of entities are not patched, since their changes are not stored from this side.
+ */
+final class EntityPatchPlan {
+    private static final Logger logger = LoggerFactory.getLogger(EntityPatchPlan.class);
+
+    /**
+     * A single property mapping of the type map.
+     */
+    private static final class Step {
+        private final String path;
+        private final FieldAccessor[] source;
+        private final Class<?>[] sourceOwners;
+        private final FieldAccessor[] destination;
+        private final Type destinationType;
+        private final boolean container;
+        private final Class<?> referenceType;
+        private final Field referenceId;
+        private final boolean byId;
+        private final Class<?> elementEntityType;
+
+        private Step(String path, FieldAccessor[] source, Class<?>[] sourceOwners, FieldAccessor[] destination,
+                     Type destinationType, Class<?> referenceType, boolean byId) {
+            this.path = path;
+            this.source = source;
+            this.sourceOwners = sourceOwners;
+            this.destination = destination;
+            this.destinationType = destinationType;
+            this.referenceType = referenceType;
+            this.referenceId = referenceType == null ? null : idField(referenceType);
+            this.byId = byId;
+            Class<?> type = destination[destination.length - 1].getType();
+            this.container = Collection.class.isAssignableFrom(type) || Map.class.isAssignableFrom(type);
+            this.elementEntityType = container ? elementEntityType(destinationType) : null;
+        }
+
+        private FieldAccessor leaf() {
+            return destination[destination.length - 1];
+        }
+    }
+
+    private final AccessMode accessMode;
+    private final List<Step> steps;
+
+    private EntityPatchPlan(AccessMode accessMode, List<Step> steps) {
+        this.accessMode = accessMode;
+        this.steps = steps;
+    }
+
+    AccessMode getAccessMode() {
+        return accessMode;
+    }
+
+    /**
+     * Builds the plan from the type map, skipping skipped mappings and mappings that cannot be patched
+     * property by property (constant, source and converted or conditional mappings).
+     *
+     * @param typeMap    the type map from the DTO class to the entity class
+     * @param accessMode how fields without getter and setter are accessed
+     * @return the plan
+     */
+    static EntityPatchPlan of(TypeMap<?, ?> typeMap, AccessMode accessMode) {
+        List<Step> steps = new ArrayList<>();
+        for (Mapping mapping : typeMap.getMappings()) {
+            if (mapping.isSkipped()) {
+                continue;
+            }
+            if (!(mapping instanceof PropertyMapping) || mapping.getConverter() != null || mapping.getCondition() != null) {
+                logger.warn("Mapping '{}' of {} is not a plain property mapping, it will not be patched",
+                        mapping.getPath(), typeMap.getName());
+                continue;
+            }
+            Step step = step((PropertyMapping) mapping, accessMode);
+            if (step != null) {
+                steps.add(step);
+            }
+        }
+        logger.debug("Built entity patch plan {} -> {} with {} steps", typeMap.getSourceType().getName(),
+                typeMap.getDestinationType().getName(), steps.size());
+        return new EntityPatchPlan(accessMode, steps);
+    }
+
+    private static Step step(PropertyMapping mapping, AccessMode accessMode) {
+        List<? extends PropertyInfo> sourceProperties = mapping.getSourceProperties();
+        List<? extends PropertyInfo> destinationProperties = mapping.getDestinationProperties();
+        if (sourceProperties.isEmpty() || destinationProperties.isEmpty()) {
+            return null;
+        }
+        PropertyInfo first = sourceProperties.get(0);
+        Field dtoField = PatchPlan.findField(first.getInitialType(), first.getName());
+        if (dtoField != null && dtoField.isAnnotationPresent(IgnoreField.class)) {
+            return null;
+        }
+        FieldAccessor[] source = new FieldAccessor[sourceProperties.size()];
+        Class<?>[] sourceOwners = new Class<?>[sourceProperties.size()];
+        for (int i = 0; i < source.length; i++) {
+            PropertyInfo property = sourceProperties.get(i);
+            sourceOwners[i] = property.getInitialType();
+            source[i] = accessorFor(property, accessMode);
+        }
+        FieldAccessor[] destination = new FieldAccessor[destinationProperties.size()];
+        for (int i = 0; i < destination.length; i++) {
+            destination[i] = accessorFor(destinationProperties.get(i), accessMode);
+        }
+        for (FieldAccessor accessor : source) {
+            if (accessor == null) {
+                return unsupported(mapping, "it has a property without accessor");
+            }
+        }
+        for (FieldAccessor accessor : destination) {
+            if (accessor == null) {
+                return unsupported(mapping, "it has a property without accessor");
+            }
+        }
+        int last = destination.length - 1;
+        for (int i = 0; i < last; i++) {
+            Class<?> type = destinationProperties.get(i).getType();
+            if (type.isAnnotationPresent(Entity.class)) {
+                Field id = idField(type);
+                if (i == last - 1 && id != null && id.getName().equals(destination[last].getName())) {
+                    return new Step(mapping.getPath(), source, sourceOwners, Arrays.copyOf(destination, last),
+                            type, type, true);
+                }
+                return unsupported(mapping, "it writes through the association '" + destination[i].getName() + "'");
+            }
+            if (!type.isAnnotationPresent(Embeddable.class)) {
+                return unsupported(mapping, "'" + destination[i].getName() + "' is neither embedded nor an association");
+            }
+        }
+        Class<?> leafType = destination[last].getType();
+        Type leafGenericType = mapping.getLastDestinationProperty().getGenericType();
+        if (Map.class.isAssignableFrom(leafType) && elementEntityType(leafGenericType) != null) {
+            return unsupported(mapping, "maps of entities are not merged");
+        }
+        if (Collection.class.isAssignableFrom(leafType) && elementEntityType(leafGenericType) != null
+                && isInverseSide(destinationProperties.get(last).getInitialType(), destination[last].getName())) {
+            return unsupported(mapping, "'" + destination[last].getName() + "' is the inverse side of its association");
+        }
+        if (leafType.isAnnotationPresent(Entity.class)) {
+            if (idField(leafType) == null) {
+                return unsupported(mapping, leafType.getName() + " has no id field");
+            }
+            return new Step(mapping.getPath(), source, sourceOwners, destination, leafType, leafType, false);
+        }
+        return new Step(mapping.getPath(), source, sourceOwners, destination, leafGenericType, null, false);
+    }
+
+    private static Step unsupported(PropertyMapping mapping, String reason) {
+        logger.warn("Mapping '{}' will not be patched, {}", mapping.getPath(), reason);
+        return null;
+    }
+
+    /**
+     * Returns the entity type of the elements of a collection, or of the values of a map, if they are entities.
+     */
+    private static Class<?> elementEntityType(Type containerType) {
+        if (!(containerType instanceof ParameterizedType)) {
+            return null;
+        }
+        Type[] arguments = ((ParameterizedType) containerType).getActualTypeArguments();
+        Type element = arguments[arguments.length - 1];
+        return element instanceof Class && ((Class<?>) element).isAnnotationPresent(Entity.class)
+                ? (Class<?>) element : null;
+    }
+
+    private static boolean isInverseSide(Class<?> ownerType, String name) {
+        Field field = PatchPlan.findField(ownerType, name);
+        if (field == null) {
+            return false;
+        }
+        OneToMany oneToMany = field.getAnnotation(OneToMany.class);
+        ManyToMany manyToMany = field.getAnnotation(ManyToMany.class);
+        return oneToMany != null && !oneToMany.mappedBy().isEmpty()
+                || manyToMany != null && !manyToMany.mappedBy().isEmpty();
+    }
+
+    private static Field idField(Class<?> entityType) {
+        for (Field field : PatchPlan.fieldTable(entityType).values()) {
+            if (field.isAnnotationPresent(Id.class) || field.isAnnotationPresent(EmbeddedId.class)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    private static FieldAccessor accessorFor(PropertyInfo property, AccessMode accessMode) {
+        return accessorFor(property.getInitialType(), property.getName(), accessMode);
+    }
+
+    /**
+     * Returns an accessor for the named property: its getter and setter if it has both, otherwise its field.
+     *
+     * @param ownerType  the class declaring or inheriting the property
+     * @param name       the property name
+     * @param accessMode how the field is accessed
+     * @return the accessor, or null if the property has no accessible field
+     */
+    static FieldAccessor accessorFor(Class<?> ownerType, String name, AccessMode accessMode) {
+        PropertyAccessor propertyAccessor = PropertyAccessor.of(ownerType, name);
+        if (propertyAccessor != null) {
+            return propertyAccessor;
+        }
+        Field field = PatchPlan.findField(ownerType, name);
+        if (field == null) {
+            return null;
+        }
+        try {
+            field.setAccessible(true);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return accessMode.accessorFor(field);
+    }
+
+    /**
+     * Writes the non-null values of update onto entity. Null values are written as null where the mask selects
+     * the update property. Values of another type than the entity property, and collections and maps,
+     * are converted by the model mapper; existing collections and maps of values are refilled rather than
+     * replaced, collections of entities are merged by id. Associations are pointed to a reference to the entity
+     * with the new id; without entity manager neither they nor collections of entities are patched.
+     *
+     * @param update        the DTO with updated values
+     * @param entity        the entity to be patched
+     * @param mask          the mask of update properties to be set to null if they are null, may be null
+     * @param modelMapper   the model mapper used for conversions
+     * @param entityManager the entity manager resolving associations by id, may be null
+     */
+    void apply(Object update, Object entity, FieldMask mask, ModelMapper modelMapper, EntityManager entityManager) {
+        for (Step step : steps) {
+            try {
+                applyStep(step, update, entity, mask, modelMapper, entityManager);
+            } catch (IllegalStateException | UnsupportedOperationException e) {
+                logger.error("Error patching property '{}'", step.path, e);
+            }
+        }
+    }
+
+    private void applyStep(Step step, Object update, Object entity, FieldMask mask, ModelMapper modelMapper,
+                           EntityManager entityManager) {
+        Object value = update;
+        for (FieldAccessor accessor : step.source) {
+            value = accessor.get(value);
+            if (value == null) {
+                break;
+            }
+        }
+        if (value == null && (step.leaf().getType().isPrimitive() || !isSelected(step, mask))) {
+            return;
+        }
+        Object parent = entity;
+        for (int i = 0; i < step.destination.length - 1 && parent != null; i++) {
+            parent = step.destination[i].get(parent);
+        }
+        if (parent == null) {
+            logger.debug("Property '{}' skipped, the entity has no object to hold it", step.path);
+            return;
+        }
+        FieldAccessor leaf = step.leaf();
+        if (step.referenceType != null) {
+            applyReference(step, parent, value, modelMapper, entityManager);
+            return;
+        }
+        Object existingValue = leaf.get(parent);
+        if (step.elementEntityType != null) {
+            mergeById(step, parent, existingValue, (Collection<?>) value, modelMapper, entityManager);
+            return;
+        }
+        if (value != null && step.container) {
+            Object converted = modelMapper.map(value, step.destinationType);
+            if (!refill(existingValue, converted)) {
+                leaf.set(parent, converted);
+            }
+            logger.debug("Property '{}' updated", step.path);
+            return;
+        }
+        if (value != null && !wrap(leaf.getType()).isInstance(value)) {
+            value = modelMapper.map(value, leaf.getType());
+        }
+        if (!Objects.equals(value, existingValue)) {
+            leaf.set(parent, value);
+            logger.debug("Property '{}' updated with value '{}'", step.path, value);
+        }
+    }
+
+    private void applyReference(Step step, Object parent, Object value, ModelMapper modelMapper,
+                                EntityManager entityManager) {
+        FieldAccessor leaf = step.leaf();
+        if (value == null) {
+            if (leaf.get(parent) != null) {
+                leaf.set(parent, null);
+                logger.debug("Association '{}' cleared", step.path);
+            }
+            return;
+        }
+        if (entityManager == null) {
+            logger.warn("Association '{}' needs an EntityManager to be resolved by id, it will not be patched", step.path);
+            return;
+        }
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Object id;
+        if (step.byId) {
+            Class<?> idType = step.referenceId.getType();
+            id = wrap(idType).isInstance(value) ? value : modelMapper.map(value, idType);
+        } else {
+            id = util.getIdentifier(step.referenceType.isInstance(value) ? value : modelMapper.map(value, step.referenceType));
+        }
+        if (id == null) {
+            logger.warn("Association '{}' has no id in the update, it will not be patched", step.path);
+            return;
+        }
+        Object existing = leaf.get(parent);
+        if (existing != null && id.equals(util.getIdentifier(existing))) {
+            return;
+        }
+        leaf.set(parent, entityManager.getReference(step.referenceType, id));
+        logger.debug("Association '{}' set to {} '{}'", step.path, step.referenceType.getSimpleName(), id);
+    }
+
+    /**
+     * Merges a collection of entities by id, keeping the existing instances, so identity, back-references and
+     * orphan removal keep working and an unchanged collection is not rewritten.
+     */
+    @SuppressWarnings("unchecked")
+    private void mergeById(Step step, Object parent, Object existingValue, Collection<?> update,
+                           ModelMapper modelMapper, EntityManager entityManager) {
+        if (!(existingValue instanceof Collection)) {
+            if (existingValue == null && update != null && !update.isEmpty()) {
+                logger.warn("Collection '{}' is null in the entity, it will not be patched", step.path);
+            }
+            return;
+        }
+        Collection<Object> existing = (Collection<Object>) existingValue;
+        if (update == null) {
+            if (!existing.isEmpty()) {
+                existing.clear();
+                logger.debug("Collection '{}' cleared", step.path);
+            }
+            return;
+        }
+        if (entityManager == null) {
+            logger.warn("Collection '{}' needs an EntityManager to be merged by id, it will not be patched", step.path);
+            return;
+        }
+        PersistenceUnitUtil util = entityManager.getEntityManagerFactory().getPersistenceUnitUtil();
+        Set<Object> ids = new LinkedHashSet<>();
+        for (Object element : update) {
+            if (element == null) {
+                continue;
+            }
+            Object id = util.getIdentifier(step.elementEntityType.isInstance(element)
+                    ? element : modelMapper.map(element, step.elementEntityType));
+            if (id == null) {
+                logger.warn("Element of collection '{}' has no id in the update, it will not be added", step.path);
+            } else {
+                ids.add(id);
+            }
+        }
+        Set<Object> kept = new HashSet<>();
+        boolean removed = existing.removeIf(element -> {
+            Object id = util.getIdentifier(element);
+            return !ids.contains(id) || !kept.add(id);
+        });
+        int added = 0;
+        for (Object id : ids) {
+            if (!kept.contains(id)) {
+                existing.add(entityManager.getReference(step.elementEntityType, id));
+                added++;
+            }
+        }
+        if (removed || added > 0) {
+            logger.debug("Collection '{}' merged by id, {} elements added", step.path, added);
+        }
+    }
+
+    private boolean isSelected(Step step, FieldMask mask) {
+        FieldMask current = mask;
+        for (int i = 0; current != null && i < step.source.length; i++) {
+            PatchPlan plan = PatchPlan.of(step.sourceOwners[i], step.sourceOwners[i], accessMode);
+            PatchField field = plan.getField(step.source[i].getName());
+            if (field == null) {
+                return false;
+            }
+            FieldMask bound = current.bind(plan);
+            if (i == step.source.length - 1) {
+                return bound.isSelected(field.getOrdinal());
+            }
+            current = bound.nested(field.getOrdinal());
+        }
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static boolean refill(Object existingValue, Object converted) {
+        if (existingValue instanceof Collection && converted instanceof Collection) {
+            Collection<Object> existing = (Collection<Object>) existingValue;
+            if (!existing.equals(converted)) {
+                existing.clear();
+                existing.addAll((Collection<Object>) converted);
+            }
+            return true;
+        }
+        if (existingValue instanceof Map && converted instanceof Map) {
+            Map<Object, Object> existing = (Map<Object, Object>) existingValue;
+            if (!existing.equals(converted)) {
+                existing.clear();
+                existing.putAll((Map<Object, Object>) converted);
+            }
+            return true;
+        }
+        return false;
+    }
+
+    static Class<?> wrap(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        }
+        if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        }
+        return Character.class;
+    }
+}
@@ -0,0 +1,1583 @@
+package com.kgkilas.mapping.mapper;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+import com.kgkilas.mapping.annotation.PatchCollection;
+import com.kgkilas.mapping.batch.BatchResult;
+import com.kgkilas.mapping.cache.CachedDtoMode;
+import com.kgkilas.mapping.cache.DtoCache;
+import com.kgkilas.mapping.json.JsonMergePatcher;
+import com.kgkilas.mapping.json.JsonPatch;
+import com.kgkilas.mapping.json.JsonPatcher;
+import com.kgkilas.mapping.lazy.LazyLoadReport;
+import com.kgkilas.mapping.lazy.LoadedGraphCopier;
+import com.kgkilas.mapping.lazy.UnloadedPolicy;
+import com.kgkilas.mapping.patch.ChangeSet;
+import com.kgkilas.mapping.patch.CopyPlan;
+import com.kgkilas.mapping.patch.FieldMask;
+import com.kgkilas.mapping.patch.GeneratedPatcher;
+import com.kgkilas.mapping.patch.PatchCallback;
+import com.kgkilas.mapping.patch.PatchField;
+import com.kgkilas.mapping.patch.PatchPlan;
+import com.kgkilas.mapping.strategy.NullHandlingStrategy;
+import com.kgkilas.mapping.strategy.SetToNullStrategy;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import jakarta.validation.ValidatorFactory;
+import lombok.Setter;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.TypeMap;
+import org.modelmapper.config.Configuration;
+import org.modelmapper.spi.Mapping;
+import org.modelmapper.spi.PropertyMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A generic mapper class that handles conversion between entity and DTO objects.
+ * It also provides methods for patching DTOs and handling null values based on strategy.
+ *
+ * @param <E> the type of the entity
+ * @param <D> the type of the DTO
+ */
+public class GenericMapper<E, D> {
+    private static final Logger logger = LoggerFactory.getLogger(GenericMapper.class);
+
+    /**
+     * Default number of nested object levels a patch may descend below the patched object.
+     */
+    public static final int DEFAULT_MAX_PATCH_DEPTH = 512;
+
+    /**
+     * Default number of items a batch operation hands to one task.
+     */
+    public static final int DEFAULT_BATCH_CHUNK_SIZE = 256;
+
+    /**
+     * Default number of items from which batch operations run in parallel.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 1024;
+
+    /**
+     * Default number of entities converted at the same time by the blocking batch conversion.
+     */
+    public static final int DEFAULT_MAX_BLOCKING_CONCURRENCY = 64;
+
+    /**
+     * Query hint making an entity graph a fetch graph.
+     */
+    public static final String FETCH_GRAPH_HINT = "jakarta.persistence.fetchgraph";
+
+    private final ModelMapper modelMapper;
+    private final Class<E> entityClass;
+    private final Class<D> dtoClass;
+    private final ValidatorFactory validatorFactory;
+    private final Validator validator;
+    private volatile EntityPatchPlan entityPatchPlan;
+    private volatile DtoShape dtoShape;
+    private volatile DtoProjection dtoProjection;
+    private volatile DtoReset dtoReset;
+    private volatile DtoSources dtoSources;
+    private volatile SharedPropertyPlan sharedPropertyPlan;
+    private final ThreadLocal<SharedPropertyPlan.Run> sharedPropertyRuns = new ThreadLocal<>();
+    private final ThreadLocal<BatchMappingContext> currentContext = new ThreadLocal<>();
+    private volatile EntityGraphEntry<E> entityGraph;
+
+    @Setter
+    private Executor batchExecutor = ForkJoinPool.commonPool();
+
+    @Setter
+    private int batchChunkSize = DEFAULT_BATCH_CHUNK_SIZE;
+
+    @Setter
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+
+    /**
+     * Executor of the blocking batch conversion, one task per entity. The default starts a daemon thread per task;
+     * on Java 21 and later, {@code Executors.newVirtualThreadPerTaskExecutor()} is the natural choice.
+     */
+    @Setter
+    private Executor blockingExecutor = GenericMapper::startDaemonThread;
+
+    @Setter
+    private int maxBlockingConcurrency = DEFAULT_MAX_BLOCKING_CONCURRENCY;
+
+    @Setter
+    private UnloadedPolicy unloadedPolicy = UnloadedPolicy.NULL;
+
+    /**
+     * Cache of the DTOs converted by {@link #toDTO(Object)}, none by default.
+     */
+    @Setter
+    private DtoCache dtoCache;
+
+    @Setter
+    private CachedDtoMode cachedDtoMode = CachedDtoMode.COPY;
+
+    @Setter
+    private NullHandlingStrategy nullHandlingStrategy = new SetToNullStrategy(); // Default strategy
+
+    @Setter
+    private AccessMode accessMode = AccessMode.HANDLES;
+
+    @Setter
+    private ObjectMapper objectMapper;
+
+    @Setter
+    private int maxPatchDepth = DEFAULT_MAX_PATCH_DEPTH;
+
+    public GenericMapper(ModelMapper modelMapper, Class<E> entityClass, Class<D> dtoClass) {
+        this.modelMapper = modelMapper;
+        this.entityClass = entityClass;
+        this.dtoClass = dtoClass;
+        this.validatorFactory = Validation.buildDefaultValidatorFactory();
+        this.validator = validatorFactory.getValidator();
+    }
+
+    /**
+     * Converts an entity to a DTO and validates it. With a DTO cache, the DTO cached for the same version of the
+     * entity is returned instead, as a copy or shared according to the cached DTO mode. The cache also drops the
+     * DTO when an associated entity it was converted from changes.
+     *
+     * @param entity the entity to convert
+     * @return the DTO
+     */
+    public D toDTO(E entity) {
+        DtoCache cache = dtoCache;
+        DtoCache.Key key = cache == null ? null : cache.keyOf(this, entity);
+        if (key == null) {
+            return toNewDTO(entity);
+        }
+        Object cached = cache.get(key);
+        if (cached != null) {
+            return cachedDtoMode == CachedDtoMode.SHARED ? dtoClass.cast(cached) : cache.copy(dtoClass.cast(cached), dtoClass);
+        }
+        D dto = toNewDTO(entity);
+        cache.put(key, cachedDtoMode == CachedDtoMode.SHARED ? dto : cache.copy(dto, dtoClass), dtoSources().of(entity));
+        return dto;
+    }
+
+    /**
+     * Converts an entity to a new DTO, validated, bypassing the DTO cache.
+     */
+    private D toNewDTO(E entity) {
+        D dto = convertToDTO(entity);
+        validate(dto);
+        return dto;
+    }
+
+    /**
+     * Converts an entity to a new DTO, without validating it or consulting the DTO cache. Every conversion of
+     * {@link #toDTO(Object)} that is not served from the cache goes through here; mappers generated by the
+     * annotation processor override it with direct getter and setter calls.
+     *
+     * @param entity the entity to convert
+     * @return the DTO
+     */
+    protected D convertToDTO(E entity) {
+        return modelMapper.map(entity, dtoClass);
+    }
+
+    /**
+     * Whether the mapper's ModelMapper copies exactly the given properties from sourceType to destinationType, each
+     * from the source property of the same name: the type map has no converter, condition, provider or skipped
+     * property, and the configuration neither skips nulls nor has a property condition, a provider or converters
+     * besides the default ones. Mappers generated by the annotation processor check this before their first
+     * conversion and keep the ModelMapper conversion otherwise, so a configured type map is never bypassed.
+     *
+     * @param sourceType      the source class
+     * @param destinationType the destination class
+     * @param properties      the names of the destination properties the generated conversion writes
+     * @return true if a plain getter and setter copy gives the same result as ModelMapper
+     */
+    protected boolean isPlainCopy(Class<?> sourceType, Class<?> destinationType, String... properties) {
+        String reason = plainCopyViolation(sourceType, destinationType, new HashSet<>(Arrays.asList(properties)));
+        if (reason != null) {
+            logger.info("{} keeps the ModelMapper conversion from {} to {}: {}", getClass().getName(),
+                    sourceType.getName(), destinationType.getName(), reason);
+            return false;
+        }
+        return true;
+    }
+
+    private String plainCopyViolation(Class<?> sourceType, Class<?> destinationType, Set<String> properties) {
+        Configuration configuration = modelMapper.getConfiguration();
+        if (configuration.isSkipNullEnabled() || configuration.getPropertyCondition() != null
+                || configuration.getProvider() != null) {
+            return "the configuration skips nulls or has a property condition or provider";
+        }
+        if (!DefaultConverters.TYPES.equals(converterTypes(configuration))) {
+            return "the configuration has converters besides the default ones";
+        }
+        TypeMap<?, ?> typeMap = modelMapper.typeMap(sourceType, destinationType);
+        if (typeMap.getConverter() != null || typeMap.getPreConverter() != null || typeMap.getPostConverter() != null
+                || typeMap.getPropertyConverter() != null || typeMap.getCondition() != null
+                || typeMap.getPropertyCondition() != null || typeMap.getProvider() != null
+                || typeMap.getPropertyProvider() != null) {
+            return "the type map has a converter, condition or provider";
+        }
+        Set<String> mapped = new HashSet<>();
+        for (Mapping mapping : typeMap.getMappings()) {
+            String name = mapping.getLastDestinationProperty().getName();
+            if (!(mapping instanceof PropertyMapping) || mapping.isSkipped() || mapping.getConverter() != null
+                    || mapping.getCondition() != null || mapping.getProvider() != null
+                    || mapping.getDestinationProperties().size() != 1
+                    || ((PropertyMapping) mapping).getSourceProperties().size() != 1
+                    || !((PropertyMapping) mapping).getLastSourceProperty().getName().equals(name)) {
+                return "property '" + mapping.getPath() + "' is not a plain copy of the same-named source property";
+            }
+            mapped.add(name);
+        }
+        if (!mapped.equals(properties)) {
+            return "the type map maps " + mapped + " rather than " + properties;
+        }
+        return null;
+    }
+
+    private static List<Class<?>> converterTypes(Configuration configuration) {
+        List<Class<?>> types = new ArrayList<>();
+        for (Object converter : configuration.getConverters()) {
+            types.add(converter.getClass());
+        }
+        return types;
+    }
+
+    /**
+     * The converter classes of a ModelMapper configuration nobody added converters to.
+     */
+    private static final class DefaultConverters {
+        private static final List<Class<?>> TYPES = converterTypes(new ModelMapper().getConfiguration());
+    }
+
+    /**
+     * Converts an entity into an existing DTO and validates it. The DTO's nested DTOs, collections and maps are
+     * created afresh rather than mapped into, so the result is the same as with {@link #toDTO(Object)} and nested
+     * DTOs of the target kept by the caller are left as they were.
+     *
+     * @param entity the entity to convert
+     * @param target the DTO to fill
+     * @return the target
+     */
+    public D toDTO(E entity, D target) {
+        dtoReset().apply(target);
+        modelMapper.map(entity, target);
+        validate(target);
+        return target;
+    }
+
+    /**
+     * Converts an entity to a DTO within a batch context and validates it. An entity already converted in the
+     * context gives the same DTO again, and a nested DTO converted from an object already converted in the context,
+     * such as an author shared by many books, is the earlier nested DTO; neither is converted or validated again.
+     * The DTO and its nested DTOs are only recorded in the context once the DTO is valid.
+     *
+     * @param entity  the entity to convert
+     * @param context the context of the batch
+     * @return the DTO
+     */
+    public D toDTO(E entity, BatchMappingContext context) {
+        Object earlier = context.get(entity, dtoClass);
+        if (earlier != null) {
+            return dtoClass.cast(earlier);
+        }
+        SharedPropertyPlan plan = sharedPropertyPlan();
+        Object[] sources = plan.sources(entity);
+        Object[] reused = plan.reused(sources, context);
+        BatchMappingContext previousContext = currentContext.get();
+        SharedPropertyPlan.Run previousRun = sharedPropertyRuns.get();
+        SharedPropertyPlan.Run run = plan.run(entity, reused);
+        currentContext.set(context);
+        sharedPropertyRuns.set(run);
+        try {
+            D dto = run == null ? modelMapper.map(entity, dtoClass) : modelMapper.map(entity, dtoClass, plan.getTypeMapName());
+            plan.reuse(dto, reused);
+            validate(dto);
+            plan.record(dto, sources, reused, context);
+            context.put(entity, dtoClass, dto);
+            return dto;
+        } finally {
+            sharedPropertyRuns.set(previousRun);
+            currentContext.set(previousContext);
+        }
+    }
+
+    /**
+     * Converts a list of entities to DTOs within a batch context and validates each, converting every entity and
+     * every shared nested object once.
+     *
+     * @param entityList the list of entities
+     * @param context    the context of the batch
+     * @return the list of DTOs, repeated entities giving the same DTO
+     * @see #toDTO(Object, BatchMappingContext)
+     */
+    public List<D> toDTO(List<E> entityList, BatchMappingContext context) {
+        List<D> dtos = new ArrayList<>(entityList.size());
+        for (E entity : entityList) {
+            dtos.add(toDTO(entity, context));
+        }
+        return dtos;
+    }
+
+    /**
+     * Converts the entities one after another into a single reused DTO, passing it to the action after each
+     * conversion, so bulk jobs do not allocate a DTO per entity. Each DTO is validated as by
+     * {@link #toDTO(Object)}, but neither taken from nor put into the DTO cache. The action must not keep the DTO,
+     * which is overwritten by the next entity.
+     *
+     * @param entities the entities to convert
+     * @param action   called with the DTO of every entity, in iteration order
+     */
+    public void forEachDTO(Iterable<? extends E> entities, Consumer<? super D> action) {
+        D dto = null;
+        for (E entity : entities) {
+            dto = dto == null ? toNewDTO(entity) : toDTO(entity, dto);
+            action.accept(dto);
+        }
+    }
+
+    /**
+     * Converts an entity to a DTO without loading anything lazily: associations that are not loaded are
+     * left null or id-only according to the unloaded policy, and collections and lazy attributes that are not
+     * loaded are left null. The DTO is validated. As it may be partial, it is neither taken from nor put into the
+     * DTO cache.
+     *
+     * @param entity the entity to convert, may be a proxy
+     * @return the DTO
+     */
+    public D toDTOLoaded(E entity) {
+        return toDTOLoaded(entity, null);
+    }
+
+    /**
+     * Converts an entity to a DTO without loading anything lazily, recording what was left out in the report.
+     *
+     * @param entity the entity to convert, may be a proxy
+     * @param report the report to record what was not loaded in, may be null
+     * @return the DTO
+     * @see #toDTOLoaded(Object)
+     */
+    public D toDTOLoaded(E entity, LazyLoadReport report) {
+        return toNewDTO(new LoadedGraphCopier(unloadedPolicy, report).copy(entity));
+    }
+
+    /**
+     * Converts a list of entities to DTOs without loading anything lazily, recording what was left out
+     * in the report. Objects shared by several entities are copied once.
+     *
+     * @param entities the entities to convert
+     * @param report   the report to record what was not loaded in, may be null
+     * @return the list of DTOs
+     * @see #toDTOLoaded(Object)
+     */
+    public List<D> toDTOLoaded(List<E> entities, LazyLoadReport report) {
+        LoadedGraphCopier copier = new LoadedGraphCopier(unloadedPolicy, report);
+        List<D> dtos = new ArrayList<>(entities.size());
+        for (E entity : entities) {
+            dtos.add(toNewDTO(copier.copy(entity)));
+        }
+        return dtos;
+    }
+
+    /**
+     * Converts a list of entities to a list of DTOs and validates each, in the calling thread, so lazy loads stay
+     * in the caller's persistence context. Use {@link #toDTOAll(Collection)} for parallel conversion.
+     *
+     * @param entityList the list of entities
+     * @return the list of DTOs
+     */
+    public List<D> toDTO(List<E> entityList) {
+        List<D> dtos = new ArrayList<>(entityList.size());
+        for (E entity : entityList) {
+            dtos.add(toDTO(entity));
+        }
+        return dtos;
+    }
+
+    /**
+     * Converts a stream of entities to DTOs lazily: each entity is converted and its DTO validated only when
+     * the returned stream consumes it. Closing the returned stream closes the entity stream.
+     *
+     * @param entities the entities, e.g. the result of a streaming repository query
+     * @return the stream of DTOs
+     */
+    public Stream<D> toDTOStream(Stream<E> entities) {
+        return toDTOStream(entities, null);
+    }
+
+    /**
+     * Converts a stream of entities to DTOs lazily, passing every entity to afterEach once it is converted,
+     * e.g. {@code entityManager::detach}, so processed entities do not pile up in the persistence context.
+     * Closing the returned stream closes the entity stream.
+     *
+     * @param entities  the entities, e.g. the result of a streaming repository query
+     * @param afterEach called with every entity after its conversion, even a failed one, may be null
+     * @return the stream of DTOs
+     */
+    public Stream<D> toDTOStream(Stream<E> entities, Consumer<? super E> afterEach) {
+        return StreamSupport.stream(toDTOSpliterator(entities.spliterator(), afterEach), entities.isParallel())
+                .onClose(entities::close);
+    }
+
+    /**
+     * Converts the entities of an iterator to DTOs lazily, one per call of {@code next()}.
+     *
+     * @param entities  the entities
+     * @param afterEach called with every entity after its conversion, even a failed one, may be null
+     * @return the iterator of DTOs
+     */
+    public Iterator<D> toDTOIterator(Iterator<E> entities, Consumer<? super E> afterEach) {
+        return Spliterators.iterator(toDTOSpliterator(Spliterators.spliteratorUnknownSize(entities, Spliterator.ORDERED), afterEach));
+    }
+
+    /**
+     * Converts the entities of a spliterator to DTOs lazily, one per advance. Splitting splits the entities.
+     *
+     * @param entities  the entities
+     * @param afterEach called with every entity after its conversion, even a failed one, may be null
+     * @return the spliterator of DTOs
+     */
+    public Spliterator<D> toDTOSpliterator(Spliterator<E> entities, Consumer<? super E> afterEach) {
+        return new MappingSpliterator<>(entities, this::toDTO, afterEach);
+    }
+
+    /**
+     * Converts the entities of a publisher to DTOs as they arrive, in the thread delivering them.
+     * Demand is passed straight to the entity publisher, so entities are pulled at the subscriber's pace.
+     * A failing entity cancels the entity publisher and fails the subscriber.
+     *
+     * @param entities the entities
+     * @return the publisher of DTOs
+     */
+    public Flow.Publisher<D> toDTOPublisher(Flow.Publisher<E> entities) {
+        return new MappingPublisher<>(entities, this::toDTO);
+    }
+
+    /**
+     * Converts the entities of a publisher to DTOs on the given executor, at most maxConcurrency at a time,
+     * and publishes the DTOs in entity order. At most prefetch entities are requested ahead of what the subscriber
+     * has received, so memory stays bounded with a slow subscriber. A failing entity cancels the entity publisher
+     * and fails the subscriber after the DTOs of the earlier entities.
+     *
+     * @param entities       the entities
+     * @param maxConcurrency the maximum number of entities converted at the same time
+     * @param prefetch       the maximum number of entities requested and not yet published as DTOs
+     * @param executor       the executor converting the entities
+     * @return the publisher of DTOs
+     * @throws IllegalArgumentException if maxConcurrency or prefetch is not positive
+     */
+    public Flow.Publisher<D> toDTOPublisher(Flow.Publisher<E> entities, int maxConcurrency, int prefetch, Executor executor) {
+        if (maxConcurrency < 1 || prefetch < 1) {
+            throw new IllegalArgumentException("maxConcurrency and prefetch must be positive, got "
+                    + maxConcurrency + " and " + prefetch);
+        }
+        return new OrderedParallelMappingPublisher<>(entities, this::toDTO, maxConcurrency, prefetch, executor);
+    }
+
+    /**
+     * Converts a batch of entities to DTOs and validates each, in parallel chunks on the batch executor
+     * if the batch reaches the parallel threshold. A failing entity does not abort the batch. Parallel chunks
+     * read the entities from several threads, so they must be detached or fully loaded.
+     *
+     * @param entities the entities
+     * @return the DTO of every entity in input order, and the failed entities
+     */
+    public BatchResult<D> toDTOAll(Collection<E> entities) {
+        return convertAll(entities, this::toDTO, batchExecutor);
+    }
+
+    /**
+     * Converts a batch of entities to DTOs and validates each, in parallel chunks on the given executor
+     * if the batch reaches the parallel threshold. A failing entity does not abort the batch.
+     *
+     * @param entities the entities
+     * @param executor the executor running the chunks, e.g. a fork-join pool
+     * @return the DTO of every entity in input order, and the failed entities
+     */
+    public BatchResult<D> toDTOAll(Collection<E> entities, Executor executor) {
+        return convertAll(entities, this::toDTO, executor);
+    }
+
+    /**
+     * Converts a batch of entities to DTOs with one task per entity on the blocking executor, at most
+     * maxBlockingConcurrency at a time. Meant for conversions that block, e.g. on remote calls, where
+     * chunks on a CPU-sized pool would stall.
+     * <p>
+     * The entities are read from several threads at once. A JPA persistence context is not thread-safe, so lazy
+     * loads of entities sharing one EntityManager or Hibernate Session must not be fanned out this way: pass
+     * detached or fully loaded entities, e.g. fetched with {@link #entityGraph(EntityManager)}, or have each
+     * conversion load what it needs through its own EntityManager.
+     *
+     * @param entities the entities
+     * @return the DTOs in input order
+     * @throws RuntimeException the first conversion failure, once every started conversion has ended
+     */
+    public List<D> toDTOConcurrently(Collection<E> entities) {
+        return toDTOConcurrently(entities, maxBlockingConcurrency, blockingExecutor);
+    }
+
+    /**
+     * Converts a batch of entities to DTOs with one task per entity on the given executor, at most maxConcurrency
+     * at a time. The first failing entity stops the batch: no further conversion is started, conversions queued
+     * on the executor are skipped, and the failure is thrown once the running ones have ended, so no task
+     * outlives the call. As with {@link #toDTOConcurrently(Collection)}, the entities must not share a persistence
+     * context with unloaded associations.
+     *
+     * @param entities       the entities
+     * @param maxConcurrency the maximum number of entities converted at the same time
+     * @param executor       the executor running one task per entity
+     * @return the DTOs in input order
+     * @throws RuntimeException the first conversion failure, once every started conversion has ended
+     * @throws IllegalArgumentException if maxConcurrency is not positive
+     */
+    public List<D> toDTOConcurrently(Collection<E> entities, int maxConcurrency, Executor executor) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive, got " + maxConcurrency);
+        }
+        return convertConcurrently(entities, this::toDTO, maxConcurrency, executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S, T> List<T> convertConcurrently(Collection<S> sources, Function<S, T> converter, int maxConcurrency,
+                                               Executor executor) {
+        List<S> items = randomAccess(sources);
+        Object[] results = new Object[items.size()];
+        Semaphore permits = new Semaphore(maxConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            for (int i = 0; i < items.size() && failure.get() == null; i++) {
+                permits.acquire();
+                int index = i;
+                try {
+                    executor.execute(() -> {
+                        try {
+                            if (failure.get() == null) {
+                                results[index] = converter.apply(items.get(index));
+                            }
+                        } catch (Throwable e) {
+                            failure.compareAndSet(null, e);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                    failure.compareAndSet(null, e);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failure.compareAndSet(null, new IllegalStateException("Interrupted while converting a batch", e));
+        }
+        permits.acquireUninterruptibly(maxConcurrency);
+        Throwable error = failure.get();
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new IllegalStateException("Failed to convert a batch", error);
+        }
+        return new ArrayList<>((List<T>) Arrays.asList(results));
+    }
+
+    private static void startDaemonThread(Runnable task) {
+        Thread thread = new Thread(task, "mapper-blocking");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Converts a DTO to an entity and validates it.
+     *
+     * @param dto the DTO to convert
+     * @return the entity
+     */
+    public E toEntity(D dto) {
+        validate(dto);
+        return modelMapper.map(dto, entityClass);
+    }
+
+    /**
+     * Validates a DTO and converts it into an existing entity. Existing collections of the entity are kept and
+     * merged with ModelMapper's rules; use {@link #patchEntity} for partial updates of managed entities.
+     *
+     * @param dto    the DTO to convert
+     * @param target the entity to fill
+     * @return the target
+     */
+    public E toEntity(D dto, E target) {
+        validate(dto);
+        modelMapper.map(dto, target);
+        return target;
+    }
+
+    /**
+     * Converts a list of DTOs to a list of entities and validates each, in the calling thread.
+     * Use {@link #toEntityAll(Collection)} for parallel conversion.
+     *
+     * @param dtoList the list of DTOs
+     * @return the list of entities
+     */
+    public List<E> toEntity(List<D> dtoList) {
+        List<E> entities = new ArrayList<>(dtoList.size());
+        for (D dto : dtoList) {
+            entities.add(toEntity(dto));
+        }
+        return entities;
+    }
+
+    /**
+     * Validates a batch of DTOs and converts each to an entity, in parallel chunks on the batch executor
+     * if the batch reaches the parallel threshold. A failing DTO does not abort the batch.
+     *
+     * @param dtos the DTOs
+     * @return the entity of every DTO in input order, and the failed DTOs
+     */
+    public BatchResult<E> toEntityAll(Collection<D> dtos) {
+        return convertAll(dtos, this::toEntity, batchExecutor);
+    }
+
+    /**
+     * Validates a batch of DTOs and converts each to an entity, in parallel chunks on the given executor
+     * if the batch reaches the parallel threshold. A failing DTO does not abort the batch.
+     *
+     * @param dtos     the DTOs
+     * @param executor the executor running the chunks, e.g. a fork-join pool
+     * @return the entity of every DTO in input order, and the failed DTOs
+     */
+    public BatchResult<E> toEntityAll(Collection<D> dtos, Executor executor) {
+        return convertAll(dtos, this::toEntity, executor);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S, T> BatchResult<T> convertAll(Collection<S> sources, Function<S, T> converter, Executor executor) {
+        List<S> items = randomAccess(sources);
+        T[] results = (T[]) new Object[items.size()];
+        RuntimeException[] errors = new RuntimeException[items.size()];
+        forEachChunked(items.size(), index -> {
+            try {
+                results[index] = converter.apply(items.get(index));
+            } catch (RuntimeException e) {
+                errors[index] = e;
+            }
+        }, executor);
+        return BatchResult.of(results, null, errors);
+    }
+
+    private static <T> List<T> randomAccess(Collection<T> items) {
+        return items instanceof List && items instanceof RandomAccess ? (List<T>) items : new ArrayList<>(items);
+    }
+
+    /**
+     * Runs the action for every index below count: in the calling thread below the parallel threshold,
+     * otherwise in chunks of batchChunkSize indexes on the executor, waiting for all chunks to finish.
+     * The action must handle its own failures.
+     */
+    private void forEachChunked(int count, IntConsumer action, Executor executor) {
+        if (count < parallelThreshold || count <= batchChunkSize) {
+            for (int i = 0; i < count; i++) {
+                action.accept(i);
+            }
+            return;
+        }
+        List<CompletableFuture<Void>> tasks = new ArrayList<>(count / batchChunkSize + 1);
+        for (int start = 0; start < count; start += batchChunkSize) {
+            int from = start;
+            int to = Math.min(count, start + batchChunkSize);
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int i = from; i < to; i++) {
+                    action.accept(i);
+                }
+            }, executor));
+        }
+        CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+        logger.debug("Processed {} items in {} chunks", count, tasks.size());
+    }
+
+    /**
+     * Returns the entity graph fetching exactly the associations the DTO is mapped from, derived from the
+     * ModelMapper type maps, including those of nested DTOs and DTO collections. The graph is built for the entity
+     * manager factory of the last call and shared until another factory is passed, so it must not be modified.
+     * <p>
+     * Used as a fetch graph, e.g. {@code query.setHint(FETCH_GRAPH_HINT, mapper.entityGraph(entityManager))}, it lets
+     * a single query load everything {@link #toDTO(Object)} reads. Since Hibernate cannot fetch a bag
+     * ({@code List} or {@code Collection} association without order column) together with another collection, bags
+     * are then left out of the graph and loaded lazily; fetching several collections multiplies the rows of the
+     * query, which is logged as a warning. Hibernate does not fetch a collection leading back to an entity type
+     * already fetched on the same path (e.g. {@code author.books} of a book), which is then loaded lazily.
+     *
+     * @param entityManager an entity manager of the persistence unit of the entity
+     * @return the entity graph
+     */
+    public EntityGraph<E> entityGraph(EntityManager entityManager) {
+        EntityManagerFactory factory = entityManager.getEntityManagerFactory();
+        EntityGraphEntry<E> entry = entityGraph;
+        if (entry == null || entry.factory != factory) {
+            entry = new EntityGraphEntry<>(factory, DtoEntityGraph.build(entityManager, entityClass, dtoShape()));
+            entityGraph = entry;
+        }
+        return entry.graph;
+    }
+
+    /**
+     * The entity graph built for an entity manager factory. The graph refers to the factory through its metamodel,
+     * so the factory is held strongly as well and only the graph of the last factory is kept.
+     */
+    private static final class EntityGraphEntry<E> {
+        private final EntityManagerFactory factory;
+        private final EntityGraph<E> graph;
+
+        private EntityGraphEntry(EntityManagerFactory factory, EntityGraph<E> graph) {
+            this.factory = factory;
+            this.graph = graph;
+        }
+    }
+
+    /**
+     * Returns the query hints applying {@link #entityGraph(EntityManager)} as a fetch graph,
+     * e.g. for {@code EntityManager.find} or {@code Query.setHint}.
+     *
+     * @param entityManager an entity manager of the persistence unit of the entity
+     * @return the fetch graph hint
+     */
+    public Map<String, Object> fetchGraphHints(EntityManager entityManager) {
+        return Map.of(FETCH_GRAPH_HINT, entityGraph(entityManager));
+    }
+
+    /**
+     * Creates a tuple query selecting only the columns the DTO is mapped from, for read-only lists that need
+     * neither the entities nor their associations. Single-valued properties mapped from basic attributes, directly
+     * or through single-valued associations and embeddables, are selected, with associations left joined;
+     * DTO collections and properties mapped by converters are not. Restrictions and ordering can be added through
+     * the query's root. Convert the resulting tuples with {@link #fromTuple(Tuple)}.
+     *
+     * @param entityManager an entity manager of the persistence unit of the entity
+     * @return the projection query
+     * @throws IllegalArgumentException if the DTO or a nested DTO has no no-argument constructor, or no property
+     *                                  can be projected
+     */
+    public CriteriaQuery<Tuple> projectionQuery(EntityManager entityManager) {
+        return dtoProjection().createQuery(entityManager, entityClass);
+    }
+
+    /**
+     * Creates a DTO from a tuple of {@link #projectionQuery(EntityManager)} and validates it, writing the selected
+     * values straight into the DTO without creating the entity. Nested DTOs are created for the values below them
+     * that are not null, so a left join finding nothing leaves its nested DTO null. A value that is not of its DTO
+     * property's type (e.g. an enum into a {@code String} or an {@code Integer} into a {@code long}) is converted
+     * with {@code modelMapper.map(value, propertyType)}, so only these values go through ModelMapper's converters.
+     *
+     * @param tuple the tuple
+     * @return the DTO
+     */
+    public D fromTuple(Tuple tuple) {
+        D dto = dtoClass.cast(dtoProjection().map(tuple, modelMapper));
+        validate(dto);
+        return dto;
+    }
+
+    /**
+     * Creates DTOs from the tuples of {@link #projectionQuery(EntityManager)} and validates each.
+     *
+     * @param tuples the tuples
+     * @return the DTOs in tuple order
+     */
+    public List<D> fromTuples(List<Tuple> tuples) {
+        List<D> dtos = new ArrayList<>(tuples.size());
+        for (Tuple tuple : tuples) {
+            dtos.add(fromTuple(tuple));
+        }
+        return dtos;
+    }
+
+    /**
+     * Creates the ModelMapper type maps between the entity and DTO class and the patch plans of the DTO class,
+     * so the first conversion or patch does not pay for them.
+     *
+     * @return the destination properties the type maps leave unmapped, empty if every property is mapped
+     */
+    public List<String> warmUp() {
+        List<String> unmapped = new ArrayList<>();
+        unmapped.addAll(unmappedProperties(typeMap(entityClass, dtoClass)));
+        unmapped.addAll(unmappedProperties(typeMap(dtoClass, entityClass)));
+        PatchPlan.of(dtoClass, dtoClass, accessMode);
+        entityPatchPlan();
+        return unmapped;
+    }
+
+    /**
+     * Returns the type map, creating it under ModelMapper's own lock if needed, so mappers sharing a ModelMapper
+     * can be warmed up concurrently.
+     */
+    private <S, T> TypeMap<S, T> typeMap(Class<S> sourceType, Class<T> destinationType) {
+        return modelMapper.typeMap(sourceType, destinationType);
+    }
+
+    private static List<String> unmappedProperties(TypeMap<?, ?> typeMap) {
+        return typeMap.getUnmappedProperties().stream()
+                .map(property -> typeMap.getSourceType().getSimpleName() + " -> "
+                        + typeMap.getDestinationType().getSimpleName() + "." + property.getName())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Patches the existingDTO with values from updateDTO. If a field is null in updateDTO, it uses the nullHandlingStrategy.
+     *
+     * @param updateDTO      the DTO with updated values
+     * @param existingDTO    the existing DTO to be patched
+     * @param nullFieldsNames the list of fields to be set to null if they are null in updateDTO
+     */
+    public void patch(Object updateDTO, Object existingDTO, List<String> nullFieldsNames) {
+        patch(updateDTO, existingDTO, nullFieldsNames == null ? null : FieldMask.ofNameList(nullFieldsNames));
+    }
+
+    /**
+     * Patches the existingDTO with values from updateDTO. If a field is null in updateDTO and selected by the mask,
+     * it uses the nullHandlingStrategy. Nested objects are patched iteratively; each existing object in the graph
+     * is patched at most once, so cyclic graphs are safe.
+     *
+     * @param updateDTO      the DTO with updated values
+     * @param existingDTO    the existing DTO to be patched
+     * @param nullFieldsMask the precompiled mask of fields to be set to null if they are null in updateDTO, may be null
+     * @throws IllegalArgumentException if the graph is nested deeper than maxPatchDepth
+     */
+    public void patch(Object updateDTO, Object existingDTO, FieldMask nullFieldsMask) {
+        if (updateDTO == null || existingDTO == null) {
+            throw new IllegalArgumentException("Both updateDTO and existingDTO must be non-null");
+        }
+        updateFields(updateDTO, existingDTO, nullFieldsMask, null);
+    }
+
+    /**
+     * Patches without mutation: returns a new instance holding the values of existingDTO patched with updateDTO,
+     * for records and immutable DTOs. See {@link #patchCopy(Object, Object, FieldMask)}.
+     *
+     * @param updateDTO       the DTO with updated values
+     * @param existingDTO     the existing DTO, left unchanged
+     * @param nullFieldsNames the list of fields to be set to null if they are null in updateDTO
+     * @param <T>             the type of the DTOs
+     * @return the patched copy, or existingDTO itself if the patch changes nothing
+     */
+    public <T> T patchCopy(T updateDTO, T existingDTO, List<String> nullFieldsNames) {
+        return patchCopy(updateDTO, existingDTO, nullFieldsNames == null ? null : FieldMask.ofNameList(nullFieldsNames));
+    }
+
+    /**
+     * Patches without mutation: returns a new instance holding the values of existingDTO patched with updateDTO,
+     * for records and immutable DTOs. The copy is created in one call of the canonical constructor (or builder),
+     * through handles cached per class. Null values of updateDTO keep the existing value unless selected by the
+     * mask, in which case the copy holds null. Nested records and immutable objects are patched the same way,
+     * and unchanged ones are shared with existingDTO instead of being copied.
+     *
+     * @param updateDTO      the DTO with updated values
+     * @param existingDTO    the existing DTO, left unchanged
+     * @param nullFieldsMask the precompiled mask of fields to be set to null if they are null in updateDTO, may be null
+     * @param <T>            the type of the DTOs
+     * @return the patched copy, or existingDTO itself if the patch changes nothing
+     * @throws IllegalArgumentException if the DTO class has no canonical constructor or builder,
+     *                                  or the graph is nested deeper than maxPatchDepth
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T patchCopy(T updateDTO, T existingDTO, FieldMask nullFieldsMask) {
+        if (updateDTO == null || existingDTO == null) {
+            throw new IllegalArgumentException("Both updateDTO and existingDTO must be non-null");
+        }
+        CopyPlan copyPlan = CopyPlan.of(existingDTO.getClass());
+        if (copyPlan == null || updateDTO.getClass() != existingDTO.getClass()) {
+            throw new IllegalArgumentException("Cannot patch " + existingDTO.getClass().getName()
+                    + " by copy, it needs a canonical constructor or builder and an update of the same class");
+        }
+        return (T) patchCopy(copyPlan, updateDTO, existingDTO, nullFieldsMask, 0);
+    }
+
+    private Object patchCopy(CopyPlan copyPlan, Object updateDTO, Object existingDTO, FieldMask nullFieldsMask, int depth) {
+        Class<?> type = copyPlan.getType();
+        FieldMask mask = nullFieldsMask == null ? null : nullFieldsMask.bind(PatchPlan.of(type, type, accessMode));
+        Object[] values = new Object[copyPlan.size()];
+        boolean changed = false;
+        for (int i = 0; i < values.length; i++) {
+            Object existingValue = copyPlan.get(i, existingDTO);
+            Object value = copyPlan.isIgnored(i) ? existingValue
+                    : copyValue(copyPlan, i, copyPlan.get(i, updateDTO), existingValue, mask, depth);
+            values[i] = value;
+            changed |= value != existingValue;
+        }
+        if (!changed) {
+            return existingDTO;
+        }
+        logger.debug("Created patched copy of {}", type.getName());
+        return copyPlan.newInstance(values);
+    }
+
+    private Object copyValue(CopyPlan copyPlan, int index, Object value, Object existingValue, FieldMask mask, int depth) {
+        if (value == null) {
+            return mask != null && mask.isSelected(index) && !copyPlan.getComponentType(index).isPrimitive()
+                    ? null : existingValue;
+        }
+        if (existingValue != null && value.getClass() == existingValue.getClass()) {
+            CopyPlan nestedPlan = CopyPlan.of(value.getClass());
+            if (nestedPlan != null) {
+                if (depth >= maxPatchDepth) {
+                    throw new IllegalArgumentException("Patch exceeds the maximum depth of " + maxPatchDepth
+                            + " at field '" + copyPlan.getName(index) + "'");
+                }
+                return patchCopy(nestedPlan, value, existingValue, mask == null ? null : mask.nested(index), depth + 1);
+            }
+        }
+        return value.equals(existingValue) ? existingValue : value;
+    }
+
+    /**
+     * Patches the existingDTO like {@link #patch(Object, Object, List)} and reports what changed.
+     * Values equal to the existing ones are not written.
+     *
+     * @param updateDTO       the DTO with updated values
+     * @param existingDTO     the existing DTO to be patched
+     * @param nullFieldsNames the list of fields to be set to null if they are null in updateDTO
+     * @param captureValues   whether to keep old and new values in the change set
+     * @return the changed fields
+     */
+    public ChangeSet patchWithChanges(Object updateDTO, Object existingDTO, List<String> nullFieldsNames, boolean captureValues) {
+        return patchWithChanges(updateDTO, existingDTO,
+                nullFieldsNames == null ? null : FieldMask.ofNameList(nullFieldsNames), captureValues);
+    }
+
+    /**
+     * Patches the existingDTO like {@link #patch(Object, Object, FieldMask)} and reports what changed.
+     * Values equal to the existing ones are not written.
+     *
+     * @param updateDTO      the DTO with updated values
+     * @param existingDTO    the existing DTO to be patched
+     * @param nullFieldsMask the precompiled mask of fields to be set to null if they are null in updateDTO, may be null
+     * @param captureValues  whether to keep old and new values in the change set
+     * @return the changed fields
+     */
+    public ChangeSet patchWithChanges(Object updateDTO, Object existingDTO, FieldMask nullFieldsMask, boolean captureValues) {
+        if (updateDTO == null || existingDTO == null) {
+            throw new IllegalArgumentException("Both updateDTO and existingDTO must be non-null");
+        }
+        ChangeSet changes = new ChangeSet(captureValues);
+        updateFields(updateDTO, existingDTO, nullFieldsMask, changes);
+        return changes;
+    }
+
+    /**
+     * Patches a batch of existing DTOs, in parallel on the batch executor above the parallel threshold. Each update is paired with the existing DTO
+     * whose id the idAccessor returns for it. A failing item is reported in the result and does not abort the batch.
+     *
+     * @param updates         the DTOs with updated values
+     * @param existingById    the existing DTOs to be patched, by id
+     * @param idAccessor      returns the id of an update
+     * @param nullFieldsNames the list of fields to be set to null if they are null in an update
+     * @param <ID>            the type of the ids
+     * @return the patched DTO of every update in input order, and the failed updates
+     */
+    public <ID> BatchResult<D> patchAll(Collection<D> updates, Map<ID, D> existingById, Function<? super D, ? extends ID> idAccessor,
+                                        List<String> nullFieldsNames) {
+        return patchAll(updates, existingById, idAccessor,
+                nullFieldsNames == null ? null : FieldMask.ofNameList(nullFieldsNames), batchExecutor);
+    }
+
+    /**
+     * Patches a batch of existing DTOs, in parallel chunks on the given executor above the parallel threshold. Each update is paired with the existing
+     * DTO whose id the idAccessor returns for it; updates with the same id are applied in input order by the same task.
+     * A failing item is reported in the result and does not abort the batch.
+     *
+     * @param updates        the DTOs with updated values
+     * @param existingById   the existing DTOs to be patched, by id
+     * @param idAccessor     returns the id of an update
+     * @param nullFieldsMask the precompiled mask of fields to be set to null if they are null in an update, may be null
+     * @param executor       the executor running the chunks, e.g. a fork-join pool
+     * @param <ID>           the type of the ids
+     * @return the patched DTO of every update in input order, and the failed updates
+     */
+    @SuppressWarnings("unchecked")
+    public <ID> BatchResult<D> patchAll(Collection<D> updates, Map<ID, D> existingById, Function<? super D, ? extends ID> idAccessor,
+                                        FieldMask nullFieldsMask, Executor executor) {
+        if (updates == null || existingById == null || idAccessor == null || executor == null) {
+            throw new IllegalArgumentException("updates, existingById, idAccessor and executor must be non-null");
+        }
+        List<D> items = randomAccess(updates);
+        int size = items.size();
+        D[] results = (D[]) new Object[size];
+        Object[] ids = new Object[size];
+        RuntimeException[] errors = new RuntimeException[size];
+
+        // Updates of the same target must not run concurrently, so they are grouped by id first
+        Map<Object, List<Integer>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            try {
+                ids[i] = idAccessor.apply(items.get(i));
+                groups.computeIfAbsent(ids[i], id -> new ArrayList<>(1)).add(i);
+            } catch (RuntimeException e) {
+                errors[i] = e;
+            }
+        }
+
+        List<List<Integer>> groupList = new ArrayList<>(groups.values());
+        forEachChunked(groupList.size(), group -> {
+            for (int index : groupList.get(group)) {
+                try {
+                    D existing = existingById.get(ids[index]);
+                    if (existing == null) {
+                        throw new IllegalArgumentException("No existing DTO with id '" + ids[index] + "'");
+                    }
+                    patch(items.get(index), existing, nullFieldsMask);
+                    results[index] = existing;
+                } catch (RuntimeException e) {
+                    errors[index] = e;
+                }
+            }
+        }, executor);
+
+        BatchResult<D> result = BatchResult.of(results, ids, errors);
+        logger.debug("Patched {} of {} DTOs", result.getSuccessCount(), size);
+        return result;
+    }
+
+    /**
+     * Patches a managed entity directly with the values of updateDTO, without mapping it to a DTO and back.
+     * The properties are written through a plan derived once from the ModelMapper type map between the DTO
+     * and the entity class, and only values that differ are written, so dirty checking flushes just the changes.
+     * Associations are not patched, see {@link #patchEntity(Object, Object, FieldMask, EntityManager)}.
+     * The patched entity is validated.
+     *
+     * @param updateDTO       the DTO with updated values
+     * @param managedEntity   the entity to be patched
+     * @param nullFieldsNames the list of DTO fields whose entity properties are set to null if they are null in updateDTO
+     * @throws IllegalArgumentException if the patched entity is invalid
+     */
+    public void patchEntity(D updateDTO, E managedEntity, List<String> nullFieldsNames) {
+        patchEntity(updateDTO, managedEntity, nullFieldsNames == null ? null : FieldMask.ofNameList(nullFieldsNames), null);
+    }
+
+    /**
+     * Patches a managed entity directly with the values of updateDTO, without mapping it to a DTO and back.
+     * Associations are not patched, see {@link #patchEntity(Object, Object, FieldMask, EntityManager)}.
+     * The patched entity is validated.
+     *
+     * @param updateDTO      the DTO with updated values
+     * @param managedEntity  the entity to be patched
+     * @param nullFieldsMask the precompiled mask of DTO fields whose entity properties are set to null
+     *                       if they are null in updateDTO, may be null
+     * @throws IllegalArgumentException if the patched entity is invalid
+     */
+    public void patchEntity(D updateDTO, E managedEntity, FieldMask nullFieldsMask) {
+        patchEntity(updateDTO, managedEntity, nullFieldsMask, null);
+    }
+
+    /**
+     * Patches a managed entity directly with the values of updateDTO, without mapping it to a DTO and back.
+     * The properties are written through a plan derived once from the ModelMapper type map between the DTO
+     * and the entity class, and only values that differ are written, so dirty checking flushes just the changes.
+     * Only the entity's own properties and embedded objects are written. An association whose id changed in the
+     * update is pointed to {@link EntityManager#getReference(Class, Object)} of the new id; the associated entities
+     * themselves are never modified. The patched entity is validated.
+     *
+     * @param updateDTO      the DTO with updated values
+     * @param managedEntity  the entity to be patched
+     * @param nullFieldsMask the precompiled mask of DTO fields whose entity properties are set to null
+     *                       if they are null in updateDTO, may be null
+     * @param entityManager  the entity manager managing the entity, resolving associations by id; if null,
+     *                       associations are not patched
+     * @throws IllegalArgumentException if the patched entity is invalid
+     */
+    public void patchEntity(D updateDTO, E managedEntity, FieldMask nullFieldsMask, EntityManager entityManager) {
+        if (updateDTO == null || managedEntity == null) {
+            throw new IllegalArgumentException("Both updateDTO and managedEntity must be non-null");
+        }
+        entityPatchPlan().apply(updateDTO, managedEntity, nullFieldsMask, modelMapper, entityManager);
+        validate(managedEntity);
+    }
+
+    /**
+     * Applies a JSON Merge Patch (RFC 7396) read from the stream directly onto existingDTO.
+     * Explicit nulls are passed to the nullHandlingStrategy with a null updateDTO, absent members are skipped.
+     *
+     * @param json        the stream containing the patch document
+     * @param existingDTO the existing DTO to be patched
+     * @throws IOException if the JSON cannot be read
+     */
+    public void patchFromJson(InputStream json, D existingDTO) throws IOException {
+        try (JsonParser parser = jsonMapper().createParser(json)) {
+            patchFromJson(parser, existingDTO);
+        }
+    }
+
+    /**
+     * Applies a JSON Merge Patch (RFC 7396) read from the parser directly onto existingDTO.
+     * Explicit nulls are passed to the nullHandlingStrategy with a null updateDTO, absent members are skipped.
+     *
+     * @param parser      the parser, positioned before or at the start of the patch object
+     * @param existingDTO the existing object to be patched
+     * @throws IOException if the JSON cannot be read
+     */
+    public void patchFromJson(JsonParser parser, Object existingDTO) throws IOException {
+        new JsonMergePatcher(jsonMapper(), accessMode, nullHandlingStrategy).apply(parser, existingDTO);
+    }
+
+    /**
+     * Applies a JSON Patch (RFC 6902) document read from the stream to existingDTO and validates the result once.
+     *
+     * @param json        the stream containing the array of patch operations
+     * @param existingDTO the existing DTO to be patched
+     * @throws IOException              if the JSON cannot be read
+     * @throws IllegalArgumentException if an operation fails or the patched DTO is invalid
+     */
+    public void applyJsonPatch(InputStream json, D existingDTO) throws IOException {
+        JsonPatch patch;
+        try (JsonParser parser = jsonMapper().createParser(json)) {
+            patch = JsonPatch.parse(jsonMapper(), parser);
+        }
+        applyJsonPatch(patch, existingDTO);
+    }
+
+    /**
+     * Applies a compiled JSON Patch (RFC 6902) to existingDTO in a single pass and validates the result once.
+     * The operations are applied atomically: if one fails or the patched DTO is invalid, existingDTO is left
+     * unchanged.
+     *
+     * @param patch       the compiled patch
+     * @param existingDTO the existing DTO to be patched
+     * @throws IllegalArgumentException if an operation fails or the patched DTO is invalid
+     */
+    public void applyJsonPatch(JsonPatch patch, D existingDTO) {
+        new JsonPatcher(jsonMapper(), accessMode).apply(patch, existingDTO, this::validate);
+    }
+
+    /**
+     * Patches the given fields of existingDTO through the runtime patch plan, in a single traversal of the graph,
+     * so every existing object is patched at most once and {@code maxPatchDepth} applies to the whole patch.
+     * Used by generated mappers for the fields they do not copy directly.
+     *
+     * @param updateDTO       the DTO with updated values
+     * @param existingDTO     the existing DTO to be patched
+     * @param nullFieldsMask  the mask of fields to be set to null if they are null in updateDTO, may be null
+     * @param fieldNames      the names of the fields to patch
+     */
+    protected void patchFields(Object updateDTO, Object existingDTO, FieldMask nullFieldsMask, String... fieldNames) {
+        PatchPlan plan = PatchPlan.of(updateDTO.getClass(), existingDTO.getClass(), accessMode);
+        PatchTraversal traversal = new PatchTraversal(existingDTO, null);
+        traversal.enter(new Frame(updateDTO, existingDTO, nullFieldsMask, 0, null), plan);
+        int pending = traversal.stack.size();
+        for (String fieldName : fieldNames) {
+            PatchField field = plan.getField(fieldName);
+            if (field != null && field.isPatchable()) {
+                traversal.processField(updateDTO, existingDTO, field);
+            }
+        }
+        Collections.reverse(traversal.stack.subList(pending, traversal.stack.size()));
+        traversal.run();
+    }
+
+    private void updateFields(Object updateDTO, Object existingDTO, FieldMask nullFieldsMask, ChangeSet changes) {
+        PatchTraversal traversal = new PatchTraversal(existingDTO, changes);
+        traversal.push(new Frame(updateDTO, existingDTO, nullFieldsMask, 0, null));
+        traversal.run();
+    }
+
+    private Object keyOf(Object element, String key) {
+        if (element == null || key.isEmpty()) {
+            return element;
+        }
+        PatchField keyField = PatchPlan.of(element.getClass(), element.getClass(), accessMode).getField(key);
+        if (keyField == null || !keyField.isPatchable()) {
+            throw new IllegalArgumentException("Element type " + element.getClass().getName() + " has no key field '" + key + "'");
+        }
+        return keyField.getTargetAccessor().get(element);
+    }
+
+    private boolean isSameContainerKind(Object value, Object existingValue) {
+        return (value instanceof Map && existingValue instanceof Map)
+                || (value instanceof Collection && existingValue instanceof Collection);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Collection<Object> asCollection(Object value) {
+        return (Collection<Object>) value;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<Object, Object> asMap(Object value) {
+        return (Map<Object, Object>) value;
+    }
+
+    /**
+     * A pair of objects waiting to be patched, with the mask and change scope that apply to it.
+     */
+    private static final class Frame {
+        private final Object update;
+        private final Object existing;
+        private final FieldMask mask;
+        private final int depth;
+        private final ChangeSet.Scope scope;
+
+        private Frame(Object update, Object existing, FieldMask mask, int depth, ChangeSet.Scope scope) {
+            this.update = update;
+            this.existing = existing;
+            this.mask = mask;
+            this.depth = depth;
+            this.scope = scope;
+        }
+    }
+
+    /**
+     * Patches an object graph without recursion. Nested objects are pushed onto an explicit work stack
+     * instead of being patched in place, every existing object is patched at most once, and descending
+     * deeper than {@link #maxPatchDepth} fails. This makes cyclic graphs safe and keeps the call stack flat
+     * however deep the graph is. Also routes the fields a generated patcher delegates back into the
+     * accessor-based patch path.
+     */
+    private final class PatchTraversal implements PatchCallback {
+        private final ChangeSet changes;
+        private final List<Frame> stack = new ArrayList<>();
+        private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        private PatchPlan plan;
+        private FieldMask mask;
+        private int depth;
+
+        private PatchTraversal(Object root, ChangeSet changes) {
+            this.changes = changes;
+            visited.add(root);
+        }
+
+        private void push(Frame frame) {
+            stack.add(frame);
+        }
+
+        private void run() {
+            while (!stack.isEmpty()) {
+                Frame frame = stack.remove(stack.size() - 1);
+                enter(frame, PatchPlan.of(frame.update.getClass(), frame.existing.getClass(), accessMode));
+                int pending = stack.size();
+                GeneratedPatcher generatedPatcher = plan.getGeneratedPatcher();
+                if (generatedPatcher != null && changes == null) {
+                    generatedPatcher.patch(frame.update, frame.existing, this);
+                } else {
+                    for (PatchField field : plan.getPatchableFields()) {
+                        processField(frame.update, frame.existing, field);
+                    }
+                }
+                // Pop the nested objects of this frame in field order
+                Collections.reverse(stack.subList(pending, stack.size()));
+            }
+        }
+
+        private void enter(Frame frame, PatchPlan framePlan) {
+            plan = framePlan;
+            mask = frame.mask == null ? null : frame.mask.bind(framePlan);
+            depth = frame.depth;
+            if (changes != null) {
+                changes.setScope(frame.scope);
+            }
+        }
+
+        private void descend(PatchField field, Object update, Object existing, ChangeSet.Scope scope) {
+            if (update == existing || !visited.add(existing)) {
+                logger.debug("Field '{}' skipped, its object is already patched", field.getName());
+                return;
+            }
+            if (depth >= maxPatchDepth) {
+                throw new IllegalArgumentException("Patch exceeds the maximum depth of " + maxPatchDepth
+                        + " at field '" + field.getName() + "'");
+            }
+            stack.add(new Frame(update, existing, mask == null ? null : mask.nested(field.getOrdinal()), depth + 1, scope));
+        }
+
+        private void processField(Object updateDTO, Object existingDTO, PatchField field) {
+            try {
+                if (field.isPrimitive()) {
+                    copyPrimitive(updateDTO, existingDTO, field);
+                    return;
+                }
+                Object value = field.getSourceAccessor().get(updateDTO);
+                if (value != null) {
+                    updateFieldValue(existingDTO, field, value);
+                } else {
+                    handleNullField(updateDTO, existingDTO, field);
+                }
+            } catch (IllegalAccessException | NoSuchFieldException | IllegalStateException | UnsupportedOperationException e) {
+                logger.error("Error accessing field '{}'", field.getName(), e);
+            }
+        }
+
+        @Override
+        public void onValue(int ordinal, Object value, Object existing) {
+            PatchField field = plan.getField(ordinal);
+            try {
+                updateFieldValue(existing, field, value);
+            } catch (IllegalStateException | UnsupportedOperationException e) {
+                logger.error("Error accessing field '{}'", field.getName(), e);
+            }
+        }
+
+        @Override
+        public void onNull(int ordinal, Object update, Object existing) {
+            PatchField field = plan.getField(ordinal);
+            try {
+                handleNullField(update, existing, field);
+            } catch (IllegalAccessException | NoSuchFieldException | IllegalStateException e) {
+                logger.error("Error accessing field '{}'", field.getName(), e);
+            }
+        }
+
+        private void copyPrimitive(Object updateDTO, Object existingDTO, PatchField field) {
+            if (changes == null) {
+                field.getSourceAccessor().copyTo(updateDTO, field.getTargetAccessor(), existingDTO);
+                logger.debug("Field '{}' updated", field.getName());
+                return;
+            }
+            Object value = field.getSourceAccessor().get(updateDTO);
+            Object existingValue = field.getTargetAccessor().get(existingDTO);
+            if (!value.equals(existingValue)) {
+                field.getSourceAccessor().copyTo(updateDTO, field.getTargetAccessor(), existingDTO);
+                changes.record(field, existingValue, value);
+                logger.debug("Field '{}' updated with value '{}'", field.getName(), value);
+            }
+        }
+
+        private void handleNullField(Object updateDTO, Object existingDTO, PatchField field)
+                throws IllegalAccessException, NoSuchFieldException {
+            if (mask != null && mask.isSelected(field.getOrdinal())) {
+                Object existingValue = changes == null ? null : field.getTargetAccessor().get(existingDTO);
+                if (changes != null && existingValue == null) {
+                    return;
+                }
+                nullHandlingStrategy.handle(field, updateDTO, existingDTO);
+                if (changes != null) {
+                    Object newValue = field.getTargetAccessor().get(existingDTO);
+                    if (newValue != existingValue) {
+                        changes.record(field, existingValue, newValue);
+                    }
+                }
+                logger.debug("Field '{}' set to null", field.getName());
+            }
+        }
+
+        private void updateFieldValue(Object existingDTO, PatchField field, Object value) {
+            FieldAccessor existingDTOField = field.getTargetAccessor();
+            Object existingValue = null;
+            if (field.isContainer(value)) {
+                existingValue = existingDTOField.get(existingDTO);
+                if (existingValue != null && field.getCollectionMode() != PatchCollection.Mode.REPLACE
+                        && isSameContainerKind(value, existingValue)) {
+                    if (value instanceof Map) {
+                        mergeMap(field, asMap(value), asMap(existingValue));
+                    } else {
+                        mergeCollection(field, asCollection(value), asCollection(existingValue));
+                    }
+                    return;
+                }
+                if (changes != null && value.equals(existingValue)) {
+                    return;
+                }
+            } else if (field.isComplex(value)) {
+                existingValue = existingDTOField.get(existingDTO);
+                if (existingValue != null) {
+                    descend(field, value, existingValue, changes == null ? null : changes.childScope(field));
+                    return;
+                }
+            } else if (changes != null) {
+                existingValue = existingDTOField.get(existingDTO);
+                if (value.equals(existingValue)) {
+                    return;
+                }
+            }
+            existingDTOField.set(existingDTO, value);
+            if (changes != null) {
+                changes.record(field, existingValue, value);
+            }
+            logger.debug("Field '{}' updated with value '{}'", field.getName(), value);
+        }
+
+        private void mergeCollection(PatchField field, Collection<Object> update, Collection<Object> existing) {
+            if (field.getCollectionMode() == PatchCollection.Mode.APPEND) {
+                int appended = 0;
+                for (Object element : update) {
+                    if (!existing.add(element)) {
+                        continue;
+                    }
+                    appended++;
+                    if (changes != null) {
+                        // Lists are addressed by index, sets by element as when merged by equality
+                        changes.recordElement(field, existing instanceof List ? existing.size() - 1 : element, null, element);
+                    }
+                }
+                logger.debug("Field '{}' appended {} elements", field.getName(), appended);
+                return;
+            }
+            String key = field.getCollectionKey();
+            Map<Object, Object> index = new HashMap<>((int) (existing.size() / 0.75f) + 1);
+            for (Object element : existing) {
+                Object elementKey = keyOf(element, key);
+                if (elementKey != null) {
+                    index.putIfAbsent(elementKey, element);
+                }
+            }
+            List<Object> added = new ArrayList<>();
+            List<Object> addedKeys = new ArrayList<>();
+            for (Object element : update) {
+                Object elementKey = keyOf(element, key);
+                Object match = elementKey == null ? null : index.get(elementKey);
+                if (match == null) {
+                    // Not indexed: update elements only ever match existing elements, never each other
+                    added.add(element);
+                    addedKeys.add(elementKey);
+                } else if (PatchPlan.isBeanType(element.getClass())) {
+                    descend(field, element, match, changes == null ? null : changes.elementScope(field, elementKey));
+                }
+            }
+            for (int i = 0; i < added.size(); i++) {
+                if (existing.add(added.get(i)) && changes != null) {
+                    changes.recordElement(field, addedKeys.get(i), null, added.get(i));
+                }
+            }
+            logger.debug("Field '{}' merged {} elements by key", field.getName(), update.size());
+        }
+
+        private void mergeMap(PatchField field, Map<Object, Object> update, Map<Object, Object> existing) {
+            boolean merge = field.getCollectionMode() == PatchCollection.Mode.MERGE;
+            for (Map.Entry<Object, Object> entry : update.entrySet()) {
+                Object value = entry.getValue();
+                Object existingValue = existing.get(entry.getKey());
+                if (merge && value != null && existingValue != null
+                        && PatchPlan.isBeanType(value.getClass()) && PatchPlan.isBeanType(existingValue.getClass())) {
+                    descend(field, value, existingValue, changes == null ? null : changes.elementScope(field, entry.getKey()));
+                } else if (changes == null) {
+                    existing.put(entry.getKey(), value);
+                } else if (!Objects.equals(value, existingValue) || !existing.containsKey(entry.getKey())) {
+                    existing.put(entry.getKey(), value);
+                    changes.recordElement(field, entry.getKey(), existingValue, value);
+                }
+            }
+            logger.debug("Field '{}' merged {} map entries", field.getName(), update.size());
+        }
+    }
+
+    private EntityPatchPlan entityPatchPlan() {
+        EntityPatchPlan plan = entityPatchPlan;
+        if (plan == null || plan.getAccessMode() != accessMode) {
+            plan = EntityPatchPlan.of(typeMap(dtoClass, entityClass), accessMode);
+            entityPatchPlan = plan;
+        }
+        return plan;
+    }
+
+    private DtoShape dtoShape() {
+        DtoShape shape = dtoShape;
+        if (shape == null) {
+            shape = DtoShape.of(modelMapper, entityClass, dtoClass);
+            dtoShape = shape;
+        }
+        return shape;
+    }
+
+    private DtoReset dtoReset() {
+        DtoReset reset = dtoReset;
+        if (reset == null || reset.getAccessMode() != accessMode) {
+            reset = DtoReset.of(dtoClass, dtoShape(), accessMode);
+            dtoReset = reset;
+        }
+        return reset;
+    }
+
+    private DtoSources dtoSources() {
+        DtoSources sources = dtoSources;
+        if (sources == null || sources.getAccessMode() != accessMode) {
+            sources = DtoSources.of(dtoShape(), accessMode);
+            dtoSources = sources;
+        }
+        return sources;
+    }
+
+    private SharedPropertyPlan sharedPropertyPlan() {
+        SharedPropertyPlan plan = sharedPropertyPlan;
+        if (plan == null || plan.getAccessMode() != accessMode) {
+            synchronized (this) {
+                plan = sharedPropertyPlan;
+                if (plan == null || plan.getAccessMode() != accessMode) {
+                    plan = SharedPropertyPlan.of(modelMapper, typeMap(entityClass, dtoClass), dtoShape(), accessMode,
+                            sharedPropertyRuns);
+                    sharedPropertyPlan = plan;
+                }
+            }
+        }
+        return plan;
+    }
+
+    private DtoProjection dtoProjection() {
+        DtoProjection projection = dtoProjection;
+        if (projection == null || projection.getAccessMode() != accessMode) {
+            projection = DtoProjection.of(dtoClass, dtoShape(), accessMode);
+            dtoProjection = projection;
+        }
+        return projection;
+    }
+
+    private ObjectMapper jsonMapper() {
+        if (objectMapper == null) {
+            objectMapper = new ObjectMapper();
+        }
+        return objectMapper;
+    }
+
+    /**
+     * Validates the given object and throws if any constraint is violated.
+     *
+     * @param object the object to validate
+     * @throws IllegalArgumentException if validation fails
+     */
+    protected void validate(Object object) {
+        BatchMappingContext context = currentContext.get();
+        Validator current = context == null ? validator : context.validator(validatorFactory);
+        Set<ConstraintViolation<Object>> violations = current.validate(object);
+        if (!violations.isEmpty()) {
+            String violationMessages = violations.stream()
+                    .map(v -> v.getPropertyPath() + ": " + v.getMessage())
+                    .collect(Collectors.joining("\n"));
+            throw new IllegalArgumentException("Validation failed:\n" + violationMessages);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.kgkilas.mapping.mapper;
+
+import java.util.Objects;
+import java.util.concurrent.Flow;
+import java.util.function.Function;
+
+/**
+ * Publisher converting the elements of a source publisher one by one as they arrive.
+ * Demand and cancellation are passed straight to the source, so backpressure is preserved one to one.
+ * A failing conversion cancels the source and terminates the subscriber with the failure.
+ *
+ * @param <S> the type of the source elements
+ * @param <T> the type of the converted elements
+ */
+final class MappingPublisher<S, T> implements Flow.Publisher<T> {
+
+    private final Flow.Publisher<S> source;
+    private final Function<? super S, ? extends T> converter;
+
+    MappingPublisher(Flow.Publisher<S> source, Function<? super S, ? extends T> converter) {
+        this.source = source;
+        this.converter = converter;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        source.subscribe(new MappingSubscriber<>(subscriber, converter));
+    }
+
+    private static final class MappingSubscriber<S, T> implements Flow.Subscriber<S> {
+        private final Flow.Subscriber<? super T> downstream;
+        private final Function<? super S, ? extends T> converter;
+        private Flow.Subscription upstream;
+        private boolean done;
+
+        private MappingSubscriber(Flow.Subscriber<? super T> downstream, Function<? super S, ? extends T> converter) {
+            this.downstream = downstream;
+            this.converter = converter;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            downstream.onSubscribe(subscription);
+        }
+
+        @Override
+        public void onNext(S item) {
+            if (done) {
+                return;
+            }
+            T converted;
+            try {
+                converted = converter.apply(item);
+            } catch (RuntimeException e) {
+                done = true;
+                upstream.cancel();
+                downstream.onError(e);
+                return;
+            }
+            downstream.onNext(converted);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            if (!done) {
+                done = true;
+                downstream.onError(throwable);
+            }
+        }
+
+        @Override
+        public void onComplete() {
+            if (!done) {
+                done = true;
+                downstream.onComplete();
+            }
+        }
+    }
+}
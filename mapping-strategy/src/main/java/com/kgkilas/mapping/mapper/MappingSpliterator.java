@@ -0,0 +1,64 @@
+package com.kgkilas.mapping.mapper;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Spliterator converting the elements of a source spliterator lazily, one element per advance.
+ * An optional callback receives every source element once it has been converted, or has failed to convert,
+ * e.g. to detach processed entities from the persistence context.
+ *
+ * @param <S> the type of the source elements
+ * @param <T> the type of the converted elements
+ */
+final class MappingSpliterator<S, T> implements Spliterator<T> {
+
+    private final Spliterator<S> source;
+    private final Function<? super S, ? extends T> converter;
+    private final Consumer<? super S> afterEach;
+
+    MappingSpliterator(Spliterator<S> source, Function<? super S, ? extends T> converter, Consumer<? super S> afterEach) {
+        this.source = source;
+        this.converter = converter;
+        this.afterEach = afterEach;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        return source.tryAdvance(element -> action.accept(convert(element)));
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super T> action) {
+        source.forEachRemaining(element -> action.accept(convert(element)));
+    }
+
+    private T convert(S element) {
+        if (afterEach == null) {
+            return converter.apply(element);
+        }
+        try {
+            return converter.apply(element);
+        } finally {
+            afterEach.accept(element);
+        }
+    }
+
+    @Override
+    public Spliterator<T> trySplit() {
+        Spliterator<S> prefix = source.trySplit();
+        return prefix == null ? null : new MappingSpliterator<>(prefix, converter, afterEach);
+    }
+
+    @Override
+    public long estimateSize() {
+        return source.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        // Converted elements are neither sorted nor known to be distinct or non-null
+        return source.characteristics() & ~(SORTED | DISTINCT | NONNULL);
+    }
+}
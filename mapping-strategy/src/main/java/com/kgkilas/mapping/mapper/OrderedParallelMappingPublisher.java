@@ -0,0 +1,253 @@
+package com.kgkilas.mapping.mapper;
+
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Publisher converting the elements of a source publisher on an executor, at most maxConcurrency at a time,
+ * and emitting the results in source order.
+ * <p>
+ * At most prefetch source elements are requested ahead of what the subscriber has received, so buffering is
+ * bounded whatever the subscriber's pace. A failing conversion, or an error of the source, cancels the source
+ * and terminates the subscriber once every earlier element has been emitted.
+ *
+ * @param <S> the type of the source elements
+ * @param <T> the type of the converted elements
+ */
+final class OrderedParallelMappingPublisher<S, T> implements Flow.Publisher<T> {
+
+    private final Flow.Publisher<S> source;
+    private final Function<? super S, ? extends T> converter;
+    private final int maxConcurrency;
+    private final int prefetch;
+    private final Executor executor;
+
+    OrderedParallelMappingPublisher(Flow.Publisher<S> source, Function<? super S, ? extends T> converter,
+                                    int maxConcurrency, int prefetch, Executor executor) {
+        this.source = source;
+        this.converter = converter;
+        this.maxConcurrency = maxConcurrency;
+        this.prefetch = prefetch;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super T> subscriber) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        source.subscribe(new MappingSubscriber<>(subscriber, this));
+    }
+
+    /**
+     * A received source element and, once done, its conversion result.
+     */
+    private static final class Slot<S, T> {
+        private final S element;
+        private T result;
+        private Throwable error;
+        private volatile boolean done;
+
+        private Slot(S element) {
+            this.element = element;
+        }
+    }
+
+    /**
+     * Subscribes to the source and serves the subscriber. All signals to the subscriber are sent from the drain loop,
+     * which runs on one thread at a time.
+     */
+    private static final class MappingSubscriber<S, T> implements Flow.Subscriber<S>, Flow.Subscription {
+        private final Flow.Subscriber<? super T> downstream;
+        private final Function<? super S, ? extends T> converter;
+        private final int maxConcurrency;
+        private final int prefetch;
+        private final Executor executor;
+
+        private final Queue<Slot<S, T>> slots = new ConcurrentLinkedQueue<>();
+        private final Queue<Slot<S, T>> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private final AtomicLong requested = new AtomicLong();
+        private final AtomicLong outstanding = new AtomicLong();
+        private final AtomicInteger buffered = new AtomicInteger();
+        private final AtomicInteger running = new AtomicInteger();
+
+        private volatile Flow.Subscription upstream;
+        private volatile boolean upstreamDone;
+        private volatile Throwable upstreamError;
+        private volatile Throwable requestError;
+        private volatile boolean cancelled;
+        private boolean terminated;
+
+        private MappingSubscriber(Flow.Subscriber<? super T> downstream, OrderedParallelMappingPublisher<S, T> parent) {
+            this.downstream = downstream;
+            this.converter = parent.converter;
+            this.maxConcurrency = parent.maxConcurrency;
+            this.prefetch = parent.prefetch;
+            this.executor = parent.executor;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            if (upstream != null) {
+                subscription.cancel();
+                return;
+            }
+            upstream = subscription;
+            downstream.onSubscribe(this);
+            drain();
+        }
+
+        @Override
+        public void onNext(S item) {
+            outstanding.decrementAndGet();
+            buffered.incrementAndGet();
+            Slot<S, T> slot = new Slot<>(item);
+            slots.offer(slot);
+            pending.offer(slot);
+            drain();
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            upstreamError = throwable;
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void onComplete() {
+            upstreamDone = true;
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                requestError = new IllegalArgumentException("Requested " + n + " elements, the demand must be positive");
+            } else {
+                requested.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            Flow.Subscription subscription = upstream;
+            if (subscription != null) {
+                subscription.cancel();
+            }
+            drain();
+        }
+
+        private void convert(Slot<S, T> slot) {
+            try {
+                slot.result = converter.apply(slot.element);
+            } catch (Throwable e) {
+                slot.error = e;
+            } finally {
+                slot.done = true;
+                running.decrementAndGet();
+                drain();
+            }
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (terminated || cancelled) {
+                    slots.clear();
+                    pending.clear();
+                } else if (requestError != null) {
+                    fail(requestError);
+                } else {
+                    emitReady();
+                    if (!terminated) {
+                        startConversions();
+                        completeOrReplenish();
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void emitReady() {
+            long demand = requested.get();
+            long emitted = 0;
+            for (Slot<S, T> head = slots.peek(); head != null && head.done; head = slots.peek()) {
+                if (head.error != null) {
+                    fail(head.error);
+                    return;
+                }
+                if (emitted == demand) {
+                    break;
+                }
+                slots.poll();
+                buffered.decrementAndGet();
+                downstream.onNext(head.result);
+                emitted++;
+                if (cancelled) {
+                    return;
+                }
+            }
+            if (emitted != 0 && demand != Long.MAX_VALUE) {
+                requested.addAndGet(-emitted);
+            }
+        }
+
+        private void startConversions() {
+            while (running.get() < maxConcurrency) {
+                Slot<S, T> slot = pending.poll();
+                if (slot == null) {
+                    return;
+                }
+                running.incrementAndGet();
+                try {
+                    executor.execute(() -> convert(slot));
+                } catch (RejectedExecutionException e) {
+                    slot.error = e;
+                    slot.done = true;
+                    running.decrementAndGet();
+                    // Loop again so the failure is emitted
+                    wip.incrementAndGet();
+                }
+            }
+        }
+
+        private void completeOrReplenish() {
+            if (upstreamDone) {
+                if (slots.isEmpty()) {
+                    terminated = true;
+                    if (upstreamError != null) {
+                        downstream.onError(upstreamError);
+                    } else {
+                        downstream.onComplete();
+                    }
+                }
+                return;
+            }
+            long wanted = prefetch - buffered.get() - outstanding.get();
+            if (wanted > 0) {
+                outstanding.addAndGet(wanted);
+                upstream.request(wanted);
+            }
+        }
+
+        private void fail(Throwable error) {
+            terminated = true;
+            slots.clear();
+            pending.clear();
+            upstream.cancel();
+            downstream.onError(error);
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+import org.modelmapper.Condition;
+import org.modelmapper.ModelMapper;
+import org.modelmapper.TypeMap;
+import org.modelmapper.spi.Mapping;
+import org.modelmapper.spi.MappingContext;
+import org.modelmapper.spi.PropertyInfo;
+import org.modelmapper.spi.PropertyMapping;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The top-level DTO properties holding a nested DTO converted from a single entity property
+ * (e.g. {@code author} of a book DTO, converted from the book's author), which a {@link BatchMappingContext}
+ * converts once per source object.
+ * <p>
+ * Before an entity is converted, its shared sources already converted in the context are looked up. If any is
+ * found, the entity is converted through a named type map of the plan's own, whose property condition skips the
+ * mappings into those properties, so no nested DTO is created for them again, and the earlier nested DTOs are
+ * set afterwards. The type map between the entity and DTO classes that every other conversion uses is left as it
+ * is. The named type map is only used if it maps the same properties as that type map, which has no converter,
+ * condition, provider or skipped mapping; otherwise the properties are converted again and replaced by the
+ * earlier nested DTOs.
+ */
+final class SharedPropertyPlan {
+    private static final Logger logger = LoggerFactory.getLogger(SharedPropertyPlan.class);
+    private static final AtomicLong TYPE_MAP_NAMES = new AtomicLong();
+
+    /**
+     * The entity being converted within a context on the current thread, and the shared properties to skip.
+     */
+    static final class Run {
+        private final Object entity;
+        private final boolean[] skipped;
+
+        Run(Object entity, boolean[] skipped) {
+            this.entity = entity;
+            this.skipped = skipped;
+        }
+    }
+
+    private final AccessMode accessMode;
+    private final FieldAccessor[] sources;
+    private final FieldAccessor[] destinations;
+    private final Map<String, Integer> indexes;
+    private String typeMapName;
+
+    private SharedPropertyPlan(AccessMode accessMode, FieldAccessor[] sources, FieldAccessor[] destinations,
+                               Map<String, Integer> indexes) {
+        this.accessMode = accessMode;
+        this.sources = sources;
+        this.destinations = destinations;
+        this.indexes = indexes;
+    }
+
+    AccessMode getAccessMode() {
+        return accessMode;
+    }
+
+    /**
+     * @return the name of the type map skipping the shared properties, or null if they are not skipped
+     */
+    String getTypeMapName() {
+        return typeMapName;
+    }
+
+    /**
+     * Finds the shared properties of the shape and creates the named type map skipping them if possible.
+     *
+     * @param modelMapper the model mapper of the mapper
+     * @param typeMap     the type map between the entity and DTO classes
+     * @param shape       the shape of the DTO
+     * @param accessMode  how fields without getter and setter are accessed
+     * @param runs        the runs of the mapper, read by the condition
+     * @return the plan
+     */
+    static SharedPropertyPlan of(ModelMapper modelMapper, TypeMap<?, ?> typeMap, DtoShape shape, AccessMode accessMode,
+                                 ThreadLocal<Run> runs) {
+        Map<String, String> sourceNames = new LinkedHashMap<>();
+        List<String> mixed = new ArrayList<>();
+        for (DtoShape.Property property : shape.getProperties()) {
+            List<String> sourcePath = property.getSourcePath();
+            List<String> destinationPath = property.getDestinationPath();
+            String destinationName = destinationPath.get(0);
+            String previous = sourceNames.putIfAbsent(destinationName, sourcePath.get(0));
+            if (previous != null && !previous.equals(sourcePath.get(0)) || destinationPath.size() != sourcePath.size()) {
+                mixed.add(destinationName);
+            }
+        }
+        List<FieldAccessor> sources = new ArrayList<>();
+        List<FieldAccessor> destinations = new ArrayList<>();
+        Map<String, Integer> indexes = new HashMap<>();
+        for (Map.Entry<String, String> entry : sourceNames.entrySet()) {
+            if (mixed.contains(entry.getKey())) {
+                continue;
+            }
+            FieldAccessor source = EntityPatchPlan.accessorFor(typeMap.getSourceType(), entry.getValue(), accessMode);
+            FieldAccessor destination = EntityPatchPlan.accessorFor(typeMap.getDestinationType(), entry.getKey(), accessMode);
+            if (source == null || destination == null || !isBean(source.getType()) || !isBean(destination.getType())) {
+                continue;
+            }
+            indexes.put(entry.getKey(), sources.size());
+            sources.add(source);
+            destinations.add(destination);
+        }
+        SharedPropertyPlan plan = new SharedPropertyPlan(accessMode, sources.toArray(new FieldAccessor[0]),
+                destinations.toArray(new FieldAccessor[0]), indexes);
+        if (!indexes.isEmpty() && isPlain(typeMap)) {
+            String name = SharedPropertyPlan.class.getSimpleName() + "#" + TYPE_MAP_NAMES.incrementAndGet();
+            TypeMap<?, ?> skipping = modelMapper.createTypeMap(typeMap.getSourceType(), typeMap.getDestinationType(), name);
+            if (paths(skipping).equals(paths(typeMap))) {
+                skipping.setPropertyCondition(plan.condition(runs));
+                plan.typeMapName = name;
+            }
+        }
+        logger.debug("Shared properties of {}: {}, skipped while converting: {}", typeMap.getName(), indexes.keySet(),
+                plan.typeMapName != null);
+        return plan;
+    }
+
+    /**
+     * Whether the type map neither converts, conditions nor provides anything itself, nor skips a property, so an
+     * implicitly created type map between the same classes maps alike as long as it maps the same paths.
+     */
+    private static boolean isPlain(TypeMap<?, ?> typeMap) {
+        if (typeMap.getConverter() != null || typeMap.getPreConverter() != null || typeMap.getPostConverter() != null
+                || typeMap.getPropertyConverter() != null || typeMap.getCondition() != null
+                || typeMap.getPropertyCondition() != null || typeMap.getProvider() != null
+                || typeMap.getPropertyProvider() != null) {
+            return false;
+        }
+        for (Mapping mapping : typeMap.getMappings()) {
+            if (!(mapping instanceof PropertyMapping) || mapping.isSkipped() || mapping.getConverter() != null
+                    || mapping.getCondition() != null || mapping.getProvider() != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the source path of every destination path the type map maps
+     */
+    private static Map<String, List<String>> paths(TypeMap<?, ?> typeMap) {
+        Map<String, List<String>> paths = new HashMap<>();
+        for (Mapping mapping : typeMap.getMappings()) {
+            List<String> sourcePath = new ArrayList<>();
+            if (mapping instanceof PropertyMapping) {
+                for (PropertyInfo property : ((PropertyMapping) mapping).getSourceProperties()) {
+                    sourcePath.add(property.getName());
+                }
+            }
+            paths.put(mapping.getPath(), sourcePath);
+        }
+        return paths;
+    }
+
+    private static boolean isBean(Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && !type.isEnum() && !type.isInterface()
+                && !Collection.class.isAssignableFrom(type) && !Map.class.isAssignableFrom(type)
+                && !type.getName().startsWith("java.");
+    }
+
+    private Condition<Object, Object> condition(ThreadLocal<Run> runs) {
+        return context -> {
+            Run run = runs.get();
+            if (run == null || context.getParent() == null || context.getParent().getSource() != run.entity
+                    || !(context.getMapping() instanceof PropertyMapping)) {
+                return true;
+            }
+            String name = ((PropertyMapping) context.getMapping()).getDestinationProperties().get(0).getName();
+            Integer index = indexes.get(name);
+            return index == null || !run.skipped[index];
+        };
+    }
+
+    /**
+     * Reads the shared source objects of the entity.
+     *
+     * @param entity the entity
+     * @return the source object of every shared property
+     */
+    Object[] sources(Object entity) {
+        Object[] values = new Object[sources.length];
+        for (int i = 0; i < sources.length; i++) {
+            values[i] = sources[i].get(entity);
+        }
+        return values;
+    }
+
+    /**
+     * Looks up the nested DTOs already converted from the shared source objects.
+     *
+     * @param values  the shared source objects
+     * @param context the context
+     * @return the earlier nested DTO of every shared property, null where there is none
+     */
+    Object[] reused(Object[] values, BatchMappingContext context) {
+        Object[] reused = new Object[values.length];
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                reused[i] = context.get(values[i], destinations[i].getType());
+            }
+        }
+        return reused;
+    }
+
+    /**
+     * Creates the run converting the entity, skipping the shared properties with an earlier nested DTO.
+     *
+     * @param entity the entity
+     * @param reused the earlier nested DTOs
+     * @return the run, or null if nothing is skipped
+     */
+    Run run(Object entity, Object[] reused) {
+        if (typeMapName == null) {
+            return null;
+        }
+        boolean[] skipped = new boolean[reused.length];
+        boolean any = false;
+        for (int i = 0; i < reused.length; i++) {
+            skipped[i] = reused[i] != null;
+            any |= skipped[i];
+        }
+        return any ? new Run(entity, skipped) : null;
+    }
+
+    /**
+     * Sets the earlier nested DTOs into the converted DTO.
+     *
+     * @param dto    the converted DTO
+     * @param reused the earlier nested DTOs
+     */
+    void reuse(Object dto, Object[] reused) {
+        for (int i = 0; i < reused.length; i++) {
+            if (reused[i] != null) {
+                destinations[i].set(dto, reused[i]);
+            }
+        }
+    }
+
+    /**
+     * Records the nested DTOs the converted DTO did not reuse in the context.
+     *
+     * @param dto     the converted DTO
+     * @param values  the shared source objects
+     * @param reused  the earlier nested DTOs
+     * @param context the context
+     */
+    void record(Object dto, Object[] values, Object[] reused, BatchMappingContext context) {
+        for (int i = 0; i < values.length; i++) {
+            if (reused[i] == null && values[i] != null) {
+                Object nested = destinations[i].get(dto);
+                if (nested != null) {
+                    context.put(values[i], destinations[i].getType(), nested);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,207 @@
+package com.kgkilas.mapping.patch;
+
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The fields actually changed by a patch call. Writes of values equal to the existing value are skipped
+ * and not recorded, so an empty change set means the patched object is unchanged.
+ * <p>
+ * Changes are identified by a dotted path from the patched root (e.g. {@code address.zip}, or
+ * {@code items[42].name} for an element of a collection merged by key); changed top-level
+ * fields are also available by their plan ordinal. Old and new values are only kept when requested.
+ * A change set is filled by a single patch call and is not thread-safe.
+ */
+public final class ChangeSet {
+
+    /**
+     * A single changed field.
+     */
+    @Getter
+    public static final class Change {
+        private final String path;
+        private final int ordinal;
+        private final Object oldValue;
+        private final Object newValue;
+
+        private Change(String path, int ordinal, Object oldValue, Object newValue) {
+            this.path = path;
+            this.ordinal = ordinal;
+            this.oldValue = oldValue;
+            this.newValue = newValue;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    /**
+     * A sub-object of the patched root that changes can be recorded below. Scopes are immutable,
+     * so a traversal can keep one per pending sub-object and switch between them.
+     */
+    public static final class Scope {
+        private final String path;
+        private final int rootOrdinal;
+
+        private Scope(String path, int rootOrdinal) {
+            this.path = path;
+            this.rootOrdinal = rootOrdinal;
+        }
+
+        @Override
+        public String toString() {
+            return path;
+        }
+    }
+
+    private final boolean captureValues;
+    private final List<Change> changes = new ArrayList<>();
+    private final BitSet changedFields = new BitSet();
+    private Scope scope;
+
+    /**
+     * @param captureValues whether to keep the old and new value of every change
+     */
+    public ChangeSet(boolean captureValues) {
+        this.captureValues = captureValues;
+    }
+
+    /**
+     * @return true if the patch changed nothing
+     */
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    /**
+     * @return the changes in the order they were applied
+     */
+    public List<Change> getChanges() {
+        return Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * @return the dotted paths of all changed fields
+     */
+    public Set<String> getPaths() {
+        Set<String> paths = new LinkedHashSet<>();
+        for (Change change : changes) {
+            paths.add(change.path);
+        }
+        return paths;
+    }
+
+    /**
+     * Whether the top-level field with the given plan ordinal, or anything below it, changed.
+     *
+     * @param ordinal the ordinal of a field of the patched root's plan
+     * @return true if the field changed
+     */
+    public boolean isChanged(int ordinal) {
+        return changedFields.get(ordinal);
+    }
+
+    /**
+     * Whether the field at the given dotted path, or anything below it, changed.
+     *
+     * @param path the dotted path
+     * @return true if the field changed
+     */
+    public boolean isChanged(String path) {
+        for (Change change : changes) {
+            if (change.path.equals(path) || change.path.startsWith(path + ".") || change.path.startsWith(path + "[")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if old and new values are captured
+     */
+    public boolean isCapturingValues() {
+        return captureValues;
+    }
+
+    /**
+     * @return the sub-object changes are currently recorded below, or null for the patched root
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Makes later changes be recorded below the given sub-object.
+     *
+     * @param scope a scope obtained from this change set, or null for the patched root
+     */
+    public void setScope(Scope scope) {
+        this.scope = scope;
+    }
+
+    /**
+     * Returns the scope of the sub-object held by the given field of the current sub-object.
+     *
+     * @param field the field holding the sub-object
+     * @return the child scope
+     */
+    public Scope childScope(PatchField field) {
+        return childScope(field, field.getName());
+    }
+
+    /**
+     * Returns the scope of the element with the given key of the collection or map held by the given field.
+     *
+     * @param field the field holding the collection or map
+     * @param key   the key of the element
+     * @return the element scope
+     */
+    public Scope elementScope(PatchField field, Object key) {
+        return childScope(field, field.getName() + "[" + key + "]");
+    }
+
+    /**
+     * Records a change of the given field of the current sub-object.
+     *
+     * @param field    the changed field
+     * @param oldValue the value before the patch
+     * @param newValue the value after the patch
+     */
+    public void record(PatchField field, Object oldValue, Object newValue) {
+        record(field, field.getName(), oldValue, newValue);
+    }
+
+    /**
+     * Records a change of the element with the given key of the collection or map held by the given field.
+     *
+     * @param field    the field holding the collection or map
+     * @param key      the key of the element
+     * @param oldValue the element before the patch
+     * @param newValue the element after the patch
+     */
+    public void recordElement(PatchField field, Object key, Object oldValue, Object newValue) {
+        record(field, field.getName() + "[" + key + "]", oldValue, newValue);
+    }
+
+    private Scope childScope(PatchField field, String segment) {
+        if (scope == null) {
+            return new Scope(segment, field.getOrdinal());
+        }
+        return new Scope(scope.path + "." + segment, scope.rootOrdinal);
+    }
+
+    private void record(PatchField field, String segment, Object oldValue, Object newValue) {
+        String path = scope == null ? segment : scope.path + "." + segment;
+        changedFields.set(scope == null ? field.getOrdinal() : scope.rootOrdinal);
+        changes.add(new Change(path, field.getOrdinal(),
+                captureValues ? oldValue : null, captureValues ? newValue : null));
+    }
+}
@@ -0,0 +1,259 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.annotation.IgnoreField;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.beans.ConstructorProperties;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.Arrays;
+
+/**
+ * Precomputed description of how a new instance of a record or immutable class is created from its field values,
+ * for patching without mutation. The instance is created through the canonical constructor or, if there is none,
+ * through a static {@code builder()} with one method per field and {@code build()}. For classes, the canonical
+ * constructor takes every instance field in declaration order, superclass fields first, and its parameters must be
+ * known to be those fields by name, through {@link ConstructorProperties} or parameter names compiled with
+ * {@code -parameters}; a constructor matching the field types only is not used, as it could swap values.
+ * <p>
+ * Components are in the order of {@link PatchPlan}'s fields for the same class, so the index of a component is the
+ * ordinal of the corresponding plan field. Plans are built once per class and cached in a {@link ClassValue}.
+ */
+public final class CopyPlan {
+    private static final Logger logger = LoggerFactory.getLogger(CopyPlan.class);
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final ClassValue<CopyPlan> CACHE = new ClassValue<>() {
+        @Override
+        protected CopyPlan computeValue(Class<?> type) {
+            return build(type);
+        }
+    };
+
+    private final Class<?> type;
+    private final String[] names;
+    private final Class<?>[] types;
+    private final boolean[] ignored;
+    private final MethodHandle[] getters;
+    private final MethodHandle constructor;
+    private final MethodHandle builderFactory;
+    private final MethodHandle[] builderSetters;
+    private final MethodHandle builderBuild;
+
+    private CopyPlan(Class<?> type, Field[] fields, MethodHandle[] getters, MethodHandle constructor,
+                     MethodHandle builderFactory, MethodHandle[] builderSetters, MethodHandle builderBuild) {
+        this.type = type;
+        this.names = new String[fields.length];
+        this.types = new Class<?>[fields.length];
+        this.ignored = new boolean[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = fields[i].getName();
+            types[i] = fields[i].getType();
+            ignored[i] = fields[i].isAnnotationPresent(IgnoreField.class);
+        }
+        this.getters = getters;
+        this.constructor = constructor;
+        this.builderFactory = builderFactory;
+        this.builderSetters = builderSetters;
+        this.builderBuild = builderBuild;
+    }
+
+    /**
+     * Returns the cached plan for the given class, building it on first use.
+     *
+     * @param type the class of the instances to copy
+     * @return the plan, or null if instances of the class cannot be created from their field values
+     */
+    public static CopyPlan of(Class<?> type) {
+        CopyPlan plan = CACHE.get(type);
+        return plan.getters == null ? null : plan;
+    }
+
+    /**
+     * @return the class of the instances created by this plan
+     */
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return the number of components
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @param index the component index
+     * @return the name of the component
+     */
+    public String getName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index the component index
+     * @return the declared type of the component
+     */
+    public Class<?> getComponentType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index the component index
+     * @return true if the component's field is annotated with {@link IgnoreField}
+     */
+    public boolean isIgnored(int index) {
+        return ignored[index];
+    }
+
+    /**
+     * Reads a component of an instance, boxing primitives.
+     *
+     * @param index  the component index
+     * @param target the instance to read from
+     * @return the component value
+     */
+    public Object get(int index, Object target) {
+        try {
+            return (Object) getters[index].invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("Reading '" + names[index] + "' of " + type.getName() + " failed", e);
+        }
+    }
+
+    /**
+     * Creates a new instance from the given component values in a single constructor or builder call.
+     *
+     * @param values the value of every component, in component order
+     * @return the new instance
+     * @throws IllegalArgumentException if the constructor or builder rejects the values
+     */
+    public Object newInstance(Object[] values) {
+        try {
+            if (constructor != null) {
+                return constructor.invoke(values);
+            }
+            Object builder = builderFactory.invoke();
+            for (int i = 0; i < builderSetters.length; i++) {
+                builder = builderSetters[i].invoke(builder, values[i]);
+            }
+            return builderBuild.invoke(builder);
+        } catch (Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Cannot create " + type.getName() + " from " + Arrays.toString(names)
+                    + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static CopyPlan build(Class<?> type) {
+        Field[] fields = PatchPlan.fieldTable(type).values().toArray(new Field[0]);
+        if (type.isInterface() || type.isEnum() || type.isArray() || type.isPrimitive() || Modifier.isAbstract(type.getModifiers())
+                || PatchPlan.isPrimitiveOrWrapper(type) || PatchPlan.isContainer(type) || type.getName().startsWith("java.") || fields.length == 0) {
+            return unsupported(type);
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+            MethodHandle[] getters = new MethodHandle[fields.length];
+            Class<?>[] fieldTypes = new Class<?>[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                fields[i].setAccessible(true);
+                getters[i] = lookup.unreflectGetter(fields[i]).asType(GETTER_TYPE);
+                fieldTypes[i] = fields[i].getType();
+            }
+            Constructor<?> canonical = findConstructor(type, fields, fieldTypes);
+            if (canonical != null) {
+                canonical.setAccessible(true);
+                MethodHandle constructor = lookup.unreflectConstructor(canonical)
+                        .asType(MethodType.methodType(Object.class, fieldTypes))
+                        .asSpreader(Object[].class, fields.length);
+                logger.debug("Built copy plan for {} using its canonical constructor", type.getName());
+                return new CopyPlan(type, fields, getters, constructor, null, null, null);
+            }
+            Method builder = findMethod(type, "builder");
+            if (builder != null && Modifier.isStatic(builder.getModifiers())) {
+                Class<?> builderType = builder.getReturnType();
+                Method build = findMethod(builderType, "build");
+                MethodHandle[] setters = new MethodHandle[fields.length];
+                for (int i = 0; i < fields.length; i++) {
+                    Method setter = findMethod(builderType, fields[i].getName(), fieldTypes[i]);
+                    if (setter == null) {
+                        return unsupported(type);
+                    }
+                    setters[i] = lookup.unreflect(setter)
+                            .asType(MethodType.methodType(Object.class, Object.class, Object.class));
+                }
+                if (build != null && type.isAssignableFrom(build.getReturnType())) {
+                    logger.debug("Built copy plan for {} using its builder", type.getName());
+                    return new CopyPlan(type, fields, getters, null,
+                            lookup.unreflect(builder).asType(MethodType.methodType(Object.class)), setters,
+                            lookup.unreflect(build).asType(GETTER_TYPE));
+                }
+            }
+        } catch (IllegalAccessException | RuntimeException e) {
+            logger.debug("Cannot build copy plan for {}", type.getName(), e);
+        }
+        return unsupported(type);
+    }
+
+    private static CopyPlan unsupported(Class<?> type) {
+        return new CopyPlan(type, new Field[0], null, null, null, null, null);
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Field[] fields, Class<?>[] parameterTypes) {
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor(parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+        if (type.isRecord()) {
+            return constructor;
+        }
+        String[] names;
+        ConstructorProperties properties = constructor.getAnnotation(ConstructorProperties.class);
+        if (properties != null) {
+            names = properties.value();
+        } else {
+            Parameter[] parameters = constructor.getParameters();
+            if (parameters.length > 0 && !parameters[0].isNamePresent()) {
+                logger.warn("Constructor of {} matches its field types but its parameter names are unknown, "
+                        + "it will not be used; compile with -parameters or add @ConstructorProperties", type.getName());
+                return null;
+            }
+            names = Arrays.stream(parameters).map(Parameter::getName).toArray(String[]::new);
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (i >= names.length || !fields[i].getName().equals(names[i])) {
+                logger.warn("Constructor of {} matches its field types but not their names, it will not be used",
+                        type.getName());
+                return null;
+            }
+        }
+        return constructor;
+    }
+
+    private static Method findMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(name, parameterTypes);
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException e) {
+                // Look in the superclass
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,245 @@
+package com.kgkilas.mapping.patch;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Precompiled selection of the fields that a patch should null out, stored as a bitset indexed by
+ * {@link PatchField#getOrdinal() field ordinal}, with optional nested masks for sub-objects.
+ * <p>
+ * Masks are immutable and meant to be built once and reused across patch calls. A mask is compiled against
+ * the plan of one (source class, target class) pair; when it is applied to a different pair it is recompiled
+ * from its field names once and the result is cached.
+ */
+public final class FieldMask {
+
+    /**
+     * Maximum number of distinct name lists whose masks {@link #ofNameList(List)} keeps.
+     */
+    static final int MAX_CACHED_NAME_LISTS = 256;
+
+    private static final ConcurrentMap<List<String>, FieldMask> NAME_LIST_MASKS = new ConcurrentHashMap<>();
+
+    private final PatchPlan plan;
+    private final long[] bits;
+    private final FieldMask[] nested;
+    private final Set<String> names;
+    private final Map<String, FieldMask> nestedByName;
+    private final boolean uniform;
+    private final ConcurrentMap<PatchPlan, FieldMask> bindings;
+
+    private FieldMask(PatchPlan plan, Set<String> names, Map<String, FieldMask> nestedByName, boolean uniform,
+                      ConcurrentMap<PatchPlan, FieldMask> bindings) {
+        this.plan = plan;
+        this.names = names;
+        this.nestedByName = nestedByName;
+        this.uniform = uniform;
+        this.bindings = bindings;
+        if (plan == null) {
+            this.bits = new long[0];
+            this.nested = new FieldMask[0];
+            return;
+        }
+        int size = plan.getFields().size();
+        this.bits = new long[(size + 63) >>> 6];
+        for (String name : names) {
+            PatchField field = plan.getField(name);
+            if (field != null) {
+                bits[field.getOrdinal() >>> 6] |= 1L << field.getOrdinal();
+            }
+        }
+        this.nested = new FieldMask[size];
+        for (Map.Entry<String, FieldMask> entry : nestedByName.entrySet()) {
+            PatchField field = plan.getField(entry.getKey());
+            if (field != null) {
+                nested[field.getOrdinal()] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * Compiles a mask that selects the given field names at every level of the object graph,
+     * matching the semantics of the {@code List<String>} based patch API.
+     *
+     * @param names the names of the fields to null out
+     * @return the mask
+     */
+    public static FieldMask ofNames(Collection<String> names) {
+        return new FieldMask(null, Collections.unmodifiableSet(new LinkedHashSet<>(names)), Collections.emptyMap(),
+                true, new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Returns the mask of {@link #ofNames(Collection)} for the given list, compiled once per distinct list and
+     * shared afterwards, so the {@code List<String>} based patch API allocates nothing per call. Up to
+     * {@value #MAX_CACHED_NAME_LISTS} lists are kept; lists holding null are compiled on every call.
+     *
+     * @param names the names of the fields to null out
+     * @return the shared mask
+     */
+    public static FieldMask ofNameList(List<String> names) {
+        FieldMask mask = NAME_LIST_MASKS.get(names);
+        if (mask != null) {
+            return mask;
+        }
+        List<String> key;
+        try {
+            key = List.copyOf(names);
+        } catch (NullPointerException e) {
+            return ofNames(names);
+        }
+        if (NAME_LIST_MASKS.size() >= MAX_CACHED_NAME_LISTS) {
+            NAME_LIST_MASKS.clear();
+        }
+        return NAME_LIST_MASKS.computeIfAbsent(key, FieldMask::ofNames);
+    }
+
+    /**
+     * Starts building a mask for patching an object of the given type onto an object of the same type.
+     *
+     * @param type the patched type
+     * @return the builder
+     */
+    public static Builder builder(Class<?> type) {
+        return builder(type, type);
+    }
+
+    /**
+     * Starts building a mask for patching an object of sourceType onto an object of targetType.
+     *
+     * @param sourceType the class values are read from
+     * @param targetType the class values are written to
+     * @return the builder
+     */
+    public static Builder builder(Class<?> sourceType, Class<?> targetType) {
+        return new Builder(PatchPlan.of(sourceType, targetType));
+    }
+
+    /**
+     * Returns this mask compiled against the given plan.
+     *
+     * @param plan the plan of the objects being patched
+     * @return the bound mask
+     */
+    public FieldMask bind(PatchPlan plan) {
+        if (plan == this.plan) {
+            return this;
+        }
+        FieldMask bound = bindings.get(plan);
+        if (bound != null) {
+            return bound;
+        }
+        return bindings.computeIfAbsent(plan, p -> new FieldMask(p, names, nestedByName, uniform,
+                uniform ? bindings : new ConcurrentHashMap<>()));
+    }
+
+    /**
+     * Whether the field with the given ordinal is selected. The mask must be bound to the plan the ordinal belongs to.
+     *
+     * @param ordinal the field ordinal
+     * @return true if the field should be nulled out
+     */
+    public boolean isSelected(int ordinal) {
+        int word = ordinal >>> 6;
+        return word < bits.length && (bits[word] & (1L << ordinal)) != 0;
+    }
+
+    /**
+     * Returns the mask to apply to the sub-object held by the field with the given ordinal.
+     *
+     * @param ordinal the field ordinal
+     * @return the nested mask, or null if nothing is selected below this field
+     */
+    public FieldMask nested(int ordinal) {
+        if (uniform) {
+            return this;
+        }
+        return ordinal < nested.length ? nested[ordinal] : null;
+    }
+
+    /**
+     * Builds a {@link FieldMask} against the plan of a fixed pair of classes, validating field names eagerly.
+     */
+    public static final class Builder {
+        private final PatchPlan plan;
+        private final Set<String> names = new LinkedHashSet<>();
+        private final Map<String, FieldMask> nestedByName = new HashMap<>();
+
+        private Builder(PatchPlan plan) {
+            this.plan = plan;
+        }
+
+        /**
+         * Selects fields of this level to be nulled out.
+         *
+         * @param fieldNames the field names
+         * @return this builder
+         * @throws IllegalArgumentException if a field does not exist
+         */
+        public Builder select(String... fieldNames) {
+            for (String name : fieldNames) {
+                requireField(name);
+            }
+            names.addAll(Arrays.asList(fieldNames));
+            return this;
+        }
+
+        /**
+         * Sets the mask applied to the sub-object held by the given field.
+         *
+         * @param fieldName the field holding the sub-object
+         * @param mask      the nested mask
+         * @return this builder
+         * @throws IllegalArgumentException if the field does not exist
+         */
+        public Builder nested(String fieldName, FieldMask mask) {
+            requireField(fieldName);
+            nestedByName.put(fieldName, mask);
+            return this;
+        }
+
+        /**
+         * Builds the mask applied to the sub-object held by the given field, using the field's declared types.
+         *
+         * @param fieldName the field holding the sub-object
+         * @param nested    configures the nested builder
+         * @return this builder
+         * @throws IllegalArgumentException if the field does not exist or is not patchable
+         */
+        public Builder nested(String fieldName, Consumer<Builder> nested) {
+            PatchField field = requireField(fieldName);
+            if (!field.isPatchable()) {
+                throw new IllegalArgumentException("Field '" + fieldName + "' is not patchable");
+            }
+            Builder builder = builder(field.getSourceField().getType(), field.getTargetField().getType());
+            nested.accept(builder);
+            nestedByName.put(fieldName, builder.build());
+            return this;
+        }
+
+        /**
+         * @return the compiled mask
+         */
+        public FieldMask build() {
+            return new FieldMask(plan, Collections.unmodifiableSet(new LinkedHashSet<>(names)),
+                    Collections.unmodifiableMap(new HashMap<>(nestedByName)), false, new ConcurrentHashMap<>());
+        }
+
+        private PatchField requireField(String name) {
+            PatchField field = plan.getField(name);
+            if (field == null) {
+                throw new IllegalArgumentException("Unknown field '" + name + "' in " + plan.getSourceType().getName());
+            }
+            return field;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.kgkilas.mapping.patch;
+
+/**
+ * A patcher generated at runtime for one {@link PatchPlan}.
+ * Simple fields are copied with straight-line field accesses; complex values and nulls
+ * are handed back to the caller through a {@link PatchCallback}.
+ */
+public interface GeneratedPatcher {
+
+    /**
+     * Patches existing with the values of update.
+     *
+     * @param update   the object with updated values
+     * @param existing the object to be patched
+     * @param callback receives the fields the generated code does not handle itself
+     */
+    void patch(Object update, Object existing, PatchCallback callback);
+}
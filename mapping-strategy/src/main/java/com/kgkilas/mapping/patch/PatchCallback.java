@@ -0,0 +1,26 @@
+package com.kgkilas.mapping.patch;
+
+/**
+ * Receives the fields a {@link GeneratedPatcher} delegates back to the mapper.
+ * Fields are identified by their {@link PatchField#getOrdinal() ordinal} in the plan.
+ */
+public interface PatchCallback {
+
+    /**
+     * Called for a non-null value that may need to be patched recursively.
+     *
+     * @param ordinal  the ordinal of the field in the plan
+     * @param value    the non-null value read from the update object
+     * @param existing the object being patched
+     */
+    void onValue(int ordinal, Object value, Object existing);
+
+    /**
+     * Called for a reference field that is null in the update object.
+     *
+     * @param ordinal  the ordinal of the field in the plan
+     * @param update   the object with updated values
+     * @param existing the object being patched
+     */
+    void onNull(int ordinal, Object update, Object existing);
+}
@@ -0,0 +1,105 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.accessor.FieldAccessor;
+import com.kgkilas.mapping.annotation.PatchCollection;
+import lombok.Getter;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A single, pre-resolved field of a {@link PatchPlan}.
+ * Holds the accessible source and target fields, their accessors, and the decisions
+ * that the patch hot path would otherwise recompute on every call.
+ */
+@Getter
+public final class PatchField {
+
+    /**
+     * Describes whether a non-null value of this field is copied as-is or patched recursively.
+     */
+    public enum ValueKind {
+        /** Primitive, wrapper, String or array: always copied. */
+        SIMPLE,
+        /** Declared type is a final bean type: always patched recursively. */
+        COMPLEX,
+        /** Declared type is a {@link java.util.Collection} or {@link java.util.Map}: patched per {@link PatchCollection.Mode}. */
+        CONTAINER,
+        /** Declared type is open; the decision is taken from the runtime class of the value. */
+        RUNTIME
+    }
+
+    private final int ordinal;
+    private final String name;
+    private final Field sourceField;
+    private final Field targetField;
+    private final boolean ignored;
+    private final ValueKind valueKind;
+    private final FieldAccessor sourceAccessor;
+    private final FieldAccessor targetAccessor;
+    private final PatchCollection.Mode collectionMode;
+    private final String collectionKey;
+
+    PatchField(int ordinal, Field sourceField, Field targetField, boolean ignored, ValueKind valueKind, AccessMode accessMode) {
+        this.ordinal = ordinal;
+        this.name = sourceField.getName();
+        this.sourceField = sourceField;
+        this.targetField = targetField;
+        this.ignored = ignored;
+        this.valueKind = valueKind;
+        this.sourceAccessor = targetField != null ? accessMode.accessorFor(sourceField) : null;
+        this.targetAccessor = targetField != null ? accessMode.accessorFor(targetField) : null;
+        PatchCollection patchCollection = sourceField.getAnnotation(PatchCollection.class);
+        this.collectionMode = patchCollection != null ? patchCollection.mode() : PatchCollection.Mode.REPLACE;
+        this.collectionKey = patchCollection != null ? patchCollection.key() : "";
+    }
+
+    /**
+     * Whether the source field is primitive and therefore can never be null.
+     *
+     * @return true if the source field is primitive
+     */
+    public boolean isPrimitive() {
+        return sourceField.getType().isPrimitive();
+    }
+
+    /**
+     * Whether the field takes part in patching, i.e. it is not ignored and exists on the target.
+     *
+     * @return true if the field is patchable
+     */
+    public boolean isPatchable() {
+        return !ignored && targetField != null;
+    }
+
+    /**
+     * Decides whether the given non-null value should be patched recursively.
+     *
+     * @param value the non-null value read from the source
+     * @return true if the value is a complex object
+     */
+    public boolean isComplex(Object value) {
+        switch (valueKind) {
+            case SIMPLE:
+            case CONTAINER:
+                return false;
+            case COMPLEX:
+                return true;
+            default:
+                return PatchPlan.isBeanType(value.getClass());
+        }
+    }
+
+    /**
+     * Decides whether the given non-null value is a collection or map patched per {@link #getCollectionMode()}.
+     *
+     * @param value the non-null value read from the source
+     * @return true if the value is a collection or map
+     */
+    public boolean isContainer(Object value) {
+        return valueKind == ValueKind.CONTAINER
+                || (valueKind == ValueKind.RUNTIME && (value instanceof Collection || value instanceof Map));
+    }
+}
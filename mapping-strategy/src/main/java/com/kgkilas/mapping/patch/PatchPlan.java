@@ -0,0 +1,294 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.annotation.IgnoreField;
+import lombok.Getter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, precomputed description of how an instance of a source class is patched onto
+ * an instance of a target class.
+ * Plans are built once per (source class, target class) pair and cached in a {@link ClassValue},
+ * so the patch hot path performs no reflective lookups. A separate cache is kept per {@link AccessMode}.
+ * Plans cover the fields declared by the classes and inherited from their superclasses.
+ */
+@Getter
+public final class PatchPlan {
+    private static final Logger logger = LoggerFactory.getLogger(PatchPlan.class);
+
+    private static final Map<AccessMode, ClassValue<ClassValue<PatchPlan>>> CACHES = new EnumMap<>(AccessMode.class);
+
+    private static final ClassValue<Boolean> SIMPLE_VALUE_TYPES = new ClassValue<>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return isSimpleValueType(type, new HashSet<>());
+        }
+    };
+
+    private static final ClassValue<Map<String, Field>> FIELD_TABLES = new ClassValue<>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            return buildFieldTable(type);
+        }
+    };
+
+    static {
+        for (AccessMode accessMode : AccessMode.values()) {
+            CACHES.put(accessMode, new ClassValue<>() {
+                @Override
+                protected ClassValue<PatchPlan> computeValue(Class<?> sourceType) {
+                    return new ClassValue<>() {
+                        @Override
+                        protected PatchPlan computeValue(Class<?> targetType) {
+                            return build(sourceType, targetType, accessMode);
+                        }
+                    };
+                }
+            });
+        }
+    }
+
+    private final Class<?> sourceType;
+    private final Class<?> targetType;
+    private final AccessMode accessMode;
+    private final List<PatchField> fields;
+    @Getter(lombok.AccessLevel.NONE)
+    private final PatchField[] allFields;
+    private final PatchField[] patchableFields;
+    @Getter(lombok.AccessLevel.NONE)
+    private final Map<String, PatchField> fieldsByName;
+    private final GeneratedPatcher generatedPatcher;
+
+    private PatchPlan(Class<?> sourceType, Class<?> targetType, AccessMode accessMode, List<PatchField> fields) {
+        this.sourceType = sourceType;
+        this.targetType = targetType;
+        this.accessMode = accessMode;
+        this.fields = Collections.unmodifiableList(fields);
+        this.patchableFields = fields.stream().filter(PatchField::isPatchable).toArray(PatchField[]::new);
+        Map<String, PatchField> byName = new HashMap<>();
+        for (PatchField field : fields) {
+            byName.put(field.getName(), field);
+        }
+        this.fieldsByName = Collections.unmodifiableMap(byName);
+        this.allFields = fields.toArray(new PatchField[0]);
+        this.generatedPatcher = accessMode == AccessMode.GENERATED ? PatcherGenerator.tryGenerate(this) : null;
+    }
+
+    /**
+     * Returns the cached plan for the given pair of classes using {@link AccessMode#HANDLES}.
+     *
+     * @param sourceType the class values are read from
+     * @param targetType the class values are written to
+     * @return the patch plan
+     */
+    public static PatchPlan of(Class<?> sourceType, Class<?> targetType) {
+        return of(sourceType, targetType, AccessMode.HANDLES);
+    }
+
+    /**
+     * Returns the cached plan for the given pair of classes and access mode, building it on first use.
+     *
+     * @param sourceType the class values are read from
+     * @param targetType the class values are written to
+     * @param accessMode how the plan's accessors read and write fields
+     * @return the patch plan
+     */
+    public static PatchPlan of(Class<?> sourceType, Class<?> targetType, AccessMode accessMode) {
+        return CACHES.get(accessMode).get(sourceType).get(targetType);
+    }
+
+    /**
+     * Returns the patchable fields in ordinal order. The returned array is shared and must not be modified.
+     *
+     * @return the patchable fields
+     */
+    public PatchField[] getPatchableFields() {
+        return patchableFields;
+    }
+
+    /**
+     * Returns the field with the given ordinal.
+     *
+     * @param ordinal the field ordinal
+     * @return the field
+     */
+    public PatchField getField(int ordinal) {
+        return allFields[ordinal];
+    }
+
+    /**
+     * Looks up a field of the plan by name.
+     *
+     * @param name the field name
+     * @return the field, or null if the source class has no such field
+     */
+    public PatchField getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * Finds the instance field with the given name declared by the class or inherited from one of its superclasses.
+     * A field declared lower in the hierarchy hides a superclass field of the same name.
+     *
+     * @param type the class to search
+     * @param name the field name
+     * @return the field, or null if the class has no such field
+     */
+    public static Field findField(Class<?> type, String name) {
+        return FIELD_TABLES.get(type).get(name);
+    }
+
+    /**
+     * Returns the instance fields of the class and its superclasses by name, in plan ordinal order.
+     *
+     * @param type the class
+     * @return the fields by name, superclass fields first
+     */
+    public static Map<String, Field> fieldTable(Class<?> type) {
+        return FIELD_TABLES.get(type);
+    }
+
+    /**
+     * Returns the instance fields of the class and its superclasses, superclass fields first.
+     */
+    private static Map<String, Field> buildFieldTable(Class<?> type) {
+        List<Class<?>> hierarchy = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(current);
+        }
+        Map<String, Field> table = new LinkedHashMap<>();
+        for (int i = hierarchy.size() - 1; i >= 0; i--) {
+            for (Field field : hierarchy.get(i).getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.isSynthetic()) {
+                    continue;
+                }
+                // A hiding field replaces the field it hides and keeps its position
+                table.put(field.getName(), field);
+            }
+        }
+        return Collections.unmodifiableMap(table);
+    }
+
+    private static PatchPlan build(Class<?> sourceType, Class<?> targetType, AccessMode accessMode) {
+        List<PatchField> fields = new ArrayList<>();
+        for (Field sourceField : FIELD_TABLES.get(sourceType).values()) {
+            boolean ignored = sourceField.isAnnotationPresent(IgnoreField.class);
+            Field targetField = ignored ? null : resolveTargetField(sourceField, targetType);
+            if (targetField != null && !makeAccessible(sourceField)) {
+                targetField = null;
+            }
+            fields.add(new PatchField(fields.size(), sourceField, targetField, ignored,
+                    valueKindOf(sourceField.getType()), accessMode));
+        }
+        logger.debug("Built {} patch plan {} -> {} with {} fields", accessMode, sourceType.getName(),
+                targetType.getName(), fields.size());
+        return new PatchPlan(sourceType, targetType, accessMode, fields);
+    }
+
+    private static Field resolveTargetField(Field sourceField, Class<?> targetType) {
+        Field targetField = findField(targetType, sourceField.getName());
+        if (targetField == null) {
+            logger.warn("Field '{}' of {} has no counterpart in {}, it will not be patched",
+                    sourceField.getName(), sourceField.getDeclaringClass().getName(), targetType.getName());
+            return null;
+        }
+        return makeAccessible(targetField) ? targetField : null;
+    }
+
+    private static boolean makeAccessible(Field field) {
+        try {
+            field.setAccessible(true);
+            return true;
+        } catch (RuntimeException e) {
+            logger.warn("Field '{}' of {} is not accessible, it will not be patched",
+                    field.getName(), field.getDeclaringClass().getName());
+            return false;
+        }
+    }
+
+    private static PatchField.ValueKind valueKindOf(Class<?> declaredType) {
+        if (isSimpleValueType(declaredType)) {
+            return PatchField.ValueKind.SIMPLE;
+        }
+        if (isContainer(declaredType)) {
+            return PatchField.ValueKind.CONTAINER;
+        }
+        if (Modifier.isFinal(declaredType.getModifiers())) {
+            return PatchField.ValueKind.COMPLEX;
+        }
+        return PatchField.ValueKind.RUNTIME;
+    }
+
+    /**
+     * Whether values of the given runtime class are beans that are patched field by field,
+     * as opposed to simple values, arrays, collections and maps.
+     *
+     * @param clazz the runtime class of a value
+     * @return true if the class is patched recursively
+     */
+    public static boolean isBeanType(Class<?> clazz) {
+        return !isSimpleValueType(clazz) && !isContainer(clazz);
+    }
+
+    /**
+     * Whether values of the given class are copied whole instead of being patched field by field: primitives,
+     * their wrappers and strings, arrays, enums, the concrete value classes of the JDK such as {@code LocalDate},
+     * {@code UUID} or {@code BigDecimal}, and records whose components are all simple values. JDK classes keep
+     * their fields private to their module, so they could not be patched field by field anyway.
+     *
+     * @param clazz the declared or runtime class of a value
+     * @return true if values of the class are simple values
+     */
+    public static boolean isSimpleValueType(Class<?> clazz) {
+        return SIMPLE_VALUE_TYPES.get(clazz);
+    }
+
+    private static boolean isSimpleValueType(Class<?> clazz, Set<Class<?>> visiting) {
+        if (isPrimitiveOrWrapper(clazz) || clazz.isArray() || Enum.class.isAssignableFrom(clazz)) {
+            return true;
+        }
+        if (isContainer(clazz) || clazz == Object.class || clazz.isInterface()) {
+            return false;
+        }
+        String name = clazz.getName();
+        if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("jdk.")) {
+            return true;
+        }
+        if (!clazz.isRecord() || !visiting.add(clazz)) {
+            return false;
+        }
+        for (RecordComponent component : clazz.getRecordComponents()) {
+            if (!isSimpleValueType(component.getType(), visiting)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static boolean isContainer(Class<?> clazz) {
+        return Collection.class.isAssignableFrom(clazz) || Map.class.isAssignableFrom(clazz);
+    }
+
+    static boolean isPrimitiveOrWrapper(Class<?> clazz) {
+        return clazz.isPrimitive() || clazz.equals(String.class) ||
+                clazz.equals(Integer.class) || clazz.equals(Long.class) ||
+                clazz.equals(Double.class) || clazz.equals(Float.class) ||
+                clazz.equals(Boolean.class) || clazz.equals(Character.class) ||
+                clazz.equals(Byte.class) || clazz.equals(Short.class);
+    }
+}
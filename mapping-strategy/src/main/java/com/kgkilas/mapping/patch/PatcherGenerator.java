@@ -0,0 +1,211 @@
+package com.kgkilas.mapping.patch;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.asm.ClassWriter;
+import org.springframework.asm.Label;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.Type;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Objects;
+
+/**
+ * Generates a {@link GeneratedPatcher} for a {@link PatchPlan} as a hidden class nested in the target type.
+ * The generated code is equivalent to a hand-written patch method: primitive and simple fields are copied
+ * with plain getfield/putfield instructions, everything else is delegated to a {@link PatchCallback}.
+ */
+final class PatcherGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(PatcherGenerator.class);
+
+    private static final String PATCHER = Type.getInternalName(GeneratedPatcher.class);
+    private static final String CALLBACK = Type.getInternalName(PatchCallback.class);
+    private static final String PATCH_DESCRIPTOR = "(Ljava/lang/Object;Ljava/lang/Object;L" + CALLBACK + ";)V";
+    private static final String CALLBACK_DESCRIPTOR = "(ILjava/lang/Object;Ljava/lang/Object;)V";
+
+    private static final int UPDATE = 1;
+    private static final int EXISTING = 2;
+    private static final int CALLBACK_ARG = 3;
+    private static final int TYPED_UPDATE = 4;
+    private static final int TYPED_EXISTING = 5;
+    private static final int VALUE = 6;
+
+    private PatcherGenerator() {
+    }
+
+    /**
+     * Generates a patcher for the given plan.
+     *
+     * @param plan the plan to generate the patcher for
+     * @return the patcher, or null if the plan cannot be compiled to direct field accesses
+     */
+    static GeneratedPatcher tryGenerate(PatchPlan plan) {
+        Class<?> sourceType = plan.getSourceType();
+        Class<?> targetType = plan.getTargetType();
+        String reason = unsupportedReason(plan);
+        if (reason != null) {
+            logger.info("Cannot generate patcher {} -> {}: {}, falling back to handles",
+                    sourceType.getName(), targetType.getName(), reason);
+            return null;
+        }
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(targetType, MethodHandles.lookup());
+            byte[] bytes = generate(plan, Type.getInternalName(targetType) + "$$Patcher");
+            MethodHandles.Lookup patcherLookup = lookup.defineHiddenClass(bytes, true,
+                    MethodHandles.Lookup.ClassOption.NESTMATE);
+            return (GeneratedPatcher) patcherLookup
+                    .findConstructor(patcherLookup.lookupClass(), MethodType.methodType(void.class))
+                    .invoke();
+        } catch (Throwable e) {
+            logger.warn("Failed to generate patcher {} -> {}, falling back to handles",
+                    sourceType.getName(), targetType.getName(), e);
+            return null;
+        }
+    }
+
+    private static String unsupportedReason(PatchPlan plan) {
+        Class<?> sourceType = plan.getSourceType();
+        Class<?> targetType = plan.getTargetType();
+        if (!isVisible(sourceType, targetType) || !isVisible(GeneratedPatcher.class, targetType)) {
+            return "types are not visible from the target class loader";
+        }
+        if (!isClassAccessible(sourceType, targetType) || !isClassAccessible(targetType, targetType)) {
+            return "types are not accessible from the target package";
+        }
+        for (PatchField field : plan.getPatchableFields()) {
+            Field targetField = field.getTargetField();
+            if (Modifier.isFinal(targetField.getModifiers())) {
+                return "field '" + field.getName() + "' is final";
+            }
+            if (!isFieldAccessible(field.getSourceField(), targetType) || !isFieldAccessible(targetField, targetType)) {
+                return "field '" + field.getName() + "' is not accessible";
+            }
+            if (field.isPrimitive() && field.getSourceField().getType() != targetField.getType()) {
+                return "primitive field '" + field.getName() + "' changes type";
+            }
+        }
+        return null;
+    }
+
+    private static boolean isVisible(Class<?> type, Class<?> host) {
+        try {
+            return Class.forName(type.getName(), false, host.getClassLoader()) == type;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    private static boolean isClassAccessible(Class<?> type, Class<?> host) {
+        return Modifier.isPublic(type.getModifiers()) || isSameRuntimePackage(type, host);
+    }
+
+    private static boolean isFieldAccessible(Field field, Class<?> host) {
+        Class<?> declaringClass = field.getDeclaringClass();
+        int modifiers = field.getModifiers();
+        if (Modifier.isPrivate(modifiers)) {
+            return declaringClass.getNestHost() == host.getNestHost();
+        }
+        if (Modifier.isPublic(modifiers) && Modifier.isPublic(declaringClass.getModifiers())) {
+            return true;
+        }
+        return isSameRuntimePackage(declaringClass, host);
+    }
+
+    private static boolean isSameRuntimePackage(Class<?> type, Class<?> host) {
+        return type.getPackageName().equals(host.getPackageName())
+                && Objects.equals(type.getClassLoader(), host.getClassLoader());
+    }
+
+    private static byte[] generate(PatchPlan plan, String className) {
+        ClassWriter writer = new ClassWriter(ClassWriter.COMPUTE_FRAMES | ClassWriter.COMPUTE_MAXS) {
+            @Override
+            protected String getCommonSuperClass(String type1, String type2) {
+                // Merged locals are always reassigned before use, so Object is a safe common type.
+                return "java/lang/Object";
+            }
+        };
+        writer.visit(Opcodes.V17, Opcodes.ACC_FINAL | Opcodes.ACC_SUPER, className, null,
+                "java/lang/Object", new String[]{PATCHER});
+
+        MethodVisitor constructor = writer.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        constructor.visitCode();
+        constructor.visitVarInsn(Opcodes.ALOAD, 0);
+        constructor.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        constructor.visitInsn(Opcodes.RETURN);
+        constructor.visitMaxs(0, 0);
+        constructor.visitEnd();
+
+        String sourceName = Type.getInternalName(plan.getSourceType());
+        String targetName = Type.getInternalName(plan.getTargetType());
+        MethodVisitor patch = writer.visitMethod(Opcodes.ACC_PUBLIC, "patch", PATCH_DESCRIPTOR, null, null);
+        patch.visitCode();
+        patch.visitVarInsn(Opcodes.ALOAD, UPDATE);
+        patch.visitTypeInsn(Opcodes.CHECKCAST, sourceName);
+        patch.visitVarInsn(Opcodes.ASTORE, TYPED_UPDATE);
+        patch.visitVarInsn(Opcodes.ALOAD, EXISTING);
+        patch.visitTypeInsn(Opcodes.CHECKCAST, targetName);
+        patch.visitVarInsn(Opcodes.ASTORE, TYPED_EXISTING);
+        for (PatchField field : plan.getPatchableFields()) {
+            if (field.isPrimitive()) {
+                emitPrimitiveCopy(patch, field);
+            } else {
+                emitReferenceCopy(patch, field);
+            }
+        }
+        patch.visitInsn(Opcodes.RETURN);
+        patch.visitMaxs(0, 0);
+        patch.visitEnd();
+
+        writer.visitEnd();
+        return writer.toByteArray();
+    }
+
+    private static void emitPrimitiveCopy(MethodVisitor patch, PatchField field) {
+        patch.visitVarInsn(Opcodes.ALOAD, TYPED_EXISTING);
+        patch.visitVarInsn(Opcodes.ALOAD, TYPED_UPDATE);
+        emitFieldInsn(patch, Opcodes.GETFIELD, field.getSourceField());
+        emitFieldInsn(patch, Opcodes.PUTFIELD, field.getTargetField());
+    }
+
+    private static void emitReferenceCopy(MethodVisitor patch, PatchField field) {
+        Label isNull = new Label();
+        Label end = new Label();
+        patch.visitVarInsn(Opcodes.ALOAD, TYPED_UPDATE);
+        emitFieldInsn(patch, Opcodes.GETFIELD, field.getSourceField());
+        patch.visitVarInsn(Opcodes.ASTORE, VALUE);
+        patch.visitVarInsn(Opcodes.ALOAD, VALUE);
+        patch.visitJumpInsn(Opcodes.IFNULL, isNull);
+
+        Field targetField = field.getTargetField();
+        boolean assignable = targetField.getType().isAssignableFrom(field.getSourceField().getType());
+        if (field.getValueKind() == PatchField.ValueKind.SIMPLE && assignable) {
+            patch.visitVarInsn(Opcodes.ALOAD, TYPED_EXISTING);
+            patch.visitVarInsn(Opcodes.ALOAD, VALUE);
+            emitFieldInsn(patch, Opcodes.PUTFIELD, targetField);
+        } else {
+            emitCallback(patch, "onValue", field.getOrdinal(), VALUE);
+        }
+        patch.visitJumpInsn(Opcodes.GOTO, end);
+
+        patch.visitLabel(isNull);
+        emitCallback(patch, "onNull", field.getOrdinal(), UPDATE);
+        patch.visitLabel(end);
+    }
+
+    private static void emitCallback(MethodVisitor patch, String method, int ordinal, int argument) {
+        patch.visitVarInsn(Opcodes.ALOAD, CALLBACK_ARG);
+        patch.visitLdcInsn(ordinal);
+        patch.visitVarInsn(Opcodes.ALOAD, argument);
+        patch.visitVarInsn(Opcodes.ALOAD, EXISTING);
+        patch.visitMethodInsn(Opcodes.INVOKEINTERFACE, CALLBACK, method, CALLBACK_DESCRIPTOR, true);
+    }
+
+    private static void emitFieldInsn(MethodVisitor patch, int opcode, Field field) {
+        patch.visitFieldInsn(opcode, Type.getInternalName(field.getDeclaringClass()), field.getName(),
+                Type.getDescriptor(field.getType()));
+    }
+}
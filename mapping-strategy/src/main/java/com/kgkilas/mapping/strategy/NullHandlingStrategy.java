@@ -0,0 +1,23 @@
+package com.kgkilas.mapping.strategy;
+
+import com.kgkilas.mapping.patch.PatchField;
+
+import java.lang.reflect.Field;
+
+// Null Handling Strategies
+public interface NullHandlingStrategy {
+    void handle(Field field, Object updateDTO, Object existingDTO) throws IllegalAccessException, NoSuchFieldException;
+
+    /**
+     * Handles a null value using the pre-resolved field of a patch plan.
+     * Defaults to {@link #handle(Field, Object, Object)}; implementations should override it
+     * to use the field's accessors and avoid reflective lookups.
+     *
+     * @param field       the patch plan field whose value is null in updateDTO
+     * @param updateDTO   the DTO with updated values
+     * @param existingDTO the existing DTO being patched
+     */
+    default void handle(PatchField field, Object updateDTO, Object existingDTO) throws IllegalAccessException, NoSuchFieldException {
+        handle(field.getSourceField(), updateDTO, existingDTO);
+    }
+}
@@ -0,0 +1,23 @@
+package com.kgkilas.mapping.strategy;
+
+import com.kgkilas.mapping.patch.PatchField;
+import com.kgkilas.mapping.patch.PatchPlan;
+
+import java.lang.reflect.Field;
+
+public class SetToNullStrategy implements NullHandlingStrategy {
+    @Override
+    public void handle(Field field, Object updateDTO, Object existingDTO) throws IllegalAccessException, NoSuchFieldException {
+        Field existingDTOField = PatchPlan.findField(existingDTO.getClass(), field.getName());
+        if (existingDTOField == null) {
+            throw new NoSuchFieldException(field.getName());
+        }
+        existingDTOField.setAccessible(true);
+        existingDTOField.set(existingDTO, null);
+    }
+
+    @Override
+    public void handle(PatchField field, Object updateDTO, Object existingDTO) {
+        field.getTargetAccessor().set(existingDTO, null);
+    }
+}
@@ -1,5 +1,7 @@
 package com.kgkilas.mapping.strategy;
 
+import com.kgkilas.mapping.patch.PatchField;
+
 import java.lang.reflect.Field;
 
 public class SkipNullStrategy implements NullHandlingStrategy {
@@ -7,4 +9,9 @@ public class SkipNullStrategy implements NullHandlingStrategy {
     public void handle(Field field, Object updateDTO, Object existingDTO) {
         // Do nothing, skip null fields
     }
+
+    @Override
+    public void handle(PatchField field, Object updateDTO, Object existingDTO) {
+        // Do nothing, skip null fields
+    }
 }
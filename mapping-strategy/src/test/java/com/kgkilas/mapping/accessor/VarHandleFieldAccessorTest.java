@@ -0,0 +1,65 @@
+package com.kgkilas.mapping.accessor;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class VarHandleFieldAccessorTest {
+
+    static class Sample {
+        private String name;
+        private int count;
+    }
+
+    private static VarHandleFieldAccessor accessor(String name) throws ReflectiveOperationException {
+        return VarHandleFieldAccessor.of(Sample.class.getDeclaredField(name));
+    }
+
+    @Test
+    void bindsEachHandleInItsOwnHiddenClass() throws ReflectiveOperationException {
+        VarHandleFieldAccessor name = accessor("name");
+        VarHandleFieldAccessor count = accessor("count");
+
+        assertThat(name.getClass().isHidden()).isTrue();
+        assertThat(name.getClass()).isNotEqualTo(count.getClass());
+        assertThat(name.getName()).isEqualTo("name");
+        assertThat(count.getType()).isEqualTo(int.class);
+    }
+
+    @Test
+    void readsAndWritesThroughTheConstantHandle() throws ReflectiveOperationException {
+        VarHandleFieldAccessor name = accessor("name");
+        VarHandleFieldAccessor count = accessor("count");
+        Sample sample = new Sample();
+
+        name.set(sample, "first");
+        count.set(sample, 3);
+
+        assertThat(sample.name).isEqualTo("first");
+        assertThat(name.get(sample)).isEqualTo("first");
+        assertThat(count.get(sample)).isEqualTo(3);
+    }
+
+    @Test
+    void rejectsNullAndMismatchedValues() throws ReflectiveOperationException {
+        VarHandleFieldAccessor name = accessor("name");
+        VarHandleFieldAccessor count = accessor("count");
+        Sample sample = new Sample();
+
+        assertThatThrownBy(() -> count.set(sample, null)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> name.set(sample, 7)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void copiesPrimitivesBetweenAccessors() throws ReflectiveOperationException {
+        VarHandleFieldAccessor count = accessor("count");
+        Sample source = new Sample();
+        source.count = 42;
+        Sample target = new Sample();
+
+        count.copyTo(source, accessor("count"), target);
+
+        assertThat(target.count).isEqualTo(42);
+    }
+}
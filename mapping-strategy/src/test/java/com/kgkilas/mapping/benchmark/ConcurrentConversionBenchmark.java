@@ -0,0 +1,91 @@
+package com.kgkilas.mapping.benchmark;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Converts 200 entities whose getter blocks for a given time, standing in for a lazy load, with
+ * {@code toDTOConcurrently} and with the sequential {@code toDTO(List)}. Without blocking, the concurrent
+ * conversion only adds the cost of its tasks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentConversionBenchmark {
+
+    static final int ENTITIES = 200;
+
+    public static class Entity {
+        long loadNanos;
+        String name;
+
+        public String getName() {
+            if (loadNanos > 0) {
+                LockSupport.parkNanos(loadNanos);
+            }
+            return name;
+        }
+    }
+
+    public static class Dto {
+        String name;
+
+        public void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Param({"0", "100"})
+    int loadMicros;
+
+    private GenericMapper<Entity, Dto> mapper;
+    private List<Entity> entities;
+
+    @Setup
+    public void setUp() {
+        mapper = new GenericMapper<>(new ModelMapper(), Entity.class, Dto.class);
+        entities = new ArrayList<>(ENTITIES);
+        for (int i = 0; i < ENTITIES; i++) {
+            Entity entity = new Entity();
+            entity.loadNanos = TimeUnit.MICROSECONDS.toNanos(loadMicros);
+            entity.name = "entity" + i;
+            entities.add(entity);
+        }
+    }
+
+    @Benchmark
+    public List<Dto> sequential() {
+        return mapper.toDTO(entities);
+    }
+
+    @Benchmark
+    public List<Dto> concurrently() {
+        return mapper.toDTOConcurrently(entities);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ConcurrentConversionBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,148 @@
+package com.kgkilas.mapping.benchmark;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.annotation.IgnoreField;
+import com.kgkilas.mapping.mapper.GenericMapper;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of patching a DTO with ten fields and a nested object: {@code reflective} is the patch as it was
+ * before patch plans, re-resolving every field by reflection on each call; {@code planned} is
+ * {@link GenericMapper#patch(Object, Object, List)} with its cached plans, per access mode.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchPlanBenchmark {
+
+    public static class AddressDto {
+        String street;
+        String city;
+        String zip;
+    }
+
+    public static class CustomerDto {
+        Long id;
+        String firstName;
+        String lastName;
+        String email;
+        String phone;
+        Integer age;
+        Boolean active;
+        Double rating;
+        @IgnoreField
+        String password;
+        AddressDto address;
+    }
+
+    private static final List<String> NULL_FIELDS = List.of("phone");
+
+    @Param({"REFLECTION", "HANDLES", "GENERATED"})
+    AccessMode accessMode;
+
+    private GenericMapper<CustomerDto, CustomerDto> mapper;
+    private CustomerDto update;
+    private CustomerDto existing;
+
+    @Setup
+    public void setUp() {
+        mapper = new GenericMapper<>(new ModelMapper(), CustomerDto.class, CustomerDto.class);
+        mapper.setAccessMode(accessMode);
+        update = customer("new");
+        update.phone = null;
+        existing = customer("old");
+    }
+
+    @Benchmark
+    public CustomerDto reflective() throws ReflectiveOperationException {
+        ReflectivePatch.patch(update, existing, NULL_FIELDS);
+        return existing;
+    }
+
+    @Benchmark
+    public CustomerDto planned() {
+        mapper.patch(update, existing, NULL_FIELDS);
+        return existing;
+    }
+
+    private static CustomerDto customer(String prefix) {
+        CustomerDto customer = new CustomerDto();
+        customer.id = 1L;
+        customer.firstName = prefix + "First";
+        customer.lastName = prefix + "Last";
+        customer.email = prefix + "@example.com";
+        customer.phone = prefix + "Phone";
+        customer.age = 42;
+        customer.active = true;
+        customer.rating = 4.5;
+        customer.password = prefix + "Secret";
+        customer.address = new AddressDto();
+        customer.address.street = prefix + "Street";
+        customer.address.city = prefix + "City";
+        customer.address.zip = prefix + "Zip";
+        return customer;
+    }
+
+    /**
+     * The patch before patch plans, without its logging: every call lists the declared fields, opens them,
+     * checks the ignore annotation and looks the target field up by name.
+     */
+    static final class ReflectivePatch {
+
+        static void patch(Object updateDTO, Object existingDTO, List<String> nullFieldsNames)
+                throws ReflectiveOperationException {
+            for (Field field : updateDTO.getClass().getDeclaredFields()) {
+                field.setAccessible(true);
+                if (field.isAnnotationPresent(IgnoreField.class)) {
+                    continue;
+                }
+                Object value = field.get(updateDTO);
+                Field existingDTOField = existingDTO.getClass().getDeclaredField(field.getName());
+                existingDTOField.setAccessible(true);
+                if (value != null) {
+                    Object existingValue = existingDTOField.get(existingDTO);
+                    if (!isPrimitiveOrWrapper(value.getClass()) && existingValue != null) {
+                        patch(value, existingValue, nullFieldsNames);
+                    } else {
+                        existingDTOField.set(existingDTO, value);
+                    }
+                } else if (nullFieldsNames != null && nullFieldsNames.contains(field.getName())) {
+                    existingDTOField.set(existingDTO, null);
+                }
+            }
+        }
+
+        private static boolean isPrimitiveOrWrapper(Class<?> clazz) {
+            return clazz.isPrimitive() || clazz.equals(String.class) ||
+                    clazz.equals(Integer.class) || clazz.equals(Long.class) ||
+                    clazz.equals(Double.class) || clazz.equals(Float.class) ||
+                    clazz.equals(Boolean.class) || clazz.equals(Character.class) ||
+                    clazz.equals(Byte.class) || clazz.equals(Short.class);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PatchPlanBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.kgkilas.mapping.benchmark;
+
+import com.kgkilas.mapping.annotation.PatchCollection;
+import com.kgkilas.mapping.mapper.GenericMapper;
+import com.kgkilas.mapping.patch.FieldMask;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patches a tree of 1000 nodes, merging the children of every node by id, either as a balanced tree of four
+ * children per node or as a single chain 1000 levels deep.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PatchTreeBenchmark {
+
+    static final int NODES = 1000;
+
+    public static class TreeNode {
+        Long id;
+        String name;
+        @PatchCollection(mode = PatchCollection.Mode.MERGE, key = "id")
+        List<TreeNode> children = new ArrayList<>();
+    }
+
+    @Param({"4", "1"})
+    int fanOut;
+
+    private GenericMapper<TreeNode, TreeNode> mapper;
+    private TreeNode update;
+    private TreeNode existing;
+
+    @Setup
+    public void setUp() {
+        mapper = new GenericMapper<>(new ModelMapper(), TreeNode.class, TreeNode.class);
+        mapper.setMaxPatchDepth(2 * NODES);
+        update = tree(fanOut, "new");
+        existing = tree(fanOut, "old");
+    }
+
+    @Benchmark
+    public TreeNode patchTree() {
+        mapper.patch(update, existing, (FieldMask) null);
+        return existing;
+    }
+
+    static TreeNode tree(int fanOut, String prefix) {
+        List<TreeNode> nodes = new ArrayList<>(NODES);
+        for (int i = 0; i < NODES; i++) {
+            TreeNode node = new TreeNode();
+            node.id = (long) i;
+            node.name = prefix + i;
+            nodes.add(node);
+            if (i > 0) {
+                nodes.get((i - 1) / fanOut).children.add(node);
+            }
+        }
+        return nodes.get(0);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PatchTreeBenchmark.class.getSimpleName()).build()).run();
+    }
+}
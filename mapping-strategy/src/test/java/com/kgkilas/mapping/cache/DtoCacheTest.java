@@ -0,0 +1,254 @@
+package com.kgkilas.mapping.cache;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DtoCacheTest {
+
+    @Entity(name = "CachedAuthor")
+    @Getter
+    @Setter
+    public static class Author {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    @Entity(name = "CachedTag")
+    @Getter
+    @Setter
+    public static class Tag {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    @Entity(name = "CachedBook")
+    @Getter
+    @Setter
+    public static class Book {
+        @Id
+        private Long id;
+        private String title;
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Author author;
+        @ManyToMany
+        private Set<Tag> tags = new HashSet<>();
+    }
+
+    @Getter
+    @Setter
+    public static class TagDto {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class BookDto {
+        private String title;
+        private String authorName;
+        private List<TagDto> tags;
+    }
+
+    private static SessionFactory sessionFactory;
+    private static DtoCache cache;
+
+    private GenericMapper<Book, BookDto> mapper;
+
+    @BeforeAll
+    static void startDatabase() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Author.class)
+                .addAnnotatedClass(Tag.class)
+                .addAnnotatedClass(Book.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:dto-cache;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .buildSessionFactory();
+        cache = new DtoCache(100);
+        cache.listenTo(sessionFactory);
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        sessionFactory.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory.getSchemaManager().truncateMappedObjects();
+        sessionFactory.inTransaction(session -> {
+            Author author = new Author();
+            author.setId(1L);
+            author.setName("before");
+            session.persist(author);
+            for (long id = 1; id <= 2; id++) {
+                Tag tag = new Tag();
+                tag.setId(id);
+                tag.setName("tag" + id);
+                session.persist(tag);
+            }
+            Book book = new Book();
+            book.setId(10L);
+            book.setTitle("title");
+            book.setAuthor(author);
+            book.getTags().add(session.getReference(Tag.class, 1L));
+            session.persist(book);
+        });
+        cache.invalidateAll();
+        mapper = new GenericMapper<>(new ModelMapper(), Book.class, BookDto.class);
+        mapper.setDtoCache(cache);
+    }
+
+    private BookDto load() {
+        return sessionFactory.fromSession(session -> mapper.toDTO(session.find(Book.class, 10L)));
+    }
+
+    @Test
+    void servesCachedDtosOfUnchangedEntities() {
+        load();
+        long hits = cache.getHitCount();
+        BookDto dto = load();
+
+        assertThat(dto.getAuthorName()).isEqualTo("before");
+        assertThat(cache.getHitCount()).isEqualTo(hits + 1);
+    }
+
+    @Test
+    void dropsDtosWhenAnAssociatedEntityChanges() {
+        load();
+        sessionFactory.inTransaction(session -> session.find(Author.class, 1L).setName("after"));
+        long hits = cache.getHitCount();
+
+        assertThat(load().getAuthorName()).isEqualTo("after");
+        assertThat(cache.getHitCount()).isEqualTo(hits);
+    }
+
+    @Test
+    void dropsDtosWhenAnEntityInACollectionChanges() {
+        load();
+        sessionFactory.inTransaction(session -> session.find(Tag.class, 1L).setName("renamed"));
+
+        assertThat(load().getTags()).extracting(TagDto::getName).containsExactly("renamed");
+    }
+
+    @Test
+    void dropsDtosWhenACollectionChanges() {
+        load();
+        sessionFactory.inTransaction(session ->
+                session.find(Book.class, 10L).getTags().add(session.getReference(Tag.class, 2L)));
+
+        assertThat(load().getTags()).extracting(TagDto::getName).containsExactlyInAnyOrder("tag1", "tag2");
+    }
+
+    @Test
+    void cachesTheDtoOfTheChangedStateAgain() {
+        load();
+        cache.invalidateAll();
+        sessionFactory.inTransaction(session -> session.find(Author.class, 1L).setName("after"));
+
+        assertThat(cache.size()).isZero();
+        assertThat(load().getAuthorName()).isEqualTo("after");
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotServeCachedDtosOfEntitiesChangedInTheirSession() {
+        load();
+
+        BookDto dto = sessionFactory.fromSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            book.setTitle("changed");
+            return mapper.toDTO(book);
+        });
+        BookDto renamed = sessionFactory.fromSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            book.getAuthor().setName("renamed");
+            return mapper.toDTO(book);
+        });
+
+        assertThat(dto.getTitle()).isEqualTo("changed");
+        assertThat(renamed.getAuthorName()).isEqualTo("renamed");
+        assertThat(load().getTitle()).isEqualTo("title");
+    }
+
+    @Test
+    void doesNotCacheUnflushedStatesOfRolledBackTransactions() {
+        sessionFactory.inSession(session -> {
+            session.beginTransaction();
+            Book book = session.find(Book.class, 10L);
+            book.setTitle("rolled back");
+            book.getTags().add(session.getReference(Tag.class, 2L));
+            assertThat(mapper.toDTO(book).getTitle()).isEqualTo("rolled back");
+            session.getTransaction().rollback();
+        });
+
+        assertThat(cache.size()).isZero();
+        assertThat(load().getTitle()).isEqualTo("title");
+        assertThat(load().getTags()).extracting(TagDto::getName).containsExactly("tag1");
+    }
+
+    @Test
+    void neitherServesNorCachesPartialDtos() {
+        sessionFactory.inSession(session -> mapper.toDTOLoaded(session.find(Book.class, 10L)));
+
+        assertThat(cache.size()).isZero();
+        assertThat(load().getAuthorName()).isEqualTo("before");
+        assertThat(sessionFactory.fromSession(session -> mapper.toDTOLoaded(session.find(Book.class, 10L)))
+                .getAuthorName()).isNull();
+    }
+
+    @Test
+    void doesNotOverwriteSharedCachedDtosWhenReusingOne() {
+        mapper.setCachedDtoMode(CachedDtoMode.SHARED);
+        BookDto cached = load();
+        sessionFactory.inTransaction(session -> {
+            Book other = new Book();
+            other.setId(11L);
+            other.setTitle("other");
+            session.persist(other);
+        });
+
+        sessionFactory.inSession(session -> mapper.forEachDTO(
+                List.of(session.find(Book.class, 10L), session.find(Book.class, 11L)), dto -> { }));
+
+        assertThat(cached.getTitle()).isEqualTo("title");
+        assertThat(load()).isSameAs(cached);
+    }
+
+    @Test
+    void cachesDtosOfOverriddenConversions() {
+        int[] conversions = new int[1];
+        GenericMapper<Book, BookDto> generated = new GenericMapper<>(new ModelMapper(), Book.class, BookDto.class) {
+            @Override
+            protected BookDto convertToDTO(Book entity) {
+                conversions[0]++;
+                return super.convertToDTO(entity);
+            }
+        };
+        generated.setDtoCache(cache);
+
+        sessionFactory.inSession(session -> generated.toDTO(session.find(Book.class, 10L)));
+        sessionFactory.inSession(session -> generated.toDTO(session.find(Book.class, 10L)));
+
+        assertThat(conversions[0]).isEqualTo(1);
+    }
+}
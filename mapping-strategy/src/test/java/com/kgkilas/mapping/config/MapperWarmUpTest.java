@@ -0,0 +1,68 @@
+package com.kgkilas.mapping.config;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatCode;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class MapperWarmUpTest {
+
+    @Getter
+    @Setter
+    public static class Entity {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class Dto {
+        private String name;
+        private String extra;
+    }
+
+    private static MapperWarmUp warmUp(boolean failOnUnmapped) {
+        return new MapperWarmUp(null, true, failOnUnmapped);
+    }
+
+    @Test
+    void createsSharedTypeMapsConcurrentlyWithoutConflicts() {
+        ModelMapper modelMapper = new ModelMapper();
+        List<GenericMapper<?, ?>> mappers = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            mappers.add(new GenericMapper<>(modelMapper, Entity.class, Dto.class));
+        }
+
+        assertThatCode(() -> mappers.parallelStream().forEach(GenericMapper::warmUp)).doesNotThrowAnyException();
+        assertThat(modelMapper.getTypeMap(Entity.class, Dto.class)).isNotNull();
+    }
+
+    @Test
+    void failsOnlyForUnmappedPropertiesWhenConfigured() {
+        List<GenericMapper<?, ?>> mappers = List.of(new GenericMapper<>(new ModelMapper(), Entity.class, Dto.class));
+
+        assertThatCode(() -> warmUp(false).warmUp(mappers)).doesNotThrowAnyException();
+        assertThatThrownBy(() -> warmUp(true).warmUp(mappers))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("Dto.extra");
+    }
+
+    @Test
+    void logsMappersFailingToWarmUp() {
+        GenericMapper<Entity, Entity> failing = new GenericMapper<>(new ModelMapper(), Entity.class, Entity.class) {
+            @Override
+            public List<String> warmUp() {
+                throw new IllegalStateException("broken");
+            }
+        };
+
+        assertThatCode(() -> warmUp(true).warmUp(List.of(failing))).doesNotThrowAnyException();
+    }
+}
@@ -0,0 +1,102 @@
+package com.kgkilas.mapping.json;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.strategy.SetToNullStrategy;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonMergePatcherTest {
+
+    static class Address {
+        public String city;
+        public String street;
+    }
+
+    static class Dto {
+        public String name;
+        public String nickname;
+        public Address address;
+        public List<String> tags = new ArrayList<>();
+        public Map<String, String> attrs = new LinkedHashMap<>();
+        public Map<String, Address> addresses = new LinkedHashMap<>();
+        public Map<String, Map<String, Integer>> scores = new LinkedHashMap<>();
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Dto dto;
+
+    @BeforeEach
+    void setUp() {
+        dto = new Dto();
+        dto.name = "old";
+        dto.nickname = "nick";
+        dto.address = new Address();
+        dto.address.city = "Gdansk";
+        dto.address.street = "Long";
+        dto.tags.addAll(List.of("a", "b"));
+        dto.attrs.put("a", "1");
+        dto.attrs.put("b", "2");
+        Address home = new Address();
+        home.city = "Sopot";
+        home.street = "Short";
+        dto.addresses.put("home", home);
+        dto.scores.put("math", new LinkedHashMap<>(Map.of("q1", 1)));
+    }
+
+    private void apply(String json) throws Exception {
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            new JsonMergePatcher(objectMapper, AccessMode.HANDLES, new SetToNullStrategy()).apply(parser, dto);
+        }
+    }
+
+    @Test
+    void mergesMapsKeyByKey() throws Exception {
+        apply("{\"attrs\":{\"a\":null,\"c\":\"3\"}}");
+
+        assertThat(dto.attrs).containsExactly(Map.entry("b", "2"), Map.entry("c", "3"));
+    }
+
+    @Test
+    void mergesObjectsUnderMapKeysIntoTheExistingValues() throws Exception {
+        Address home = dto.addresses.get("home");
+
+        apply("{\"addresses\":{\"home\":{\"city\":\"Gdynia\"},\"work\":{\"city\":\"Warsaw\"}},"
+                + "\"scores\":{\"math\":{\"q2\":2},\"art\":{\"q1\":5}}}");
+
+        assertThat(dto.addresses.get("home")).isSameAs(home);
+        assertThat(home.city).isEqualTo("Gdynia");
+        assertThat(home.street).isEqualTo("Short");
+        assertThat(dto.addresses.get("work").city).isEqualTo("Warsaw");
+        assertThat(dto.scores.get("math")).containsEntry("q1", 1).containsEntry("q2", 2);
+        assertThat(dto.scores.get("art")).containsExactly(Map.entry("q1", 5));
+    }
+
+    @Test
+    void mergesBeansAndReplacesOtherValues() throws Exception {
+        apply("{\"name\":\"new\",\"nickname\":null,\"address\":{\"city\":\"Warsaw\"},\"tags\":[\"x\"],\"unknown\":{}}");
+
+        assertThat(dto.name).isEqualTo("new");
+        assertThat(dto.nickname).isNull();
+        assertThat(dto.address.city).isEqualTo("Warsaw");
+        assertThat(dto.address.street).isEqualTo("Long");
+        assertThat(dto.tags).containsExactly("x");
+        assertThat(dto.attrs).containsOnlyKeys("a", "b");
+    }
+
+    @Test
+    void rejectsPatchesThatAreNotObjects() {
+        assertThatThrownBy(() -> apply("[]"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("must be an object");
+    }
+}
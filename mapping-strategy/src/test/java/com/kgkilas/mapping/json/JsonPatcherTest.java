@@ -0,0 +1,130 @@
+package com.kgkilas.mapping.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.mapper.GenericMapper;
+import jakarta.validation.constraints.NotNull;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class JsonPatcherTest {
+
+    static class Address {
+        public String city;
+    }
+
+    static class Dto {
+        public String name;
+        public String nickname;
+        public int age;
+        public Address address;
+        public List<String> tags = new ArrayList<>();
+        public Map<String, String> labels = new LinkedHashMap<>();
+    }
+
+    static class RequiredNameDto {
+        @NotNull
+        public String name;
+        public List<String> tags = new ArrayList<>();
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Dto dto;
+
+    @BeforeEach
+    void setUp() {
+        dto = new Dto();
+        dto.name = "old";
+        dto.nickname = "nick";
+        dto.age = 30;
+        dto.address = new Address();
+        dto.address.city = "Gdansk";
+        dto.tags.addAll(List.of("a", "b", "c"));
+        dto.labels.put("team", "core");
+    }
+
+    private void apply(String json) throws Exception {
+        new JsonPatcher(objectMapper, AccessMode.HANDLES).apply(JsonPatch.of(objectMapper.readTree(json)), dto);
+    }
+
+    @Test
+    void removesAndMovesBeanFieldsByWritingNull() throws Exception {
+        apply("[{\"op\":\"remove\",\"path\":\"/nickname\"},"
+                + "{\"op\":\"move\",\"from\":\"/address/city\",\"path\":\"/labels/city\"}]");
+
+        assertThat(dto.nickname).isNull();
+        assertThat(dto.address.city).isNull();
+        assertThat(dto.labels).containsEntry("city", "Gdansk");
+    }
+
+    @Test
+    void undoesEveryChangeWhenATestFails() throws Exception {
+        assertThatThrownBy(() -> apply("["
+                + "{\"op\":\"replace\",\"path\":\"/name\",\"value\":\"new\"},"
+                + "{\"op\":\"remove\",\"path\":\"/nickname\"},"
+                + "{\"op\":\"replace\",\"path\":\"/address/city\",\"value\":\"Warsaw\"},"
+                + "{\"op\":\"add\",\"path\":\"/tags/1\",\"value\":\"x\"},"
+                + "{\"op\":\"remove\",\"path\":\"/tags/0\"},"
+                + "{\"op\":\"replace\",\"path\":\"/tags/0\",\"value\":\"y\"},"
+                + "{\"op\":\"add\",\"path\":\"/tags/-\",\"value\":\"z\"},"
+                + "{\"op\":\"add\",\"path\":\"/labels/new\",\"value\":\"v\"},"
+                + "{\"op\":\"replace\",\"path\":\"/labels/team\",\"value\":\"other\"},"
+                + "{\"op\":\"move\",\"from\":\"/labels/team\",\"path\":\"/nickname\"},"
+                + "{\"op\":\"test\",\"path\":\"/age\",\"value\":31}]"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("test failed");
+
+        assertThat(dto.name).isEqualTo("old");
+        assertThat(dto.nickname).isEqualTo("nick");
+        assertThat(dto.address.city).isEqualTo("Gdansk");
+        assertThat(dto.tags).containsExactly("a", "b", "c");
+        assertThat(dto.labels).containsExactly(Map.entry("team", "core"));
+    }
+
+    @Test
+    void undoesEarlierOperationsWhenAPathIsMissing() throws Exception {
+        Address address = dto.address;
+
+        assertThatThrownBy(() -> apply("["
+                + "{\"op\":\"replace\",\"path\":\"/address\",\"value\":{\"city\":\"Warsaw\"}},"
+                + "{\"op\":\"remove\",\"path\":\"/missing\"}]"))
+                .isInstanceOf(IllegalArgumentException.class);
+
+        assertThat(dto.address).isSameAs(address);
+        assertThat(address.city).isEqualTo("Gdansk");
+    }
+
+    @Test
+    void undoesEveryChangeWhenThePatchedDtoIsInvalid() throws Exception {
+        GenericMapper<Object, RequiredNameDto> mapper =
+                new GenericMapper<>(new ModelMapper(), Object.class, RequiredNameDto.class);
+        RequiredNameDto required = new RequiredNameDto();
+        required.name = "old";
+        required.tags.add("a");
+
+        assertThatThrownBy(() -> mapper.applyJsonPatch(JsonPatch.of(objectMapper.readTree("["
+                + "{\"op\":\"add\",\"path\":\"/tags/-\",\"value\":\"b\"},"
+                + "{\"op\":\"remove\",\"path\":\"/name\"}]")), required))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("Validation failed");
+
+        assertThat(required.name).isEqualTo("old");
+        assertThat(required.tags).containsExactly("a");
+    }
+
+    @Test
+    void rejectsRemovingAPrimitive() {
+        assertThatThrownBy(() -> apply("[{\"op\":\"remove\",\"path\":\"/age\"}]"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(dto.age).isEqualTo(30);
+    }
+}
@@ -0,0 +1,110 @@
+package com.kgkilas.mapping.lazy;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LoadedGraphCopierTest {
+
+    @Entity
+    static class Tag {
+        @Id
+        Long id;
+        String name;
+
+        Tag() {
+        }
+
+        Tag(long id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Tag && Objects.equals(((Tag) other).id, id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(id);
+        }
+    }
+
+    @Entity
+    static class Post {
+        @Id
+        Long id;
+        Set<Tag> tags = new LinkedHashSet<>();
+        SortedSet<Tag> sortedTags = new TreeSet<>(Comparator.comparing(tag -> tag.name));
+        Map<Tag, Integer> votes = new LinkedHashMap<>();
+        List<Tag> ordered = new ArrayList<>();
+        Post self;
+    }
+
+    private static Post post() {
+        Post post = new Post();
+        post.id = 1L;
+        post.self = post;
+        for (long id = 1; id <= 3; id++) {
+            Tag tag = new Tag(id, "tag" + (4 - id));
+            post.tags.add(tag);
+            post.sortedTags.add(tag);
+            post.votes.put(tag, (int) id);
+            post.ordered.add(tag);
+        }
+        return post;
+    }
+
+    private static Post copy(Post post) {
+        return new LoadedGraphCopier(UnloadedPolicy.NULL, null).copy(post);
+    }
+
+    @Test
+    void keepsEveryElementOfSetsOfIdEqualEntities() {
+        Post copy = copy(post());
+
+        assertThat(copy.tags).extracting(tag -> tag.id).containsExactly(1L, 2L, 3L);
+        assertThat(copy.tags).contains(new Tag(2, null));
+    }
+
+    @Test
+    void ordersSortedSetsByTheCopiedFields() {
+        Post copy = copy(post());
+
+        assertThat(copy.sortedTags).extracting(tag -> tag.name).containsExactly("tag1", "tag2", "tag3");
+        assertThat(copy.sortedTags.comparator()).isNotNull();
+    }
+
+    @Test
+    void keysMapsByTheCopiedEntities() {
+        Post copy = copy(post());
+
+        assertThat(copy.votes).hasSize(3).containsEntry(new Tag(3, null), 3);
+        assertThat(copy.votes.keySet()).allSatisfy(tag -> assertThat(tag.name).isNotNull());
+    }
+
+    @Test
+    void sharesCopiesAcrossCollectionsAndCycles() {
+        Post original = post();
+        Post copy = copy(original);
+
+        assertThat(copy).isNotSameAs(original);
+        assertThat(copy.self).isSameAs(copy);
+        assertThat(copy.ordered).hasSize(3);
+        assertThat(copy.ordered.get(0)).isSameAs(copy.tags.iterator().next()).isNotSameAs(original.ordered.get(0));
+    }
+}
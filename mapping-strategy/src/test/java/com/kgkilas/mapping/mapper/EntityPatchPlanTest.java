@@ -0,0 +1,279 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.patch.FieldMask;
+import jakarta.persistence.CascadeType;
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.Embedded;
+import jakarta.persistence.Entity;
+import jakarta.persistence.FetchType;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.OneToMany;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EntityPatchPlanTest {
+
+    @Entity(name = "PatchAuthor")
+    @Getter
+    @Setter
+    public static class Author {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    @Embeddable
+    @Getter
+    @Setter
+    public static class Publication {
+        private String publisher;
+        private Integer edition;
+    }
+
+    @Entity(name = "PatchTag")
+    @Getter
+    @Setter
+    public static class Tag {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    @Entity(name = "PatchChapter")
+    @Getter
+    @Setter
+    public static class Chapter {
+        @Id
+        private Long id;
+        private String heading;
+    }
+
+    @Entity(name = "PatchBook")
+    @Getter
+    @Setter
+    public static class Book {
+        @Id
+        private Long id;
+        private String title;
+        @Embedded
+        private Publication publication;
+        @ManyToOne(fetch = FetchType.LAZY)
+        private Author author;
+        @ManyToMany
+        private Set<Tag> tags = new HashSet<>();
+        @OneToMany(cascade = CascadeType.ALL, orphanRemoval = true)
+        @JoinColumn(name = "book_id")
+        private List<Chapter> chapters = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class AuthorDto {
+        private Long id;
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class PublicationDto {
+        private String publisher;
+    }
+
+    @Getter
+    @Setter
+    public static class ElementDto {
+        private Long id;
+        private String name;
+        private String heading;
+
+        static ElementDto of(long id) {
+            ElementDto element = new ElementDto();
+            element.setId(id);
+            element.setName("renamed");
+            element.setHeading("renamed");
+            return element;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class BookDto {
+        private String title;
+        private PublicationDto publication;
+        private AuthorDto author;
+        private List<ElementDto> tags;
+        private List<ElementDto> chapters;
+    }
+
+    private static SessionFactory sessionFactory;
+
+    private GenericMapper<Book, BookDto> mapper;
+
+    @BeforeAll
+    static void startDatabase() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Author.class)
+                .addAnnotatedClass(Tag.class)
+                .addAnnotatedClass(Chapter.class)
+                .addAnnotatedClass(Book.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:entity-patch;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .buildSessionFactory();
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        sessionFactory.close();
+    }
+
+    @BeforeEach
+    void setUp() {
+        sessionFactory.getSchemaManager().truncateMappedObjects();
+        sessionFactory.inTransaction(session -> {
+            for (long id = 1; id <= 2; id++) {
+                Author author = new Author();
+                author.setId(id);
+                author.setName("author" + id);
+                session.persist(author);
+            }
+            for (long id = 1; id <= 3; id++) {
+                Tag tag = new Tag();
+                tag.setId(id);
+                tag.setName("tag" + id);
+                session.persist(tag);
+            }
+            Book book = new Book();
+            book.setId(10L);
+            book.setTitle("old");
+            book.setPublication(new Publication());
+            book.getPublication().setPublisher("old publisher");
+            book.getPublication().setEdition(2);
+            book.setAuthor(session.getReference(Author.class, 1L));
+            book.getTags().add(session.getReference(Tag.class, 1L));
+            book.getTags().add(session.getReference(Tag.class, 2L));
+            for (long id = 1; id <= 2; id++) {
+                Chapter chapter = new Chapter();
+                chapter.setId(id);
+                chapter.setHeading("chapter" + id);
+                book.getChapters().add(chapter);
+            }
+            session.persist(book);
+        });
+        mapper = new GenericMapper<>(new ModelMapper(), Book.class, BookDto.class);
+    }
+
+    private static BookDto update(Long authorId, String authorName) {
+        BookDto update = new BookDto();
+        update.setTitle("new");
+        update.setPublication(new PublicationDto());
+        update.getPublication().setPublisher("new publisher");
+        update.setAuthor(new AuthorDto());
+        update.getAuthor().setId(authorId);
+        update.getAuthor().setName(authorName);
+        return update;
+    }
+
+    @Test
+    void pointsTheAssociationToTheNewIdWithoutChangingAnyAuthor() {
+        sessionFactory.inTransaction(session ->
+                mapper.patchEntity(update(2L, "renamed"), session.find(Book.class, 10L), (FieldMask) null, session));
+
+        sessionFactory.inSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            assertThat(book.getTitle()).isEqualTo("new");
+            assertThat(book.getAuthor().getId()).isEqualTo(2L);
+            assertThat(session.find(Author.class, 1L).getName()).isEqualTo("author1");
+            assertThat(session.find(Author.class, 2L).getName()).isEqualTo("author2");
+        });
+    }
+
+    @Test
+    void writesIntoEmbeddedObjects() {
+        sessionFactory.inTransaction(session ->
+                mapper.patchEntity(update(1L, "renamed"), session.find(Book.class, 10L), (FieldMask) null, session));
+
+        sessionFactory.inSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            assertThat(book.getPublication().getPublisher()).isEqualTo("new publisher");
+            assertThat(book.getPublication().getEdition()).isEqualTo(2);
+            assertThat(book.getAuthor().getId()).isEqualTo(1L);
+            assertThat(session.find(Author.class, 1L).getName()).isEqualTo("author1");
+        });
+    }
+
+    @Test
+    void leavesAssociationsAloneWithoutEntityManager() {
+        sessionFactory.inTransaction(session ->
+                mapper.patchEntity(update(2L, "renamed"), session.find(Book.class, 10L), List.of()));
+
+        sessionFactory.inSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            assertThat(book.getTitle()).isEqualTo("new");
+            assertThat(book.getAuthor().getId()).isEqualTo(1L);
+            assertThat(session.find(Author.class, 1L).getName()).isEqualTo("author1");
+        });
+    }
+
+    @Test
+    void clearsTheAssociationWhenSelectedByTheMask() {
+        FieldMask mask = FieldMask.builder(BookDto.class).nested("author", author -> author.select("id")).build();
+
+        sessionFactory.inTransaction(session ->
+                mapper.patchEntity(update(null, null), session.find(Book.class, 10L), mask, session));
+
+        sessionFactory.inSession(session -> assertThat(session.find(Book.class, 10L).getAuthor()).isNull());
+    }
+
+    @Test
+    void mergesCollectionsOfEntitiesById() {
+        BookDto update = update(1L, null);
+        update.setTags(List.of(ElementDto.of(2), ElementDto.of(3)));
+        sessionFactory.inTransaction(session -> {
+            Book book = session.find(Book.class, 10L);
+            Tag kept = session.find(Tag.class, 2L);
+            Set<Tag> tags = book.getTags();
+
+            mapper.patchEntity(update, book, (FieldMask) null, session);
+
+            assertThat(book.getTags()).isSameAs(tags).contains(kept);
+        });
+
+        sessionFactory.inSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            assertThat(book.getTags()).extracting(Tag::getId).containsExactlyInAnyOrder(2L, 3L);
+            assertThat(book.getTags()).extracting(Tag::getName).containsExactlyInAnyOrder("tag2", "tag3");
+        });
+    }
+
+    @Test
+    void removesOrphansOfMergedCollections() {
+        BookDto update = update(1L, null);
+        update.setChapters(List.of(ElementDto.of(1)));
+
+        sessionFactory.inTransaction(session ->
+                mapper.patchEntity(update, session.find(Book.class, 10L), (FieldMask) null, session));
+
+        sessionFactory.inSession(session -> {
+            Book book = session.find(Book.class, 10L);
+            assertThat(book.getChapters()).extracting(Chapter::getHeading).containsExactly("chapter1");
+            assertThat(session.find(Chapter.class, 2L)).isNull();
+        });
+    }
+}
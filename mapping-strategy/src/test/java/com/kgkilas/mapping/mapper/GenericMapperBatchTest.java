@@ -0,0 +1,376 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.annotation.PatchCollection;
+import com.kgkilas.mapping.batch.BatchFailure;
+import com.kgkilas.mapping.batch.BatchResult;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.AssertTrue;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenericMapperBatchTest {
+
+    public static class Item {
+        static final Set<Thread> readers = ConcurrentHashMap.newKeySet();
+
+        @Setter
+        private String name;
+
+        public String getName() {
+            readers.add(Thread.currentThread());
+            return name;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class ItemDto {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class RequiredNameDto {
+        @NotNull
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class Author {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class Book {
+        private String title;
+        private Author author;
+        private List<String> tags = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class AuthorDto {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class BookDto {
+        private String title;
+        private AuthorDto author;
+        private List<String> tags;
+    }
+
+    @Getter
+    @Setter
+    public static class Writer {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class Novel {
+        private String title;
+        private Writer writer;
+    }
+
+    @Getter
+    @Setter
+    public static class WriterDto {
+        static final AtomicInteger instances = new AtomicInteger();
+        static final AtomicInteger validations = new AtomicInteger();
+
+        private String name;
+
+        public WriterDto() {
+            instances.incrementAndGet();
+        }
+
+        @AssertTrue
+        public boolean isNamed() {
+            validations.incrementAndGet();
+            return name != null;
+        }
+    }
+
+    @Getter
+    @Setter
+    public static class NovelDto {
+        private String title;
+        @Valid
+        private WriterDto writer;
+    }
+
+    @Getter
+    @Setter
+    public static class AccountDto {
+        private String id;
+        private String owner;
+        @PatchCollection(mode = PatchCollection.Mode.APPEND)
+        private List<String> history = new ArrayList<>();
+    }
+
+    private final GenericMapper<Item, ItemDto> mapper = new GenericMapper<>(new ModelMapper(), Item.class, ItemDto.class);
+
+    private static List<Item> items(int count, String name) {
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Item item = new Item();
+            item.setName(name + i);
+            items.add(item);
+        }
+        return items;
+    }
+
+    private static Book book(String title, String author, String... tags) {
+        Book book = new Book();
+        book.setTitle(title);
+        if (author != null) {
+            book.setAuthor(new Author());
+            book.getAuthor().setName(author);
+        }
+        book.getTags().addAll(List.of(tags));
+        return book;
+    }
+
+    @Test
+    void convertsIntoReusedDtosAsIntoNewOnes() {
+        GenericMapper<Book, BookDto> books = new GenericMapper<>(new ModelMapper(), Book.class, BookDto.class);
+        Book anonymous = book("second", null, "z");
+        BookDto reused = books.toDTO(book("first", "Lem", "x", "y"));
+        AuthorDto kept = reused.getAuthor();
+
+        books.toDTO(anonymous, reused);
+
+        assertThat(reused).usingRecursiveComparison().isEqualTo(books.toDTO(anonymous));
+        assertThat(reused.getAuthor()).isNull();
+        assertThat(kept.getName()).isEqualTo("Lem");
+
+        books.toDTO(book("third", "Dukaj"), reused);
+
+        assertThat(reused.getAuthor()).isNotSameAs(kept);
+        assertThat(reused.getAuthor().getName()).isEqualTo("Dukaj");
+        assertThat(reused.getTags()).isEmpty();
+    }
+
+    @Test
+    void convertsEachEntityOfABulkLoopAsOnItsOwn() {
+        GenericMapper<Book, BookDto> books = new GenericMapper<>(new ModelMapper(), Book.class, BookDto.class);
+        List<Book> entities = List.of(book("first", "Lem", "x"), book("second", null), book("third", "Dukaj", "y", "z"));
+        List<String> converted = new ArrayList<>();
+
+        books.forEachDTO(entities, dto -> converted.add(dto.getTitle() + "/"
+                + (dto.getAuthor() == null ? null : dto.getAuthor().getName()) + "/" + dto.getTags()));
+
+        assertThat(converted).containsExactly("first/Lem/[x]", "second/null/[]", "third/Dukaj/[y, z]");
+    }
+
+    @Test
+    void convertsAndValidatesASharedSourceOnceWithoutChangingTheTypeMap() {
+        ModelMapper modelMapper = new ModelMapper();
+        GenericMapper<Novel, NovelDto> first = new GenericMapper<>(modelMapper, Novel.class, NovelDto.class);
+        GenericMapper<Novel, NovelDto> second = new GenericMapper<>(modelMapper, Novel.class, NovelDto.class);
+        Writer writer = new Writer();
+        writer.setName("Lem");
+
+        for (GenericMapper<Novel, NovelDto> novels : List.of(first, second)) {
+            BatchMappingContext context = new BatchMappingContext();
+            WriterDto.instances.set(0);
+            WriterDto.validations.set(0);
+            List<NovelDto> dtos = new ArrayList<>();
+            for (String title : List.of("Solaris", "Eden", "Fiasco")) {
+                Novel novel = new Novel();
+                novel.setTitle(title);
+                novel.setWriter(writer);
+                dtos.add(novels.toDTO(novel, context));
+            }
+
+            assertThat(dtos).extracting(NovelDto::getTitle).containsExactly("Solaris", "Eden", "Fiasco");
+            assertThat(dtos.get(0).getWriter().getName()).isEqualTo("Lem");
+            assertThat(dtos.get(1).getWriter()).isSameAs(dtos.get(0).getWriter());
+            assertThat(dtos.get(2).getWriter()).isSameAs(dtos.get(0).getWriter());
+            assertThat(context.getReusedCount()).isEqualTo(2);
+            assertThat(WriterDto.instances).hasValue(1);
+            assertThat(WriterDto.validations).hasValue(1);
+        }
+        assertThat(modelMapper.getTypeMap(Novel.class, NovelDto.class).getPropertyCondition()).isNull();
+    }
+
+    private static AccountDto account(String id, String owner, String... history) {
+        AccountDto account = new AccountDto();
+        account.setId(id);
+        account.setOwner(owner);
+        account.getHistory().addAll(List.of(history));
+        return account;
+    }
+
+    @Test
+    void patchesEveryExistingDtoWithTheUpdateOfItsId() {
+        GenericMapper<Object, AccountDto> accounts = new GenericMapper<>(new ModelMapper(), Object.class, AccountDto.class);
+        AccountDto first = account("1", "Lem");
+        AccountDto second = account("2", "Dukaj");
+        Map<String, AccountDto> existing = Map.of("1", first, "2", second);
+
+        BatchResult<AccountDto> result = accounts.patchAll(List.of(account("2", "Sapkowski"), account("1", null)),
+                existing, AccountDto::getId, List.of());
+
+        assertThat(result.isSuccessful()).isTrue();
+        assertThat(result.getResults()).containsExactly(second, first);
+        assertThat(second.getOwner()).isEqualTo("Sapkowski");
+        assertThat(first.getOwner()).isEqualTo("Lem");
+    }
+
+    @Test
+    void appliesUpdatesOfTheSameIdInInputOrder() {
+        GenericMapper<Object, AccountDto> accounts = new GenericMapper<>(new ModelMapper(), Object.class, AccountDto.class);
+        accounts.setParallelThreshold(2);
+        accounts.setBatchChunkSize(1);
+        Map<String, AccountDto> existing = new HashMap<>();
+        List<AccountDto> updates = new ArrayList<>();
+        for (int id = 0; id < 8; id++) {
+            existing.put(String.valueOf(id), account(String.valueOf(id), "owner"));
+        }
+        for (int step = 0; step < 50; step++) {
+            for (int id = 0; id < 8; id++) {
+                updates.add(account(String.valueOf(id), null, "step" + step));
+            }
+        }
+
+        BatchResult<AccountDto> result = accounts.patchAll(updates, existing, AccountDto::getId, null,
+                Executors.newFixedThreadPool(4));
+
+        assertThat(result.getSuccessCount()).isEqualTo(400);
+        for (AccountDto account : existing.values()) {
+            assertThat(account.getHistory()).hasSize(50).startsWith("step0", "step1").endsWith("step48", "step49");
+            assertThat(account.getHistory()).isSortedAccordingTo(
+                    Comparator.comparingInt(step -> Integer.parseInt(step.substring(4))));
+        }
+    }
+
+    @Test
+    void reportsFailedUpdatesWithoutAbortingTheBatch() {
+        GenericMapper<Object, AccountDto> accounts = new GenericMapper<>(new ModelMapper(), Object.class, AccountDto.class);
+        AccountDto first = account("1", "Lem");
+        Map<String, AccountDto> existing = Map.of("1", first);
+        Function<AccountDto, String> idAccessor = update -> {
+            if ("broken".equals(update.getOwner())) {
+                throw new IllegalStateException("no id");
+            }
+            return update.getId();
+        };
+
+        BatchResult<AccountDto> result = accounts.patchAll(
+                List.of(account("9", "Tokarczuk"), account("1", "broken"), account("1", "Sapkowski")),
+                existing, idAccessor, List.of());
+
+        assertThat(result.getResults()).containsExactly(null, null, first);
+        assertThat(first.getOwner()).isEqualTo("Sapkowski");
+        assertThat(result.getFailures()).extracting(BatchFailure::getIndex).containsExactly(0, 1);
+        assertThat(result.getFailures().get(0).getKey()).isEqualTo("9");
+        assertThat(result.getFailures().get(0).getError())
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("No existing DTO with id '9'");
+        assertThat(result.getFailures().get(1).getError()).hasMessage("no id");
+    }
+
+    @Test
+    void convertsStreamedEntitiesOnlyWhenConsumed() {
+        List<Item> seen = new ArrayList<>();
+
+        Stream<ItemDto> dtos = mapper.toDTOStream(items(5, "item").stream(), seen::add);
+
+        assertThat(seen).isEmpty();
+        assertThat(dtos.limit(2).map(ItemDto::getName).toList()).containsExactly("item0", "item1");
+        assertThat(seen).extracting(Item::getName).containsExactly("item0", "item1");
+    }
+
+    @Test
+    void passesEntitiesFailingToConvertToAfterEach() {
+        GenericMapper<Item, RequiredNameDto> validating =
+                new GenericMapper<>(new ModelMapper(), Item.class, RequiredNameDto.class);
+        List<Item> entities = items(3, "item");
+        entities.get(1).setName(null);
+        List<Item> seen = new ArrayList<>();
+
+        assertThatThrownBy(() -> validating.toDTOStream(entities.stream(), seen::add).toList())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(seen).containsExactly(entities.get(0), entities.get(1));
+    }
+
+    @Test
+    void closesTheEntityStreamWithTheDtoStream() {
+        AtomicBoolean closed = new AtomicBoolean();
+
+        try (Stream<ItemDto> dtos = mapper.toDTOStream(items(3, "item").stream().onClose(() -> closed.set(true)))) {
+            assertThat(dtos.findFirst()).get().extracting(ItemDto::getName).isEqualTo("item0");
+            assertThat(closed).isFalse();
+        }
+
+        assertThat(closed).isTrue();
+    }
+
+    @Test
+    void convertsListsInTheCallingThreadAboveTheParallelThreshold() {
+        mapper.setParallelThreshold(2);
+        mapper.setBatchChunkSize(1);
+        Item.readers.clear();
+
+        List<ItemDto> dtos = mapper.toDTO(items(100, "item"));
+
+        assertThat(dtos).hasSize(100);
+        assertThat(dtos.get(99).getName()).isEqualTo("item99");
+        assertThat(Item.readers).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    void rethrowsErrorsOfConcurrentConversions() {
+        GenericMapper<Item, ItemDto> failing = new GenericMapper<>(new ModelMapper(), Item.class, ItemDto.class) {
+            @Override
+            public ItemDto toDTO(Item entity) {
+                if ("item5".equals(entity.getName())) {
+                    throw new AssertionError("broken item");
+                }
+                return super.toDTO(entity);
+            }
+        };
+
+        assertThatThrownBy(() -> failing.toDTOConcurrently(items(10, "item"), 4, Executors.newCachedThreadPool()))
+                .isInstanceOf(AssertionError.class)
+                .hasMessage("broken item");
+    }
+
+    @Test
+    void recordsOnlyValidDtosInTheBatchContext() {
+        GenericMapper<Item, RequiredNameDto> validating =
+                new GenericMapper<>(new ModelMapper(), Item.class, RequiredNameDto.class);
+        BatchMappingContext context = new BatchMappingContext();
+        Item item = new Item();
+
+        assertThatThrownBy(() -> validating.toDTO(item, context)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(context.get(item, RequiredNameDto.class)).isNull();
+
+        item.setName("fixed");
+        assertThat(validating.toDTO(item, context).getName()).isEqualTo("fixed");
+    }
+}
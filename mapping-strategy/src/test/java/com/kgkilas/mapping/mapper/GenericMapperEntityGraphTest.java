@@ -0,0 +1,230 @@
+package com.kgkilas.mapping.mapper;
+
+import jakarta.persistence.AttributeNode;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EntityGraph;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.OneToMany;
+import jakarta.persistence.OrderColumn;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.hibernate.query.Query;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenericMapperEntityGraphTest {
+
+    @Entity(name = "GraphVolume")
+    @Getter
+    @Setter
+    public static class Volume {
+        @Id
+        private Long id;
+        private String title;
+    }
+
+    @Entity(name = "GraphNote")
+    @Getter
+    @Setter
+    public static class Note {
+        @Id
+        private Long id;
+        private String text;
+    }
+
+    @Entity(name = "GraphLabel")
+    @Getter
+    @Setter
+    public static class Label {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    @Entity(name = "GraphChapter")
+    @Getter
+    @Setter
+    public static class Chapter {
+        @Id
+        private Long id;
+        private String title;
+    }
+
+    @Entity(name = "GraphShelf")
+    @Getter
+    @Setter
+    public static class Shelf {
+        @Id
+        private Long id;
+        private String name;
+        @OneToMany
+        private List<Volume> volumes = new ArrayList<>();
+        @OneToMany
+        private List<Note> notes = new ArrayList<>();
+        @ManyToMany
+        private Set<Label> labels = new HashSet<>();
+        @OneToMany
+        @OrderColumn
+        private List<Chapter> chapters = new ArrayList<>();
+    }
+
+    @Getter
+    @Setter
+    public static class VolumeDto {
+        private String title;
+    }
+
+    @Getter
+    @Setter
+    public static class NoteDto {
+        private String text;
+    }
+
+    @Getter
+    @Setter
+    public static class LabelDto {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class ChapterDto {
+        private String title;
+    }
+
+    @Getter
+    @Setter
+    public static class ShelfDto {
+        private String name;
+        private List<VolumeDto> volumes;
+        private List<NoteDto> notes;
+        private List<LabelDto> labels;
+        private List<ChapterDto> chapters;
+    }
+
+    @Getter
+    @Setter
+    public static class VolumesDto {
+        private String name;
+        private List<VolumeDto> volumes;
+    }
+
+    private static SessionFactory sessionFactory;
+
+    private final GenericMapper<Shelf, ShelfDto> mapper =
+            new GenericMapper<>(new ModelMapper(), Shelf.class, ShelfDto.class);
+
+    private static SessionFactory start(String name) {
+        return new Configuration()
+                .addAnnotatedClass(Volume.class)
+                .addAnnotatedClass(Note.class)
+                .addAnnotatedClass(Label.class)
+                .addAnnotatedClass(Chapter.class)
+                .addAnnotatedClass(Shelf.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .buildSessionFactory();
+    }
+
+    @BeforeAll
+    static void startDatabase() {
+        sessionFactory = start("entity-graph");
+        sessionFactory.inTransaction(session -> {
+            Shelf shelf = new Shelf();
+            shelf.setId(1L);
+            shelf.setName("shelf");
+            for (long id = 1; id <= 2; id++) {
+                Volume volume = new Volume();
+                volume.setId(id);
+                volume.setTitle("volume" + id);
+                session.persist(volume);
+                shelf.getVolumes().add(volume);
+                Note note = new Note();
+                note.setId(id);
+                note.setText("note" + id);
+                session.persist(note);
+                shelf.getNotes().add(note);
+                Label label = new Label();
+                label.setId(id);
+                label.setName("label" + id);
+                session.persist(label);
+                shelf.getLabels().add(label);
+                Chapter chapter = new Chapter();
+                chapter.setId(id);
+                chapter.setTitle("chapter" + id);
+                session.persist(chapter);
+                shelf.getChapters().add(chapter);
+            }
+            session.persist(shelf);
+        });
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        sessionFactory.close();
+    }
+
+    private static List<String> attributeNames(EntityGraph<?> graph) {
+        return graph.getAttributeNodes().stream().map(AttributeNode::getAttributeName).toList();
+    }
+
+    @Test
+    void leavesBagsOutOfAGraphFetchingOtherCollections() {
+        EntityGraph<Shelf> graph = sessionFactory.fromSession(mapper::entityGraph);
+
+        assertThat(attributeNames(graph)).containsExactlyInAnyOrder("labels", "chapters");
+    }
+
+    @Test
+    void keepsABagThatIsTheOnlyCollectionOfTheGraph() {
+        GenericMapper<Shelf, VolumesDto> volumes = new GenericMapper<>(new ModelMapper(), Shelf.class, VolumesDto.class);
+
+        EntityGraph<Shelf> graph = sessionFactory.fromSession(volumes::entityGraph);
+
+        assertThat(attributeNames(graph)).containsExactly("volumes");
+    }
+
+    @Test
+    void fetchesWithTheGraphAndLoadsTheLeftOutBagsLazily() {
+        ShelfDto dto = sessionFactory.fromSession(session -> {
+            Query<Shelf> query = session.createQuery("from GraphShelf", Shelf.class);
+            mapper.fetchGraphHints(session).forEach(query::setHint);
+            return mapper.toDTO(query.getSingleResult());
+        });
+
+        assertThat(dto.getVolumes()).extracting(VolumeDto::getTitle).containsExactly("volume1", "volume2");
+        assertThat(dto.getNotes()).extracting(NoteDto::getText).containsExactly("note1", "note2");
+        assertThat(dto.getLabels()).extracting(LabelDto::getName).containsExactlyInAnyOrder("label1", "label2");
+        assertThat(dto.getChapters()).extracting(ChapterDto::getTitle).containsExactly("chapter1", "chapter2");
+    }
+
+    @Test
+    void keepsTheGraphOnlyForTheFactoryItWasBuiltFor() {
+        SessionFactory other = start("entity-graph-other");
+        try {
+            EntityGraph<Shelf> first = sessionFactory.fromSession(mapper::entityGraph);
+
+            assertThat(sessionFactory.fromSession(mapper::entityGraph)).isSameAs(first);
+
+            EntityGraph<Shelf> second = other.fromSession(mapper::entityGraph);
+
+            assertThat(second).isNotSameAs(first);
+            assertThat(attributeNames(second)).containsExactlyInAnyOrderElementsOf(attributeNames(first));
+            assertThat(sessionFactory.fromSession(mapper::entityGraph)).isNotSameAs(first).isNotSameAs(second);
+        } finally {
+            other.close();
+        }
+    }
+}
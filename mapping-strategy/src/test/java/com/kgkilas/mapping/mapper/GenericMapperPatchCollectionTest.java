@@ -0,0 +1,138 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.annotation.PatchCollection;
+import com.kgkilas.mapping.patch.ChangeSet;
+import com.kgkilas.mapping.patch.FieldMask;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenericMapperPatchCollectionTest {
+
+    static class Item {
+        String id;
+        String name;
+
+        Item() {
+        }
+
+        Item(String id, String name) {
+            this.id = id;
+            this.name = name;
+        }
+    }
+
+    static class Dto {
+        @PatchCollection(mode = PatchCollection.Mode.APPEND)
+        List<String> appendedList = new ArrayList<>();
+        @PatchCollection(mode = PatchCollection.Mode.APPEND)
+        Set<String> appendedSet = new LinkedHashSet<>();
+        @PatchCollection(mode = PatchCollection.Mode.APPEND)
+        Map<String, String> appendedMap = new LinkedHashMap<>();
+        @PatchCollection(mode = PatchCollection.Mode.MERGE, key = "id")
+        List<Item> items = new ArrayList<>();
+        @PatchCollection(mode = PatchCollection.Mode.MERGE)
+        Set<String> mergedSet = new LinkedHashSet<>();
+        @PatchCollection(mode = PatchCollection.Mode.MERGE)
+        Map<String, Item> mergedMap = new LinkedHashMap<>();
+    }
+
+    private final GenericMapper<Object, Object> mapper = new GenericMapper<>(new ModelMapper(), Object.class, Object.class);
+
+    private ChangeSet patch(Dto update, Dto existing) {
+        return mapper.patchWithChanges(update, existing, (FieldMask) null, true);
+    }
+
+    @Test
+    void appendsToListsAndSetsRecordingOnlyAddedElements() {
+        Dto existing = new Dto();
+        existing.appendedList.add("a");
+        existing.appendedSet.addAll(List.of("a", "b"));
+        Dto update = new Dto();
+        update.appendedList.addAll(List.of("b", "c"));
+        update.appendedSet.addAll(List.of("b", "c"));
+
+        ChangeSet changes = patch(update, existing);
+
+        assertThat(existing.appendedList).containsExactly("a", "b", "c");
+        assertThat(existing.appendedSet).containsExactly("a", "b", "c");
+        assertThat(changes.getPaths()).containsExactly("appendedList[1]", "appendedList[2]", "appendedSet[c]");
+        assertThat(changes.getChanges().get(2).getNewValue()).isEqualTo("c");
+    }
+
+    @Test
+    void putsAppendedMapEntriesRecordingOnlyChangedOnes() {
+        Dto existing = new Dto();
+        existing.appendedMap.put("a", "1");
+        existing.appendedMap.put("b", "2");
+        Dto update = new Dto();
+        update.appendedMap.put("a", "1");
+        update.appendedMap.put("b", "3");
+        update.appendedMap.put("c", "4");
+
+        ChangeSet changes = patch(update, existing);
+
+        assertThat(existing.appendedMap).containsExactly(Map.entry("a", "1"), Map.entry("b", "3"), Map.entry("c", "4"));
+        assertThat(changes.getPaths()).containsExactly("appendedMap[b]", "appendedMap[c]");
+        assertThat(changes.getChanges().get(0).getOldValue()).isEqualTo("2");
+    }
+
+    @Test
+    void mergesListElementsByKeyOnlyWithExistingElements() {
+        Dto existing = new Dto();
+        Item one = new Item("1", "one");
+        existing.items.add(one);
+        Dto update = new Dto();
+        update.items.addAll(List.of(new Item("1", "uno"), new Item("2", "two"), new Item("2", "deux")));
+
+        ChangeSet changes = patch(update, existing);
+
+        assertThat(existing.items).hasSize(3).first().isSameAs(one);
+        assertThat(existing.items).extracting(item -> item.name).containsExactly("uno", "two", "deux");
+        assertThat(update.items.get(1).name).isEqualTo("two");
+        assertThat(changes.getPaths()).containsExactlyInAnyOrder("items[2]", "items[1].name");
+    }
+
+    @Test
+    void mergesSetsByEqualityAndMapValuesByKey() {
+        Dto existing = new Dto();
+        existing.mergedSet.add("a");
+        Item one = new Item("1", "one");
+        existing.mergedMap.put("k", one);
+        Dto update = new Dto();
+        update.mergedSet.addAll(List.of("a", "b"));
+        update.mergedMap.put("k", new Item("1", "uno"));
+        update.mergedMap.put("n", new Item("2", "two"));
+
+        ChangeSet changes = patch(update, existing);
+
+        assertThat(existing.mergedSet).containsExactly("a", "b");
+        assertThat(existing.mergedMap.get("k")).isSameAs(one);
+        assertThat(one.name).isEqualTo("uno");
+        assertThat(existing.mergedMap.get("n").name).isEqualTo("two");
+        assertThat(changes.getPaths()).containsExactlyInAnyOrder("mergedSet[b]", "mergedMap[n]", "mergedMap[k].name");
+    }
+
+    @Test
+    void recordsNothingWhenAppendingAndMergingChangesNothing() {
+        Dto existing = new Dto();
+        existing.appendedSet.add("a");
+        existing.mergedSet.add("a");
+        existing.items.add(new Item("1", "one"));
+        Dto update = new Dto();
+        update.appendedSet.add("a");
+        update.mergedSet.add("a");
+        update.items.add(new Item("1", "one"));
+
+        assertThat(patch(update, existing).isEmpty()).isTrue();
+        assertThat(existing.appendedSet).containsExactly("a");
+    }
+}
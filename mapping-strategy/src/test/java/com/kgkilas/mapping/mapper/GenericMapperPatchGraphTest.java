@@ -0,0 +1,143 @@
+package com.kgkilas.mapping.mapper;
+
+import com.kgkilas.mapping.patch.FieldMask;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenericMapperPatchGraphTest {
+
+    static class Parent {
+        String name;
+        Child child;
+    }
+
+    static class Child {
+        String name;
+        Parent parent;
+    }
+
+    static class Node {
+        String name;
+        Node next;
+    }
+
+    static class Pair {
+        Node left;
+        Node right;
+    }
+
+    private GenericMapper<Object, Object> mapper;
+
+    @BeforeEach
+    void setUp() {
+        mapper = new GenericMapper<>(new ModelMapper(), Object.class, Object.class);
+    }
+
+    @Test
+    void patchesBidirectionalGraphWithoutStackOverflow() {
+        Parent existing = parent("old parent", "old child");
+        Parent update = parent("new parent", "new child");
+
+        mapper.patch(update, existing, (FieldMask) null);
+
+        assertThat(existing.name).isEqualTo("new parent");
+        assertThat(existing.child.name).isEqualTo("new child");
+        assertThat(existing.child.parent).isSameAs(existing);
+    }
+
+    @Test
+    void patchesChainDeeperThanTheCallStackCouldRecurse() {
+        mapper.setMaxPatchDepth(50_000);
+        Node existing = chain(20_000, "old");
+        Node update = chain(20_000, "new");
+
+        mapper.patch(update, existing, (FieldMask) null);
+
+        Node last = existing;
+        while (last.next != null) {
+            last = last.next;
+        }
+        assertThat(existing.name).isEqualTo("new0");
+        assertThat(last.name).isEqualTo("new19999");
+    }
+
+    @Test
+    void failsBeyondTheMaximumDepth() {
+        mapper.setMaxPatchDepth(10);
+
+        assertThatThrownBy(() -> mapper.patch(chain(12, "new"), chain(12, "old"), (FieldMask) null))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("maximum depth of 10");
+    }
+
+    @Test
+    void acceptsGraphAtTheMaximumDepth() {
+        mapper.setMaxPatchDepth(10);
+        Node existing = chain(11, "old");
+
+        mapper.patch(chain(11, "new"), existing, (FieldMask) null);
+
+        assertThat(existing.next.next.name).isEqualTo("new2");
+    }
+
+    @Test
+    void patchesSharedExistingObjectOnce() {
+        Node shared = node("shared");
+        Pair existing = new Pair();
+        existing.left = shared;
+        existing.right = shared;
+        Pair update = new Pair();
+        update.left = node("left");
+        update.right = node("right");
+
+        mapper.patch(update, existing, (FieldMask) null);
+
+        assertThat(existing.left).isSameAs(existing.right);
+        assertThat(shared.name).isEqualTo("left");
+    }
+
+    @Test
+    void patchesObjectReachedTwiceThroughACycleOnce() {
+        Node existing = node("a");
+        existing.next = node("b");
+        existing.next.next = existing;
+        Node update = node("x");
+        update.next = node("y");
+        update.next.next = node("z");
+
+        mapper.patch(update, existing, (FieldMask) null);
+
+        assertThat(existing.name).isEqualTo("x");
+        assertThat(existing.next.name).isEqualTo("y");
+        assertThat(existing.next.next).isSameAs(existing);
+    }
+
+    private static Parent parent(String parentName, String childName) {
+        Parent parent = new Parent();
+        parent.name = parentName;
+        parent.child = new Child();
+        parent.child.name = childName;
+        parent.child.parent = parent;
+        return parent;
+    }
+
+    private static Node node(String name) {
+        Node node = new Node();
+        node.name = name;
+        return node;
+    }
+
+    private static Node chain(int length, String prefix) {
+        Node head = node(prefix + 0);
+        Node current = head;
+        for (int i = 1; i < length; i++) {
+            current.next = node(prefix + i);
+            current = current.next;
+        }
+        return head;
+    }
+}
@@ -0,0 +1,211 @@
+package com.kgkilas.mapping.mapper;
+
+import jakarta.persistence.Embeddable;
+import jakarta.persistence.Embedded;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.ManyToMany;
+import jakarta.persistence.ManyToOne;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Join;
+import jakarta.persistence.criteria.JoinType;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.SessionFactory;
+import org.hibernate.cfg.Configuration;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenericMapperProjectionTest {
+
+    public enum Genre {
+        NOVEL, POETRY
+    }
+
+    @Embeddable
+    @Getter
+    @Setter
+    public static class Address {
+        private String city;
+    }
+
+    @Entity(name = "ProjectedAuthor")
+    @Getter
+    @Setter
+    public static class Author {
+        @Id
+        private Long id;
+        private String name;
+        @Embedded
+        private Address address;
+    }
+
+    @Entity(name = "ProjectedTag")
+    @Getter
+    @Setter
+    public static class Tag {
+        @Id
+        private Long id;
+        private String name;
+    }
+
+    @Entity(name = "ProjectedBook")
+    @Getter
+    @Setter
+    public static class Book {
+        @Id
+        private Long id;
+        private String title;
+        private Genre genre;
+        private int pages;
+        @ManyToOne
+        private Author author;
+        @ManyToMany
+        private Set<Tag> tags = new HashSet<>();
+    }
+
+    @Getter
+    @Setter
+    public static class AddressDto {
+        private String city;
+    }
+
+    @Getter
+    @Setter
+    public static class AuthorDto {
+        private String name;
+        private AddressDto address;
+    }
+
+    @Getter
+    @Setter
+    public static class TagDto {
+        private String name;
+    }
+
+    @Getter
+    @Setter
+    public static class BookDto {
+        private String title;
+        private String genre;
+        private long pages;
+        private String authorName;
+        private AuthorDto author;
+        private List<TagDto> tags;
+    }
+
+    private static SessionFactory sessionFactory;
+
+    private final GenericMapper<Book, BookDto> mapper = new GenericMapper<>(new ModelMapper(), Book.class, BookDto.class);
+
+    @BeforeAll
+    static void startDatabase() {
+        sessionFactory = new Configuration()
+                .addAnnotatedClass(Author.class)
+                .addAnnotatedClass(Tag.class)
+                .addAnnotatedClass(Book.class)
+                .setProperty("hibernate.connection.url", "jdbc:h2:mem:projection;DB_CLOSE_DELAY=-1")
+                .setProperty("hibernate.hbm2ddl.auto", "create-drop")
+                .buildSessionFactory();
+        sessionFactory.inTransaction(session -> {
+            Author housed = new Author();
+            housed.setId(1L);
+            housed.setName("Lem");
+            housed.setAddress(new Address());
+            housed.getAddress().setCity("Krakow");
+            session.persist(housed);
+            Author homeless = new Author();
+            homeless.setId(2L);
+            homeless.setName("Dukaj");
+            session.persist(homeless);
+            Tag tag = new Tag();
+            tag.setId(1L);
+            tag.setName("classic");
+            session.persist(tag);
+            session.persist(book(1L, "Solaris", Genre.NOVEL, housed, tag));
+            session.persist(book(2L, "Ice", Genre.NOVEL, homeless));
+            session.persist(book(3L, "Anonymous", null, null));
+        });
+    }
+
+    @AfterAll
+    static void stopDatabase() {
+        sessionFactory.close();
+    }
+
+    private static Book book(Long id, String title, Genre genre, Author author, Tag... tags) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        book.setGenre(genre);
+        book.setPages(100 * id.intValue());
+        book.setAuthor(author);
+        book.getTags().addAll(List.of(tags));
+        return book;
+    }
+
+    private List<BookDto> project() {
+        return sessionFactory.fromSession(session -> {
+            CriteriaQuery<Tuple> query = mapper.projectionQuery(session);
+            Root<?> root = query.getRoots().iterator().next();
+            query.orderBy(session.getCriteriaBuilder().asc(root.get("id")));
+            return mapper.fromTuples(session.createQuery(query).getResultList());
+        });
+    }
+
+    @Test
+    void selectsEverySingleValuedSourceOnceThroughOneLeftJoin() {
+        CriteriaQuery<Tuple> query = sessionFactory.fromSession(mapper::projectionQuery);
+
+        List<String> aliases = new ArrayList<>();
+        for (Selection<?> selection : query.getSelection().getCompoundSelectionItems()) {
+            aliases.add(selection.getAlias());
+        }
+        assertThat(aliases).containsExactlyInAnyOrder("title", "genre", "pages", "author.name", "author.address.city");
+        Root<?> root = query.getRoots().iterator().next();
+        assertThat(root.getJoins()).hasSize(1);
+        Join<?, ?> join = root.getJoins().iterator().next();
+        assertThat(join.getAttribute().getName()).isEqualTo("author");
+        assertThat(join.getJoinType()).isEqualTo(JoinType.LEFT);
+    }
+
+    @Test
+    void createsDtosFromTuplesConvertingValuesOfAnotherType() {
+        BookDto solaris = project().get(0);
+
+        assertThat(solaris.getTitle()).isEqualTo("Solaris");
+        assertThat(solaris.getGenre()).isEqualTo("NOVEL");
+        assertThat(solaris.getPages()).isEqualTo(100L);
+        assertThat(solaris.getAuthorName()).isEqualTo("Lem");
+        assertThat(solaris.getAuthor().getName()).isEqualTo("Lem");
+        assertThat(solaris.getAuthor().getAddress().getCity()).isEqualTo("Krakow");
+        assertThat(solaris.getTags()).isNull();
+    }
+
+    @Test
+    void leavesNestedDtosOfNullValuesAndEmptyLeftJoinsNull() {
+        List<BookDto> dtos = project();
+
+        assertThat(dtos).extracting(BookDto::getTitle).containsExactly("Solaris", "Ice", "Anonymous");
+        BookDto ice = dtos.get(1);
+        assertThat(ice.getAuthor().getName()).isEqualTo("Dukaj");
+        assertThat(ice.getAuthor().getAddress()).isNull();
+        BookDto anonymous = dtos.get(2);
+        assertThat(anonymous.getAuthor()).isNull();
+        assertThat(anonymous.getAuthorName()).isNull();
+        assertThat(anonymous.getGenre()).isNull();
+        assertThat(anonymous.getPages()).isEqualTo(300L);
+    }
+}
@@ -0,0 +1,302 @@
+package com.kgkilas.mapping.mapper;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GenericMapperPublisherTest {
+
+    @Getter
+    @Setter
+    public static class Item {
+        private int number;
+    }
+
+    @Getter
+    @Setter
+    public static class ItemDto {
+        private int number;
+    }
+
+    /**
+     * Publishes the numbers from 1 to count as they are requested, in the requesting thread, and completes after
+     * the last one, or fails instead of publishing failAt.
+     */
+    static final class Source implements Flow.Publisher<Item>, Flow.Subscription {
+        private final int count;
+        private final int failAt;
+        final AtomicLong requested = new AtomicLong();
+        volatile boolean cancelled;
+        private Flow.Subscriber<? super Item> subscriber;
+        private long demand;
+        private int next = 1;
+        private boolean emitting;
+        private boolean done;
+
+        Source(int count, int failAt) {
+            this.count = count;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super Item> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(this);
+        }
+
+        @Override
+        public synchronized void request(long n) {
+            if (n <= 0) {
+                cancelled = true;
+                subscriber.onError(new IllegalArgumentException("non-positive request " + n));
+                return;
+            }
+            requested.addAndGet(n);
+            demand += n;
+            if (emitting) {
+                return;
+            }
+            emitting = true;
+            while (demand > 0 && !cancelled && !done) {
+                if (next == failAt) {
+                    done = true;
+                    subscriber.onError(new IllegalStateException("source failed at " + next));
+                } else if (next > count) {
+                    done = true;
+                    subscriber.onComplete();
+                } else {
+                    demand--;
+                    Item item = new Item();
+                    item.setNumber(next++);
+                    subscriber.onNext(item);
+                }
+            }
+            if (next > count && !cancelled && !done) {
+                done = true;
+                subscriber.onComplete();
+            }
+            emitting = false;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Records what it receives, requesting the initial demand on subscription.
+     */
+    static final class Recorder implements Flow.Subscriber<ItemDto> {
+        private final long initialDemand;
+        final List<Integer> received = new ArrayList<>();
+        final CountDownLatch terminated = new CountDownLatch(1);
+        volatile Throwable error;
+        volatile boolean completed;
+        volatile Flow.Subscription subscription;
+
+        Recorder(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            subscription.request(initialDemand);
+        }
+
+        @Override
+        public void onNext(ItemDto item) {
+            synchronized (received) {
+                received.add(item.getNumber());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            error = throwable;
+            terminated.countDown();
+        }
+
+        @Override
+        public void onComplete() {
+            completed = true;
+            terminated.countDown();
+        }
+
+        List<Integer> received() {
+            synchronized (received) {
+                return new ArrayList<>(received);
+            }
+        }
+
+        void await() throws InterruptedException {
+            assertThat(terminated.await(10, TimeUnit.SECONDS)).as("terminated").isTrue();
+        }
+    }
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    private final GenericMapper<Item, ItemDto> mapper = new GenericMapper<>(new ModelMapper(), Item.class, ItemDto.class) {
+        @Override
+        public ItemDto toDTO(Item entity) {
+            if (entity.getNumber() == 13) {
+                throw new IllegalArgumentException("unlucky item");
+            }
+            // Earlier items take longer, so conversions complete out of order
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(Math.max(0, 10 - entity.getNumber()) * 5L));
+            return super.toDTO(entity);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void convertsElementsAsTheyArriveWithTheSubscribersDemand() throws Exception {
+        Source source = new Source(5, 0);
+        Recorder recorder = new Recorder(2);
+
+        mapper.toDTOPublisher(source).subscribe(recorder);
+
+        assertThat(recorder.received()).containsExactly(1, 2);
+        assertThat(source.requested).hasValue(2);
+        recorder.subscription.request(Long.MAX_VALUE);
+        recorder.await();
+        assertThat(recorder.received()).containsExactly(1, 2, 3, 4, 5);
+        assertThat(recorder.completed).isTrue();
+    }
+
+    @Test
+    void cancelsTheSourceWhenAConversionFails() throws Exception {
+        Source source = new Source(20, 0);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        mapper.toDTOPublisher(source).subscribe(recorder);
+
+        recorder.await();
+        assertThat(recorder.received()).hasSize(12);
+        assertThat(recorder.error).hasMessage("unlucky item");
+        assertThat(source.cancelled).isTrue();
+    }
+
+    @Test
+    void emitsInSourceOrderWhenConversionsCompleteOutOfOrder() throws Exception {
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        mapper.toDTOPublisher(new Source(10, 0), 4, 8, executor).subscribe(recorder);
+
+        recorder.await();
+        assertThat(recorder.received()).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        assertThat(recorder.completed).isTrue();
+    }
+
+    @Test
+    void requestsAtMostPrefetchElementsAheadOfASlowSubscriber() throws Exception {
+        Source source = new Source(100, 0);
+        Recorder recorder = new Recorder(1);
+
+        mapper.toDTOPublisher(source, 2, 4, executor).subscribe(recorder);
+
+        Thread.sleep(300);
+        assertThat(recorder.received()).containsExactly(1);
+        assertThat(source.requested.get()).isEqualTo(5);
+        recorder.subscription.request(2);
+        Thread.sleep(300);
+        assertThat(recorder.received()).containsExactly(1, 2, 3);
+        assertThat(source.requested.get()).isEqualTo(7);
+    }
+
+    @Test
+    void failsAfterTheDtosOfEarlierElements() throws Exception {
+        Source source = new Source(20, 0);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        mapper.toDTOPublisher(source, 4, 8, executor).subscribe(recorder);
+
+        recorder.await();
+        assertThat(recorder.received()).containsExactly(1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12);
+        assertThat(recorder.error).hasMessage("unlucky item");
+        assertThat(source.cancelled).isTrue();
+    }
+
+    @Test
+    void passesSourceErrorsOnAfterEarlierDtos() throws Exception {
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        mapper.toDTOPublisher(new Source(10, 4), 4, 8, executor).subscribe(recorder);
+
+        recorder.await();
+        assertThat(recorder.received()).containsExactly(1, 2, 3);
+        assertThat(recorder.error).isInstanceOf(IllegalStateException.class).hasMessage("source failed at 4");
+    }
+
+    @Test
+    void cancellingStopsTheSource() throws Exception {
+        Source source = new Source(100, 0);
+        Recorder recorder = new Recorder(1);
+
+        mapper.toDTOPublisher(source, 2, 4, executor).subscribe(recorder);
+        Thread.sleep(100);
+        recorder.subscription.cancel();
+        long requested = source.requested.get();
+        recorder.subscription.request(10);
+        Thread.sleep(100);
+
+        assertThat(source.cancelled).isTrue();
+        assertThat(source.requested.get()).isEqualTo(requested);
+        assertThat(recorder.received()).containsExactly(1);
+        assertThat(recorder.terminated.getCount()).isEqualTo(1);
+    }
+
+    @Test
+    void signalsAnErrorForANonPositiveRequest() throws Exception {
+        Source source = new Source(100, 0);
+        Recorder recorder = new Recorder(1);
+
+        mapper.toDTOPublisher(source, 2, 4, executor).subscribe(recorder);
+        Thread.sleep(100);
+        recorder.subscription.request(0);
+
+        recorder.await();
+        assertThat(recorder.error).isInstanceOf(IllegalArgumentException.class);
+        assertThat(source.cancelled).isTrue();
+
+        Recorder direct = new Recorder(-1);
+        mapper.toDTOPublisher(new Source(100, 0)).subscribe(direct);
+        direct.await();
+        assertThat(direct.error).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void failsWhenTheExecutorRejectsAConversion() throws Exception {
+        Source source = new Source(10, 0);
+        Recorder recorder = new Recorder(Long.MAX_VALUE);
+
+        mapper.toDTOPublisher(source, 2, 4, task -> {
+            throw new RejectedExecutionException("executor full");
+        }).subscribe(recorder);
+
+        recorder.await();
+        assertThat(recorder.received()).isEmpty();
+        assertThat(recorder.error).isInstanceOf(RejectedExecutionException.class).hasMessage("executor full");
+        assertThat(source.cancelled).isTrue();
+    }
+}
@@ -0,0 +1,93 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ChangeSetTest {
+
+    static class Address {
+        String city;
+        String zip;
+    }
+
+    static class CustomerDto {
+        String name;
+        int age;
+        String email;
+        Address address;
+    }
+
+    private final GenericMapper<Object, CustomerDto> mapper =
+            new GenericMapper<>(new ModelMapper(), Object.class, CustomerDto.class);
+
+    private static CustomerDto customer(String name, int age, String city) {
+        CustomerDto customer = new CustomerDto();
+        customer.name = name;
+        customer.age = age;
+        customer.address = new Address();
+        customer.address.city = city;
+        customer.address.zip = "00-001";
+        return customer;
+    }
+
+    @Test
+    void recordsPathsAndOrdinalsOfChangedFields() {
+        PatchPlan plan = PatchPlan.of(CustomerDto.class, CustomerDto.class);
+        CustomerDto existing = customer("Ann", 30, "Krakow");
+        existing.email = "ann@example.com";
+
+        ChangeSet changes = mapper.patchWithChanges(customer("Ann", 31, "Gdansk"), existing,
+                FieldMask.ofNameList(List.of("email")), true);
+
+        assertThat(changes.getPaths()).containsExactlyInAnyOrder("age", "email", "address.city");
+        assertThat(changes.isChanged(plan.getField("age").getOrdinal())).isTrue();
+        assertThat(changes.isChanged(plan.getField("address").getOrdinal())).isTrue();
+        assertThat(changes.isChanged(plan.getField("name").getOrdinal())).isFalse();
+        assertThat(changes.isChanged("address")).isTrue();
+        assertThat(changes.isChanged("address.zip")).isFalse();
+        ChangeSet.Change city = changes.getChanges().stream()
+                .filter(change -> change.getPath().equals("address.city")).findFirst().orElseThrow();
+        assertThat(city.getOrdinal()).isEqualTo(PatchPlan.of(Address.class, Address.class).getField("city").getOrdinal());
+        assertThat(existing.email).isNull();
+        assertThat(existing.address.city).isEqualTo("Gdansk");
+    }
+
+    @Test
+    void skipsWritesOfEqualValues() {
+        CustomerDto existing = customer(new String("Ann"), 30, "Krakow");
+        String name = existing.name;
+        Address address = existing.address;
+
+        ChangeSet changes = mapper.patchWithChanges(customer("Ann", 30, "Krakow"), existing, (FieldMask) null, true);
+
+        assertThat(changes.isEmpty()).isTrue();
+        assertThat(existing.name).isSameAs(name);
+        assertThat(existing.address).isSameAs(address);
+    }
+
+    @Test
+    void keepsOldAndNewValuesOnlyWhenCapturing() {
+        ChangeSet captured = mapper.patchWithChanges(customer("Bob", 30, "Krakow"), customer("Ann", 30, "Krakow"),
+                (FieldMask) null, true);
+        ChangeSet uncaptured = mapper.patchWithChanges(customer("Bob", 30, "Krakow"), customer("Ann", 30, "Krakow"),
+                (FieldMask) null, false);
+
+        assertThat(captured.isCapturingValues()).isTrue();
+        assertThat(captured.getChanges()).singleElement().satisfies(change -> {
+            assertThat(change.getPath()).isEqualTo("name");
+            assertThat(change.getOldValue()).isEqualTo("Ann");
+            assertThat(change.getNewValue()).isEqualTo("Bob");
+        });
+        assertThat(uncaptured.isCapturingValues()).isFalse();
+        assertThat(uncaptured.getChanges()).singleElement().satisfies(change -> {
+            assertThat(change.getPath()).isEqualTo("name");
+            assertThat(change.getOldValue()).isNull();
+            assertThat(change.getNewValue()).isNull();
+        });
+    }
+}
@@ -0,0 +1,81 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.beans.ConstructorProperties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CopyPlanTest {
+
+    record Point(int x, int y) {
+    }
+
+    static final class Name {
+        private final String first;
+        private final String last;
+
+        Name(String first, String last) {
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    static final class SwappedName {
+        private final String first;
+        private final String last;
+
+        SwappedName(String last, String first) {
+            this.first = first;
+            this.last = last;
+        }
+    }
+
+    static final class AnnotatedName {
+        private final String first;
+        private final String last;
+
+        @ConstructorProperties({"first", "last"})
+        AnnotatedName(String a, String b) {
+            this.first = a;
+            this.last = b;
+        }
+    }
+
+    private final GenericMapper<Object, Object> mapper = new GenericMapper<>(new ModelMapper(), Object.class, Object.class);
+
+    @Test
+    void usesTheCanonicalConstructorOfRecords() {
+        Point patched = mapper.patchCopy(new Point(3, 4), new Point(1, 2), (FieldMask) null);
+
+        assertThat(patched).isEqualTo(new Point(3, 4));
+    }
+
+    @Test
+    void usesConstructorsWhoseParameterNamesMatchTheFields() {
+        Name patched = mapper.patchCopy(new Name("Ada", null), new Name("Grace", "Hopper"), (FieldMask) null);
+
+        assertThat(patched.first).isEqualTo("Ada");
+        assertThat(patched.last).isEqualTo("Hopper");
+    }
+
+    @Test
+    void usesConstructorPropertiesForTheParameterNames() {
+        AnnotatedName patched = mapper.patchCopy(new AnnotatedName("Ada", null),
+                new AnnotatedName("Grace", "Hopper"), (FieldMask) null);
+
+        assertThat(patched.first).isEqualTo("Ada");
+        assertThat(patched.last).isEqualTo("Hopper");
+    }
+
+    @Test
+    void rejectsConstructorsMatchingTheFieldTypesOnly() {
+        assertThat(CopyPlan.of(SwappedName.class)).isNull();
+        assertThatThrownBy(() -> mapper.patchCopy(new SwappedName("Lovelace", "Ada"),
+                new SwappedName("Hopper", "Grace"), (FieldMask) null))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
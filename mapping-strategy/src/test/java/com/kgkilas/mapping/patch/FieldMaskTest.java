@@ -0,0 +1,61 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.mapper.GenericMapper;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FieldMaskTest {
+
+    static class Dto {
+        String name;
+        String email;
+    }
+
+    @Test
+    void sharesTheMaskOfEqualNameLists() {
+        FieldMask mask = FieldMask.ofNameList(List.of("name", "email"));
+
+        assertThat(FieldMask.ofNameList(new ArrayList<>(List.of("name", "email")))).isSameAs(mask);
+        assertThat(FieldMask.ofNameList(List.of("email", "name"))).isNotSameAs(mask);
+    }
+
+    @Test
+    void reusesTheBindingOfASharedMask() {
+        PatchPlan plan = PatchPlan.of(Dto.class, Dto.class);
+        FieldMask mask = FieldMask.ofNameList(List.of("email"));
+
+        FieldMask bound = mask.bind(plan);
+
+        assertThat(FieldMask.ofNameList(List.of("email")).bind(plan)).isSameAs(bound);
+        assertThat(bound.isSelected(plan.getField("email").getOrdinal())).isTrue();
+        assertThat(bound.isSelected(plan.getField("name").getOrdinal())).isFalse();
+    }
+
+    @Test
+    void compilesListsHoldingNullWithoutCachingThem() {
+        FieldMask mask = FieldMask.ofNameList(Arrays.asList("email", null));
+
+        assertThat(FieldMask.ofNameList(Arrays.asList("email", null))).isNotSameAs(mask);
+    }
+
+    @Test
+    void patchesWithCachedMasks() {
+        GenericMapper<Object, Dto> mapper = new GenericMapper<>(new ModelMapper(), Object.class, Dto.class);
+        for (int i = 0; i < 2; i++) {
+            Dto existing = new Dto();
+            existing.name = "old";
+            existing.email = "old@example.com";
+
+            mapper.patch(new Dto(), existing, List.of("email"));
+
+            assertThat(existing.name).isEqualTo("old");
+            assertThat(existing.email).isNull();
+        }
+    }
+}
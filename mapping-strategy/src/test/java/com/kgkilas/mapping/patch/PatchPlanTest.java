@@ -0,0 +1,241 @@
+package com.kgkilas.mapping.patch;
+
+import com.kgkilas.mapping.accessor.AccessMode;
+import com.kgkilas.mapping.mapper.GenericMapper;
+import jakarta.persistence.MappedSuperclass;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PatchPlanTest {
+
+    record Money(BigDecimal amount, String currency) {
+    }
+
+    record Tagged(String name, List<String> tags) {
+    }
+
+    static class Address {
+        String city;
+    }
+
+    static class OrderDto {
+        LocalDate date;
+        UUID reference;
+        BigDecimal total;
+        TimeUnit unit;
+        Money price;
+        Serializable note;
+        Address address;
+    }
+
+    static class ProfileDto {
+        int age;
+        long visits;
+        boolean active;
+        double score;
+        Integer rank;
+        String name;
+        TimeUnit unit;
+        Address address;
+        List<String> tags;
+    }
+
+    static class FrozenDto {
+        final String id;
+        String name;
+
+        FrozenDto() {
+            this(null);
+        }
+
+        FrozenDto(String id) {
+            this.id = id;
+        }
+    }
+
+    @MappedSuperclass
+    static class Audited {
+        private Long id;
+        private Integer version;
+        String code = "audited";
+    }
+
+    static class ArticleDto extends Audited {
+        String title;
+        String code;
+    }
+
+    static class FlatArticleDto {
+        Long id;
+        String title;
+    }
+
+    private static ArticleDto article(Long id, Integer version, String title, String code) {
+        ArticleDto article = new ArticleDto();
+        ((Audited) article).id = id;
+        ((Audited) article).version = version;
+        article.title = title;
+        article.code = code;
+        return article;
+    }
+
+    @Test
+    void resolvesFieldsInheritedFromSuperclassesFirst() {
+        PatchPlan plan = PatchPlan.of(ArticleDto.class, ArticleDto.class);
+
+        assertThat(PatchPlan.fieldTable(ArticleDto.class).keySet()).containsExactly("id", "version", "code", "title");
+        assertThat(plan.getField("version").getSourceField().getDeclaringClass()).isEqualTo(Audited.class);
+        assertThat(PatchPlan.findField(ArticleDto.class, "code").getDeclaringClass()).isEqualTo(ArticleDto.class);
+        assertThat(PatchPlan.of(ArticleDto.class, FlatArticleDto.class).getField("id").getTargetField())
+                .isEqualTo(PatchPlan.findField(FlatArticleDto.class, "id"));
+    }
+
+    @Test
+    void patchesInheritedFieldsAndOnlyTheShadowingOne() {
+        for (AccessMode accessMode : AccessMode.values()) {
+            GenericMapper<Object, ArticleDto> mapper = new GenericMapper<>(new ModelMapper(), Object.class, ArticleDto.class);
+            mapper.setAccessMode(accessMode);
+            ArticleDto existing = article(1L, 1, "old", "old");
+
+            mapper.patch(article(1L, 2, "new", "new"), existing, (FieldMask) null);
+
+            assertThat(((Audited) existing).version).as(accessMode.name()).isEqualTo(2);
+            assertThat(existing.title).as(accessMode.name()).isEqualTo("new");
+            assertThat(existing.code).as(accessMode.name()).isEqualTo("new");
+            assertThat(((Audited) existing).code).as(accessMode.name()).isEqualTo("audited");
+        }
+    }
+
+    private static ProfileDto profile(int age, String name, String city, String... tags) {
+        ProfileDto profile = new ProfileDto();
+        profile.age = age;
+        profile.visits = age * 1000L;
+        profile.active = age % 2 == 0;
+        profile.score = age / 4.0;
+        profile.rank = age == 0 ? null : age;
+        profile.name = name;
+        profile.unit = age == 0 ? null : TimeUnit.DAYS;
+        if (city != null) {
+            profile.address = new Address();
+            profile.address.city = city;
+        }
+        profile.tags = tags.length == 0 ? null : new ArrayList<>(List.of(tags));
+        return profile;
+    }
+
+    private static ProfileDto patched(AccessMode accessMode, ProfileDto update, ProfileDto existing, String... nullFields) {
+        GenericMapper<Object, ProfileDto> mapper = new GenericMapper<>(new ModelMapper(), Object.class, ProfileDto.class);
+        mapper.setAccessMode(accessMode);
+        mapper.patch(update, existing, List.of(nullFields));
+        return existing;
+    }
+
+    @Test
+    void generatedPatcherPatchesLikeReflection() {
+        assertThat(PatchPlan.of(ProfileDto.class, ProfileDto.class, AccessMode.GENERATED).getGeneratedPatcher())
+                .isNotNull();
+
+        for (String[] nullFields : List.of(new String[0], new String[]{"name", "rank", "address", "tags"})) {
+            ProfileDto generated = patched(AccessMode.GENERATED, profile(0, null, "Gdansk"),
+                    profile(41, "old", "Krakow", "a"), nullFields);
+            ProfileDto reflected = patched(AccessMode.REFLECTION, profile(0, null, "Gdansk"),
+                    profile(41, "old", "Krakow", "a"), nullFields);
+
+            assertThat(generated).usingRecursiveComparison().isEqualTo(reflected);
+        }
+        ProfileDto generated = patched(AccessMode.GENERATED, profile(42, "new", null, "b", "c"), profile(41, "old", "Krakow"));
+        ProfileDto reflected = patched(AccessMode.REFLECTION, profile(42, "new", null, "b", "c"), profile(41, "old", "Krakow"));
+
+        assertThat(generated).usingRecursiveComparison().isEqualTo(reflected);
+        assertThat(generated.visits).isEqualTo(42_000L);
+        assertThat(generated.address.city).isEqualTo("Krakow");
+        assertThat(generated.tags).containsExactly("b", "c");
+    }
+
+    @Test
+    void fallsBackToHandlesWhenNoPatcherCanBeGenerated() {
+        PatchPlan plan = PatchPlan.of(FrozenDto.class, FrozenDto.class, AccessMode.GENERATED);
+        GenericMapper<Object, FrozenDto> mapper = new GenericMapper<>(new ModelMapper(), Object.class, FrozenDto.class);
+        mapper.setAccessMode(AccessMode.GENERATED);
+        FrozenDto existing = new FrozenDto("old");
+        FrozenDto update = new FrozenDto("new");
+        update.name = "patched";
+
+        mapper.patch(update, existing, (FieldMask) null);
+
+        assertThat(plan.getGeneratedPatcher()).isNull();
+        assertThat(existing.name).isEqualTo("patched");
+        assertThat(existing.id).isEqualTo("new");
+    }
+
+    @Test
+    void classifiesJdkValuesEnumsAndSimpleRecordsAsSimpleValues() {
+        assertThat(PatchPlan.isSimpleValueType(LocalDate.class)).isTrue();
+        assertThat(PatchPlan.isSimpleValueType(UUID.class)).isTrue();
+        assertThat(PatchPlan.isSimpleValueType(BigDecimal.class)).isTrue();
+        assertThat(PatchPlan.isSimpleValueType(TimeUnit.class)).isTrue();
+        assertThat(PatchPlan.isSimpleValueType(Money.class)).isTrue();
+        assertThat(PatchPlan.isSimpleValueType(int[].class)).isTrue();
+
+        assertThat(PatchPlan.isSimpleValueType(Tagged.class)).isFalse();
+        assertThat(PatchPlan.isSimpleValueType(Address.class)).isFalse();
+        assertThat(PatchPlan.isSimpleValueType(Object.class)).isFalse();
+        assertThat(PatchPlan.isSimpleValueType(Serializable.class)).isFalse();
+        assertThat(PatchPlan.isSimpleValueType(ArrayList.class)).isFalse();
+    }
+
+    @Test
+    void derivesValueKindsFromDeclaredTypes() {
+        PatchPlan plan = PatchPlan.of(OrderDto.class, OrderDto.class);
+
+        assertThat(plan.getField("date").getValueKind()).isEqualTo(PatchField.ValueKind.SIMPLE);
+        assertThat(plan.getField("unit").getValueKind()).isEqualTo(PatchField.ValueKind.SIMPLE);
+        assertThat(plan.getField("price").getValueKind()).isEqualTo(PatchField.ValueKind.SIMPLE);
+        assertThat(plan.getField("note").getValueKind()).isEqualTo(PatchField.ValueKind.RUNTIME);
+        assertThat(plan.getField("address").getValueKind()).isEqualTo(PatchField.ValueKind.RUNTIME);
+    }
+
+    @Test
+    void patchReplacesJdkValuesEnumsAndRecordsWhole() {
+        GenericMapper<Object, OrderDto> mapper = new GenericMapper<>(new ModelMapper(), Object.class, OrderDto.class);
+        OrderDto existing = new OrderDto();
+        existing.date = LocalDate.of(2020, 1, 1);
+        existing.reference = UUID.randomUUID();
+        existing.total = BigDecimal.ONE;
+        existing.unit = TimeUnit.SECONDS;
+        existing.price = new Money(BigDecimal.ONE, "EUR");
+        existing.note = LocalDate.of(2020, 1, 1);
+        existing.address = new Address();
+        OrderDto update = new OrderDto();
+        update.date = LocalDate.of(2024, 5, 17);
+        update.reference = UUID.randomUUID();
+        update.total = new BigDecimal("12.50");
+        update.unit = TimeUnit.MINUTES;
+        update.price = new Money(BigDecimal.TEN, "USD");
+        update.note = LocalDate.of(2024, 5, 17);
+        update.address = new Address();
+        update.address.city = "Gdansk";
+        Address existingAddress = existing.address;
+
+        mapper.patch(update, existing, (FieldMask) null);
+
+        assertThat(existing.date).isEqualTo(update.date);
+        assertThat(existing.reference).isEqualTo(update.reference);
+        assertThat(existing.total).isEqualTo(update.total);
+        assertThat(existing.unit).isEqualTo(TimeUnit.MINUTES);
+        assertThat(existing.price).isSameAs(update.price);
+        assertThat(existing.note).isEqualTo(update.note);
+        assertThat(existing.address).isSameAs(existingAddress);
+        assertThat(existing.address.city).isEqualTo("Gdansk");
+    }
+}